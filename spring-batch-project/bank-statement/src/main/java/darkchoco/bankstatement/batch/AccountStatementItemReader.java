@@ -0,0 +1,182 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.domain.AccountStatement;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * 계좌 순으로 정렬된 거래를 cursor로 스트리밍하면서 계좌별 합계를 누적해 {@link AccountStatement}를 하나씩 반환하는 reader.
+ * <p>
+ * 입력이 계좌 순으로 정렬되어 있으므로 Map&lt;Long, BigDecimal&gt; 같은 계좌별 맵이 필요 없다.
+ * 현재 계좌의 합계만 primitive long(cent 단위) 변수에 누적하고, 계좌가 바뀌면 명세서를 내보낸다.
+ * 거래 row마다 객체를 만들지 않으므로 거래 수가 수천만 건이어도 heap 사용량은 일정하다.
+ * <p>
+ * 커밋 시 마지막으로 내보낸 계좌 id를 저장하고, 재시작 시에는 그 다음 계좌부터 조회한다.
+ */
+public class AccountStatementItemReader extends AbstractItemCountingItemStreamItemReader<AccountStatement> {
+
+    private static final String LAST_ACCOUNT_ID = "lastAccountId";
+
+    // 지난 명세서 이후의 거래만 합산한다. 거래가 없는 계좌도 명세서를 만들기 위해 LEFT JOIN 한다.
+    private static final String ACCOUNT_TRANSACTIONS = """
+            SELECT a.account_id,
+                   a.last_statement_date,
+                   CAST(ROUND(CAST(a.balance AS NUMERIC) * 100) AS BIGINT),
+                   CAST(COALESCE(ROUND(CAST(t.credit AS NUMERIC) * 100), 0) AS BIGINT),
+                   CAST(COALESCE(ROUND(CAST(t.debit AS NUMERIC) * 100), 0) AS BIGINT),
+                   t.transaction_id IS NOT NULL
+            FROM   account a
+                   LEFT JOIN transaction t
+                          ON t.account_account_id = a.account_id
+                         AND t.timestamp > a.last_statement_date
+            WHERE  a.account_id > ?
+            ORDER BY a.account_id
+            """;
+
+    private final DataSource dataSource;
+
+    private int fetchSize = 10_000;
+
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+
+    // 다음에 처리할 row (미리 읽어 둔 한 줄)
+    private boolean hasRow;
+    private long rowAccountId;
+    private LocalDateTime rowLastStatementDate;
+    private long rowBalanceCents;
+    private long rowCreditCents;
+    private long rowDebitCents;
+    private boolean rowHasTransaction;
+
+    private long lastAccountId = Long.MIN_VALUE;
+    private boolean resumed;
+
+    public AccountStatementItemReader(DataSource dataSource) {
+        Assert.notNull(dataSource, "DataSource must not be null");
+
+        this.dataSource = dataSource;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void open(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        String key = getExecutionContextKey(LAST_ACCOUNT_ID);
+
+        resumed = executionContext.containsKey(key);
+        lastAccountId = resumed ? executionContext.getLong(key) : Long.MIN_VALUE;
+
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (isSaveState()) {
+            executionContext.putLong(getExecutionContextKey(LAST_ACCOUNT_ID), lastAccountId);
+        }
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        // 청크 트랜잭션과 별개의 커넥션. PostgreSQL은 autoCommit이 꺼져 있어야 fetchSize 단위로 가져온다.
+        connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+
+        statement = connection.prepareStatement(ACCOUNT_TRANSACTIONS);
+        statement.setFetchSize(fetchSize);
+        statement.setLong(1, lastAccountId);
+
+        resultSet = statement.executeQuery();
+        advance();
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        // 마지막 계좌 이후부터 조회했으므로 건너뛸 필요가 없다.
+        if (!resumed) {
+            super.jumpToItem(itemIndex);
+        }
+    }
+
+    @Override
+    protected AccountStatement doRead() throws Exception {
+        if (!hasRow) {
+            return null;
+        }
+
+        long accountId = rowAccountId;
+        LocalDateTime lastStatementDate = rowLastStatementDate;
+        long openingBalanceCents = rowBalanceCents;
+        long totalCreditCents = 0;
+        long totalDebitCents = 0;
+        int transactionCount = 0;
+
+        do {
+            if (rowHasTransaction) {
+                totalCreditCents += rowCreditCents;
+                totalDebitCents += rowDebitCents;
+                transactionCount++;
+            }
+            advance();
+        } while (hasRow && rowAccountId == accountId);
+
+        lastAccountId = accountId;
+
+        return new AccountStatement(accountId, lastStatementDate, openingBalanceCents,
+                totalCreditCents, totalDebitCents, transactionCount);
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        hasRow = false;
+
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+        }
+        finally {
+            resultSet = null;
+            statement = null;
+
+            if (connection != null) {
+                connection.rollback();
+                connection.close();
+                connection = null;
+            }
+        }
+    }
+
+    private void advance() throws SQLException {
+        hasRow = resultSet.next();
+
+        if (hasRow) {
+            rowAccountId = resultSet.getLong(1);
+            rowLastStatementDate = resultSet.getObject(2, LocalDateTime.class);
+            rowBalanceCents = resultSet.getLong(3);
+            rowCreditCents = resultSet.getLong(4);
+            rowDebitCents = resultSet.getLong(5);
+            rowHasTransaction = resultSet.getBoolean(6);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package darkchoco.bankstatement.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 파일의 [startOffset, endOffset) 바이트 구간에 있는 줄만 읽는 reader.
+ * <p>
+ * {@link CustomerUpdateFilePartitioner}가 나눈 구간을 partition마다 하나씩 읽는 용도로 사용한다.
+ * 구간 경계는 줄의 시작에 맞춰져 있어야 한다. 파일을 FileChannel로 직접 열므로 resource는 파일 시스템의 파일이어야 한다.
+ * (jar 안의 classpath 리소스나 압축된 파일은 읽을 수 없다.)
+ * <p>
+ * 커밋할 때마다 다음에 읽을 줄의 바이트 위치, 줄 번호와 파일 지문({@link FileFingerprint})을 ExecutionContext에 저장하고,
+ * 재시작 시에는 앞의 줄들을 다시 읽어 버리는 대신 그 위치로 바로 이동한다.
+ * 파일 지문이 다르거나 저장된 위치가 줄의 시작이 아니면 파일이 바뀐 것으로 보고, 기존처럼 read count만큼 줄을 건너뛴다.
+ * <p>
+ * comment prefix를 지정하면 FlatFileItemReader처럼 그 prefix로 시작하는 줄은 건너뛰고,
+ * LineMapper에서 발생한 예외는 FlatFileParseException으로 감싸 줄 번호와 내용을 함께 남긴다.
+ */
+public class ByteRangeLineItemReader<T> extends AbstractItemCountingItemStreamItemReader<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ByteRangeLineItemReader.class);
+
+    private static final String OFFSET = "offset";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String LINE_NUMBER = "line.number";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Resource resource;
+    private final long startOffset;
+    private final long endOffset;
+    private final LineMapper<T> lineMapper;
+
+    private Charset encoding = StandardCharsets.UTF_8;
+    private String[] comments = new String[0];
+
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] lineBytes = new byte[256];
+
+    // 다음에 읽을 줄의 시작 위치(파일 기준 절대 offset)
+    private long position;
+    private long resumeOffset = -1;
+    private String resumeFingerprint;
+    private int resumeLineNumber = -1;
+    private String fingerprint;
+    private int lineNumber;
+
+    /**
+     * @param endOffset 읽기를 멈출 위치. 음수이면 파일 끝까지 읽는다.
+     */
+    public ByteRangeLineItemReader(Resource resource, long startOffset, long endOffset, LineMapper<T> lineMapper) {
+        Assert.notNull(resource, "Resource must not be null");
+        Assert.notNull(lineMapper, "LineMapper must not be null");
+        Assert.isTrue(startOffset >= 0, "startOffset must not be negative");
+
+        this.resource = resource;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.lineMapper = lineMapper;
+    }
+
+    public void setEncoding(Charset encoding) {
+        this.encoding = encoding;
+    }
+
+    public void setComments(String... comments) {
+        this.comments = comments;
+    }
+
+    @Override
+    public void open(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        // super.open()이 저장된 read count만큼 jumpToItem()을 호출하기 전에 재시작 위치를 꺼내 둔다.
+        String offsetKey = getExecutionContextKey(OFFSET);
+        resumeOffset = executionContext.containsKey(offsetKey) ? executionContext.getLong(offsetKey) : -1;
+        resumeFingerprint = executionContext.getString(getExecutionContextKey(FINGERPRINT), null);
+        // comment 줄도 줄 번호에 포함되므로 read count와 다를 수 있다. 이전 실행에서 저장하지 않았으면 -1이다.
+        resumeLineNumber = executionContext.getInt(getExecutionContextKey(LINE_NUMBER), -1);
+
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (isSaveState()) {
+            executionContext.putLong(getExecutionContextKey(OFFSET), position);
+            executionContext.putString(getExecutionContextKey(FINGERPRINT), fingerprint);
+            executionContext.putInt(getExecutionContextKey(LINE_NUMBER), lineNumber);
+        }
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        Assert.state(resource.isFile(), () -> "Reading by byte offset requires an uncompressed file on the file system: " + resource);
+
+        channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+        fingerprint = FileFingerprint.of(channel);
+        seek(startOffset);
+        lineNumber = 0;
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        if (resumeOffset >= 0) {
+            if (fingerprint.equals(resumeFingerprint) && FileFingerprint.isLineStart(channel, resumeOffset)) {
+                seek(resumeOffset);
+                lineNumber = resumeLineNumber >= 0 ? resumeLineNumber : itemIndex;
+                return;
+            }
+
+            logger.warn("{} has changed since the last run, skipping {} items instead of seeking to offset {}",
+                    resource, itemIndex, resumeOffset);
+        }
+
+        super.jumpToItem(itemIndex);
+    }
+
+    @Override
+    protected T doRead() throws Exception {
+        String line;
+
+        do {
+            if (endOffset >= 0 && position >= endOffset) {
+                return null;
+            }
+
+            line = readLine();
+
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (isComment(line));
+
+        try {
+            return lineMapper.mapLine(line, lineNumber);
+        }
+        catch (Exception e) {
+            throw new FlatFileParseException("Parsing error at line: " + lineNumber + " in resource=["
+                    + resource.getDescription() + "], input=[" + line + "]", e, line, lineNumber);
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        resumeOffset = -1;
+        resumeFingerprint = null;
+        resumeLineNumber = -1;
+    }
+
+    /**
+     * 다음에 읽을 줄의 바이트 위치. 이 값은 커밋 시점에 ExecutionContext에 저장된다.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    private boolean isComment(String line) {
+        for (String prefix : comments) {
+            if (line.startsWith(prefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    protected void seek(long offset) throws IOException {
+        channel.position(offset);
+        buffer.clear().flip();
+        position = offset;
+    }
+
+    private String readLine() throws IOException {
+        int length = 0;
+        boolean found = false;
+
+        while (!found) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+
+                if (read <= 0) {
+                    break;
+                }
+            }
+
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                position++;
+
+                if (b == '\n') {
+                    found = true;
+                    break;
+                }
+
+                if (length == lineBytes.length) {
+                    lineBytes = Arrays.copyOf(lineBytes, length * 2);
+                }
+                lineBytes[length++] = b;
+            }
+        }
+
+        if (!found && length == 0) {
+            return null;
+        }
+
+        if (length > 0 && lineBytes[length - 1] == '\r') {
+            length--;
+        }
+
+        return new String(lineBytes, 0, length, encoding);
+    }
+}
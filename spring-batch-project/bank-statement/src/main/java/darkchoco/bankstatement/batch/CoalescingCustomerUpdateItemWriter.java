@@ -0,0 +1,49 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.domain.CustomerCombinedUpdate;
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 청크 안에서 같은 customerId에 대한 변경을 {@link CustomerCombinedUpdate} 하나로 합친 뒤 delegate에 넘긴다.
+ * <p>
+ * 청크의 item은 파일 순서를 유지하므로, 뒤에 나온 변경이 앞선 변경을 필드 단위로 덮어쓴다.
+ * 결과적으로 청크마다 고객당 UPDATE가 한 번만 실행되어 statement 수와 CUSTOMER row lock 경합이 줄어든다.
+ * 합치는 범위(window)는 청크이며, 청크 크기로 조절한다.
+ */
+public class CoalescingCustomerUpdateItemWriter implements ItemWriter<CustomerUpdate> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingCustomerUpdateItemWriter.class);
+
+    private final ItemWriter<? super CustomerUpdate> delegate;
+
+    public CoalescingCustomerUpdateItemWriter(ItemWriter<? super CustomerUpdate> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends CustomerUpdate> chunk) throws Exception {
+        // LinkedHashMap을 사용해 고객이 처음 등장한 순서대로 UPDATE 한다.
+        Map<Long, CustomerCombinedUpdate> combinedUpdates = new LinkedHashMap<>(chunk.size() * 2);
+
+        for (CustomerUpdate item : chunk) {
+            combinedUpdates.compute(item.getCustomerId(),
+                    (customerId, current) -> current == null ? CustomerCombinedUpdate.from(item) : current.merge(item));
+        }
+
+        List<CustomerUpdate> coalesced = new ArrayList<>(combinedUpdates.values());
+
+        logger.debug("Coalesced {} updates into {} customer updates", chunk.size(), coalesced.size());
+
+        delegate.write(new Chunk<>(coalesced));
+    }
+}
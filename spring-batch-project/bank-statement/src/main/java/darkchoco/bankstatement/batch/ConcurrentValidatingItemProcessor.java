@@ -0,0 +1,116 @@
+package darkchoco.bankstatement.batch;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.validator.ValidationException;
+import org.springframework.batch.item.validator.Validator;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * {@link org.springframework.batch.item.validator.ValidatingItemProcessor}와 같은 검증을 하되,
+ * item을 읽는 즉시 taskExecutor(virtual thread)에서 검증을 시작해 두는 processor.
+ * <p>
+ * 청크의 item은 모두 읽힌 뒤에 processor로 넘어오므로, process()가 호출될 때는 청크 전체의 검증이
+ * 동시에 진행 중이다. process()는 입력 순서대로 자기 item의 결과만 기다리므로 writer에 넘어가는 순서는
+ * 그대로이고, 필터링도 process()가 null을 반환하는 방식이라 filter count와 write count가 기존과 같다.
+ * reader 상태는 건드리지 않으므로 재시작 동작도 바뀌지 않는다.
+ * <p>
+ * 동시 검증 수는 taskExecutor의 concurrency limit으로 제한한다. limit에 도달하면 다음 item의 검증은
+ * 앞선 검증이 끝날 때까지 read 단계에서 대기한다.
+ * <p>
+ * {@link ItemReadListener}/{@link ChunkListener}를 구현하므로 step의 processor로 지정하면
+ * StepBuilder가 listener로도 등록한다. 미리 시작된 결과가 없는 item(청크 재처리 등)은 step 스레드에서
+ * 바로 검증한다.
+ */
+public class ConcurrentValidatingItemProcessor<T> implements ItemProcessor<T, T>, ItemReadListener<T>, ChunkListener {
+
+    private final Validator<? super T> validator;
+    private final AsyncTaskExecutor taskExecutor;
+
+    private boolean filter = false;
+
+    // 같은 값의 item이 여러 개 있을 수 있으므로 객체 identity로 구분한다.
+    private final Map<T, Future<?>> pending = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    public ConcurrentValidatingItemProcessor(Validator<? super T> validator, AsyncTaskExecutor taskExecutor) {
+        Assert.notNull(validator, "Validator must not be null");
+        Assert.notNull(taskExecutor, "TaskExecutor must not be null");
+
+        this.validator = validator;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * true이면 검증에 실패한 item을 예외 대신 걸러낸다. (ValidatingItemProcessor.setFilter와 같다)
+     */
+    public void setFilter(boolean filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public void afterRead(@NonNull T item) {
+        pending.put(item, taskExecutor.submit(() -> {
+            validator.validate(item);
+            return null;
+        }));
+    }
+
+    @Override
+    public T process(@NonNull T item) throws Exception {
+        Future<?> result = pending.remove(item);
+
+        try {
+            if (result == null) {
+                validator.validate(item);
+            }
+            else {
+                await(result);
+            }
+        }
+        catch (ValidationException e) {
+            if (filter) {
+                return null;
+            }
+            throw e;
+        }
+
+        return item;
+    }
+
+    @Override
+    public void afterChunkError(@NonNull ChunkContext context) {
+        // 실패한 청크의 결과는 더 이상 쓰이지 않는다. 다른 partition의 결과가 지워져도 그 item은 process()에서 다시 검증된다.
+        pending.clear();
+    }
+
+    private static void await(Future<?> result) throws Exception {
+        try {
+            result.get();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package darkchoco.bankstatement.batch;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * customer 테이블의 customer_id 전체를 메모리에 올려 두고 존재 여부만 답하는 읽기 전용 인덱스.
+ * <p>
+ * id 분포에 따라 두 가지 표현 중 더 작은 쪽을 고른다.
+ * <ul>
+ *     <li>bitmap: (max - min + 1) / 8 바이트. SERIAL처럼 id가 촘촘한 경우 유리하다.</li>
+ *     <li>정렬된 long 배열: count * 8 바이트. id가 듬성듬성한 경우 유리하다.</li>
+ * </ul>
+ * 생성 후에는 변경되지 않으므로 여러 스레드에서 동시에 조회해도 안전하다.
+ */
+public final class CustomerIdIndex {
+
+    private static final String CUSTOMER_ID_STATS =
+            "SELECT COUNT(*), COALESCE(MIN(customer_id), 0), COALESCE(MAX(customer_id), 0) FROM customer";
+
+    // 통계는 insert/delete마다 늘어나므로, row 수와 최대 id가 그대로인 지우기 + 넣기도 구분한다.
+    private static final String CUSTOMER_CHANGES =
+            "SELECT n_tup_ins, n_tup_del FROM pg_stat_user_tables WHERE relid = 'customer'::regclass";
+
+    private static final String CUSTOMER_IDS =
+            "SELECT customer_id FROM customer WHERE customer_id BETWEEN ? AND ? ORDER BY customer_id";
+
+    // PostgreSQL은 autoCommit이 꺼져 있어야 fetchSize 단위로 커서를 이용해 스트리밍한다.
+    private static final int FETCH_SIZE = 10_000;
+
+    private final long minId;
+    private final BitSet bitmap;
+    private final long[] sortedIds;
+    private final int size;
+    private final Fingerprint fingerprint;
+    private final long loadMillis;
+
+    private CustomerIdIndex(long minId, BitSet bitmap, long[] sortedIds, int size,
+                            Fingerprint fingerprint, long loadMillis) {
+        this.minId = minId;
+        this.bitmap = bitmap;
+        this.sortedIds = sortedIds;
+        this.size = size;
+        this.fingerprint = fingerprint;
+        this.loadMillis = loadMillis;
+    }
+
+    /**
+     * customer 테이블을 읽어 인덱스를 만든다. 필요한 메모리가 {@code maxBytes}를 넘으면 null을 반환하며,
+     * 이 경우 호출하는 쪽은 row 단위 쿼리로 검증해야 한다.
+     * <p>
+     * 청크 트랜잭션과 섞이지 않도록 DataSource에서 별도의 커넥션을 받아 사용한다.
+     */
+    public static CustomerIdIndex load(DataSource dataSource, long maxBytes) throws SQLException {
+        long startedAt = System.nanoTime();
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                // id보다 먼저 읽는다. 그 사이에 바뀐 내용은 다음 확인에서 fingerprint가 달라 다시 읽게 된다.
+                Changes changes = readChanges(connection);
+                Stats stats = readStats(connection);
+
+                long bitmapBytes = (stats.maxId - stats.minId) / 8 + 1;
+                long arrayBytes = stats.count * Long.BYTES;
+                boolean useBitmap = bitmapBytes <= arrayBytes && stats.maxId - stats.minId < Integer.MAX_VALUE;
+
+                if ((useBitmap ? bitmapBytes : arrayBytes) > maxBytes || stats.count > Integer.MAX_VALUE - 8) {
+                    return null;
+                }
+
+                BitSet bitmap = useBitmap ? new BitSet((int) (stats.maxId - stats.minId + 1)) : null;
+                long[] ids = useBitmap ? null : new long[(int) stats.count];
+                int size = 0;
+
+                try (PreparedStatement ps = connection.prepareStatement(CUSTOMER_IDS)) {
+                    ps.setFetchSize(FETCH_SIZE);
+                    ps.setLong(1, stats.minId);
+                    ps.setLong(2, stats.maxId);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            long id = rs.getLong(1);
+
+                            if (useBitmap) {
+                                bitmap.set((int) (id - stats.minId));
+                            }
+                            else {
+                                // 통계를 읽은 뒤 추가된 row가 있으면 배열을 늘린다.
+                                if (size == ids.length) {
+                                    ids = Arrays.copyOf(ids, Math.max(16, size + (size >> 1)));
+                                }
+                                ids[size] = id;
+                            }
+                            size++;
+                        }
+                    }
+                }
+
+                if (!useBitmap && size != ids.length) {
+                    ids = Arrays.copyOf(ids, size);
+                }
+
+                connection.commit();
+
+                long loadMillis = (System.nanoTime() - startedAt) / 1_000_000;
+
+                return new CustomerIdIndex(stats.minId, bitmap, ids, size,
+                        new Fingerprint(stats.count, stats.maxId, changes.inserted, changes.deleted), loadMillis);
+            }
+            finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * 테이블이 바뀌었는지 판단하기 위한 값(row 수, 최대 id, insert/delete 된 row 수)을 읽는다.
+     * 어떤 변경을 놓치는지는 {@link Fingerprint}를 참고한다.
+     */
+    public static Fingerprint readFingerprint(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            Changes changes = readChanges(connection);
+            Stats stats = readStats(connection);
+
+            return new Fingerprint(stats.count, stats.maxId, changes.inserted, changes.deleted);
+        }
+    }
+
+    private static Changes readChanges(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(CUSTOMER_CHANGES);
+             ResultSet rs = ps.executeQuery()) {
+            // 통계가 아직 없으면 row가 없다.
+            return rs.next() ? new Changes(rs.getLong(1), rs.getLong(2)) : new Changes(0, 0);
+        }
+    }
+
+    private static Stats readStats(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(CUSTOMER_ID_STATS);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+
+            return new Stats(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+        }
+    }
+
+    public boolean contains(long customerId) {
+        if (bitmap != null) {
+            long offset = customerId - minId;
+
+            return offset >= 0 && offset < Integer.MAX_VALUE && bitmap.get((int) offset);
+        }
+
+        return Arrays.binarySearch(sortedIds, customerId) >= 0;
+    }
+
+    public String getType() {
+        return bitmap != null ? "bitmap" : "sorted-array";
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getEstimatedBytes() {
+        return bitmap != null ? bitmap.size() / 8 : (long) sortedIds.length * Long.BYTES;
+    }
+
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    public Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * customer 테이블의 row 수와 최대 id, 그리고 pg_stat_user_tables의 insert/delete 된 row 수(n_tup_ins, n_tup_del).
+     * <p>
+     * insert/delete 수는 계속 늘어나기만 하므로, 고객 하나를 지우고 다른 고객을 넣어 row 수와 최대 id가 그대로여도
+     * fingerprint는 달라진다. 통계에 잡히지 않는 TRUNCATE는 row 수로 구분한다.
+     * <p>
+     * 통계는 변경한 세션이 커밋한 뒤 idle이 될 때 반영되므로 몇 초 늦을 수 있다. 롤백된 insert도 세므로 필요 없이
+     * 다시 읽는 경우도 있다. customer_id를 바꾸는 UPDATE는 구분하지 못한다. n_tup_upd에는 이 batch가 하는 고객 정보
+     * UPDATE도 포함되기 때문이다.
+     */
+    public record Fingerprint(long count, long maxId, long inserted, long deleted) {
+    }
+
+    private record Changes(long inserted, long deleted) {
+    }
+
+    private record Stats(long count, long minId, long maxId) {
+    }
+}
@@ -4,15 +4,17 @@ import darkchoco.bankstatement.domain.CustomerAddressUpdate;
 import darkchoco.bankstatement.domain.CustomerUpdate;
 import lombok.RequiredArgsConstructor;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.classify.Classifier;
 
+// record type별 writer는 JdbcBatchItemWriter(기본) 또는 CustomerUpdateCopyItemWriter(customer.update.writer=copy)이다.
 @RequiredArgsConstructor
 public class CustomerUpdateClassifier implements Classifier<CustomerUpdate, ItemWriter<? super CustomerUpdate>> {
 
-    private final JdbcBatchItemWriter<CustomerUpdate> recordType1ItemWriter;
-    private final JdbcBatchItemWriter<CustomerUpdate> recordType2ItemWriter;
-    private final JdbcBatchItemWriter<CustomerUpdate> recordType3ItemWriter;
+    private final ItemWriter<? super CustomerUpdate> recordType1ItemWriter;
+    private final ItemWriter<? super CustomerUpdate> recordType2ItemWriter;
+    private final ItemWriter<? super CustomerUpdate> recordType3ItemWriter;
+    // CoalescingCustomerUpdateItemWriter가 합친 변경을 처리한다.
+    private final ItemWriter<? super CustomerUpdate> combinedItemWriter;
 
     @Override
     public ItemWriter<? super CustomerUpdate> classify(CustomerUpdate classifiable) {
@@ -24,6 +26,7 @@ public class CustomerUpdateClassifier implements Classifier<CustomerUpdate, Item
             case "CustomerNameUpdate" -> recordType1ItemWriter;
             case "CustomerAddressUpdate" -> recordType2ItemWriter;
             case "CustomerContactUpdate" -> recordType3ItemWriter;
+            case "CustomerCombinedUpdate" -> combinedItemWriter;
             default -> throw new IllegalArgumentException("Invalid type: " + classifiable.getClass().getCanonicalName());
         };
     }
@@ -0,0 +1,375 @@
+package darkchoco.bankstatement.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * customer update 파일을 고객과 record type마다 한 줄로 줄여 새 파일로 쓰는 tasklet.
+ * <p>
+ * 같은 고객, 같은 record type의 줄은 필드마다 비어 있지 않은 마지막 값을 남긴다(last-write-wins).
+ * 빈 필드는 writer들이 COALESCE로 "변경 없음"으로 처리하므로, 합친 한 줄을 UPDATE 한 결과는 원래 줄들을
+ * 순서대로 UPDATE 한 결과와 같다. record type마다 바꾸는 칼럼이 서로 다르므로 고객 사이, record type 사이의
+ * 순서는 결과에 영향이 없다. 출력 형식은 입력과 같으므로 기존 reader/writer가 그대로 읽는다.
+ * <p>
+ * 메모리 사용량은 memoryBudgetBytes로 제한한다. 메모리의 합친 결과가 예산을 넘으면 customerId의 hash로
+ * 나눈 bucket 파일들에 내려 쓰고, 입력을 다 읽은 뒤 bucket마다 다시 합쳐 출력한다. 같은 key의 줄은 항상 같은
+ * bucket에 입력 순서대로 쌓이므로 두 번 합쳐도 결과가 같다. 전체가 예산 안에 들어가면 spill 없이 바로 쓰고,
+ * 이때는 key가 처음 나온 순서를 유지한다.
+ * <p>
+ * comment('#') 줄은 버리고, record type이나 customerId를 읽을 수 없거나 필드 수가 맞지 않는 줄은 건드리지 않고
+ * 입력 순서대로 맨 뒤에 그대로 써서 기존과 같이 import 단계에서 오류가 나게 한다.
+ * <p>
+ * 입력/출력 줄 수, 감소율(1 - 출력/입력), 처리 시간과 bucket 파일 수는 step ExecutionContext에 기록한다.
+ */
+public class CustomerUpdateCompactionTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerUpdateCompactionTasklet.class);
+
+    // 합친 줄 하나를 메모리에 들고 있을 때의 대략적인 비용 (key, map entry, 토큰 배열)과 필드 String 하나의 비용
+    private static final int ENTRY_OVERHEAD_BYTES = 120;
+    private static final int FIELD_OVERHEAD_BYTES = 48;
+
+    private static final int DEFAULT_BUCKETS = 16;
+
+    private final Resource input;
+    private final Path output;
+
+    private long memoryBudgetBytes = 64L * 1024 * 1024;
+    private Path tempDirectory;
+
+    private final DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+
+    public CustomerUpdateCompactionTasklet(Resource input, Path output) {
+        Assert.notNull(input, "Input resource must not be null");
+        Assert.notNull(output, "Output path must not be null");
+
+        this.input = input;
+        this.output = output;
+    }
+
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * bucket 파일을 만들 디렉터리. 지정하지 않으면 출력 파일과 같은 디렉터리를 사용한다.
+     */
+    public void setTempDirectory(Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) throws Exception {
+        long startedAt = System.nanoTime();
+
+        Path absoluteOutput = output.toAbsolutePath();
+        Path spillDirectory = tempDirectory != null ? tempDirectory : absoluteOutput.getParent();
+        Files.createDirectories(absoluteOutput.getParent());
+        Files.createDirectories(spillDirectory);
+
+        Map<CompactionKey, String[]> compacted = new LinkedHashMap<>();
+        List<String> passThrough = new ArrayList<>();
+        List<Path> buckets = new ArrayList<>();
+        Path passThroughFile = null;
+        long inputLines = 0;
+        long outputLines = 0;
+
+        try {
+            long compactedBytes = 0;
+            long inputBytes = 0;
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(input.getInputStream(), StandardCharsets.UTF_8), 64 * 1024)) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("#")) {
+                        continue;
+                    }
+
+                    inputLines++;
+                    inputBytes += line.length() + 1;
+
+                    compactedBytes += merge(compacted, passThrough, line);
+
+                    if (compactedBytes >= memoryBudgetBytes) {
+                        if (buckets.isEmpty()) {
+                            createBuckets(buckets, spillDirectory, compactedBytes, inputBytes);
+                            passThroughFile = Files.createTempFile(spillDirectory, "customer-update-passthrough-", ".csv");
+                        }
+                        spill(compacted, buckets);
+                        Files.write(passThroughFile, passThrough, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+                        compacted.clear();
+                        passThrough.clear();
+                        compactedBytes = 0;
+                    }
+                }
+            }
+
+            // 임시 파일에 쓴 뒤 옮겨서, 중간에 실패해도 이전 출력 파일이 반쯤 쓰인 상태로 남지 않게 한다.
+            Path temporaryOutput = Files.createTempFile(absoluteOutput.getParent(), "customer-update-compacted-", ".tmp");
+
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temporaryOutput, StandardCharsets.UTF_8)) {
+                    if (buckets.isEmpty()) {
+                        outputLines += write(compacted, writer);
+                    }
+                    else {
+                        spill(compacted, buckets);
+                        compacted.clear();
+
+                        for (Path bucket : buckets) {
+                            outputLines += compactBucket(bucket, writer);
+                        }
+                    }
+
+                    if (passThroughFile != null) {
+                        outputLines += copyLines(passThroughFile, writer);
+                    }
+
+                    for (String line : passThrough) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                    outputLines += passThrough.size();
+                }
+
+                Files.move(temporaryOutput, absoluteOutput, StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally {
+                Files.deleteIfExists(temporaryOutput);
+            }
+        }
+        finally {
+            for (Path bucket : buckets) {
+                Files.deleteIfExists(bucket);
+            }
+
+            if (passThroughFile != null) {
+                Files.deleteIfExists(passThroughFile);
+            }
+        }
+
+        long millis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        double reductionRatio = inputLines == 0 ? 0 : 1.0 - (double) outputLines / inputLines;
+
+        ExecutionContext executionContext = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        executionContext.putLong("compaction.inputLines", inputLines);
+        executionContext.putLong("compaction.outputLines", outputLines);
+        executionContext.putDouble("compaction.reductionRatio", reductionRatio);
+        executionContext.putLong("compaction.millis", millis);
+        executionContext.putInt("compaction.spillFiles", buckets.size());
+
+        logger.info("Compacted {} customer update lines into {} lines ({} reduction) in {} ms ({} spill files) - {}",
+                String.format("%,d", inputLines),
+                String.format("%,d", outputLines),
+                String.format("%.1f%%", reductionRatio * 100),
+                String.format("%,d", millis),
+                buckets.size(),
+                absoluteOutput);
+
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * 줄을 합친 결과에 더하고, 늘어난 메모리 사용량의 추정치를 반환한다.
+     */
+    private long merge(Map<CompactionKey, String[]> compacted, List<String> passThrough, String line) {
+        String[] tokens = tokenize(line);
+
+        if (tokens == null) {
+            passThrough.add(line);
+            return line.length();
+        }
+
+        CompactionKey key = new CompactionKey(Long.parseLong(tokens[1].trim()), tokens[0].trim().charAt(0));
+        String[] current = compacted.putIfAbsent(key, tokens);
+
+        if (current == null) {
+            return ENTRY_OVERHEAD_BYTES + (long) FIELD_OVERHEAD_BYTES * tokens.length + line.length();
+        }
+
+        for (int i = 2; i < tokens.length; i++) {
+            if (!tokens[i].isBlank()) {
+                current[i] = tokens[i];
+            }
+        }
+
+        return 0;
+    }
+
+    // record type 1은 5개, 2와 3은 7개 필드여야 한다. 합칠 수 없는 줄이면 null을 반환한다.
+    private String[] tokenize(String line) {
+        String[] tokens;
+
+        try {
+            tokens = tokenizer.tokenize(line).getValues();
+        }
+        catch (RuntimeException e) {
+            return null;
+        }
+
+        if (tokens.length < 2) {
+            return null;
+        }
+
+        int expectedFields = switch (tokens[0].trim()) {
+            case "1" -> 5;
+            case "2", "3" -> 7;
+            default -> -1;
+        };
+
+        if (tokens.length != expectedFields) {
+            return null;
+        }
+
+        try {
+            Long.parseLong(tokens[1].trim());
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+
+        return tokens;
+    }
+
+    // 예산을 처음 넘었을 때 지금까지의 압축 비율로 전체 결과의 크기를 추정해, bucket 하나가 예산의 절반 정도가 되도록 나눈다.
+    private void createBuckets(List<Path> buckets, Path directory, long compactedBytes, long inputBytes) throws IOException {
+        int count = DEFAULT_BUCKETS;
+
+        try {
+            long totalBytes = input.contentLength();
+
+            if (totalBytes > 0 && inputBytes > 0) {
+                double estimatedBytes = (double) compactedBytes / inputBytes * totalBytes;
+                count = (int) Math.min(1024, Math.max(2, Math.ceil(estimatedBytes * 2 / memoryBudgetBytes)));
+            }
+        }
+        catch (IOException e) {
+            logger.debug("Could not determine the size of {}, using {} buckets", input, count);
+        }
+
+        for (int i = 0; i < count; i++) {
+            buckets.add(Files.createTempFile(directory, "customer-update-bucket-", ".csv"));
+        }
+    }
+
+    private static void spill(Map<CompactionKey, String[]> compacted, List<Path> buckets) throws IOException {
+        List<BufferedWriter> writers = new ArrayList<>(buckets.size());
+
+        try {
+            for (Path bucket : buckets) {
+                writers.add(Files.newBufferedWriter(bucket, StandardCharsets.UTF_8, StandardOpenOption.APPEND));
+            }
+
+            for (Map.Entry<CompactionKey, String[]> entry : compacted.entrySet()) {
+                BufferedWriter writer = writers.get(Math.floorMod(Long.hashCode(entry.getKey().customerId()), writers.size()));
+
+                writer.write(toLine(entry.getValue()));
+                writer.newLine();
+            }
+        }
+        finally {
+            for (BufferedWriter writer : writers) {
+                writer.close();
+            }
+        }
+    }
+
+    private long compactBucket(Path bucket, BufferedWriter writer) throws IOException {
+        Map<CompactionKey, String[]> compacted = new LinkedHashMap<>();
+        List<String> passThrough = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(bucket, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                merge(compacted, passThrough, line);
+            }
+        }
+
+        return write(compacted, writer);
+    }
+
+    private static long copyLines(Path path, BufferedWriter writer) throws IOException {
+        long lines = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                writer.write(line);
+                writer.newLine();
+                lines++;
+            }
+        }
+
+        return lines;
+    }
+
+    private static long write(Map<CompactionKey, String[]> compacted, BufferedWriter writer) throws IOException {
+        for (String[] tokens : compacted.values()) {
+            writer.write(toLine(tokens));
+            writer.newLine();
+        }
+
+        return compacted.size();
+    }
+
+    // DelimitedLineTokenizer가 다시 같은 토큰으로 읽을 수 있도록 콤마나 따옴표가 있는 값만 따옴표로 감싼다.
+    private static String toLine(String[] tokens) {
+        StringBuilder line = new StringBuilder(128);
+
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+
+            String token = tokens[i];
+
+            if (token.indexOf(',') < 0 && token.indexOf('"') < 0) {
+                line.append(token);
+                continue;
+            }
+
+            line.append('"');
+            for (int j = 0; j < token.length(); j++) {
+                char c = token.charAt(j);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        return line.toString();
+    }
+
+    private record CompactionKey(long customerId, char recordType) {
+    }
+}
@@ -0,0 +1,222 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.lang.NonNull;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC batch UPDATE 대신 PostgreSQL COPY 프로토콜로 청크를 staging 테이블에 넣고,
+ * set-based UPDATE ... FROM 한 번으로 CUSTOMER에 반영하는 writer.
+ * <p>
+ * - staging 테이블은 TEMP 테이블이다. UNLOGGED 테이블처럼 WAL을 쓰지 않고, 세션마다 따로 존재하므로
+ *   여러 스레드가 동시에 써도 서로 섞이지 않는다. ON COMMIT DELETE ROWS 이므로 청크가 끝나면 비워진다.
+ * - TEMP 테이블은 커넥션(세션)마다 한 번만 만든다. pool의 커넥션은 재사용되므로, 만든 커넥션을 기억해 두고
+ *   청크마다 DDL을 실행하지 않는다. 만든 트랜잭션이 롤백되면 테이블도 없어지므로 기억한 것을 지운다.
+ * - 같은 청크에 한 고객의 변경이 여러 건 있으면, 필드별로 null이 아닌 마지막 값을 사용한다.
+ *   (기존 COALESCE 기반 UPDATE를 순서대로 실행한 것과 결과가 같다)
+ * <p>
+ * 청크 트랜잭션에 묶인 커넥션을 사용하므로 COPY와 UPDATE는 청크와 함께 커밋/롤백된다.
+ * 한 트랜잭션에서 여러 번 호출될 수 있으므로(BisectingItemWriter) 반영한 뒤에는 staging 테이블을 바로 비운다.
+ *
+ * @param <T> 이 writer가 처리하는 record type
+ */
+public class CustomerUpdateCopyItemWriter<T extends CustomerUpdate> implements ItemWriter<CustomerUpdate>, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerUpdateCopyItemWriter.class);
+
+    private final DataSource dataSource;
+    private final Class<T> type;
+    private final String stagingTable;
+
+    // CUSTOMER 칼럼명 -> 값 추출 함수. 입력 순서대로 staging 칼럼이 만들어진다.
+    private final Map<String, Function<T, Object>> columns = new LinkedHashMap<>();
+
+    // staging 테이블을 만든 물리 커넥션. 닫혀서 pool에서 빠진 커넥션은 GC와 함께 사라진다.
+    private final Set<PGConnection> stagedConnections = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private String createStagingSql;
+    private String copySql;
+    private String applySql;
+    private String clearStagingSql;
+
+    public CustomerUpdateCopyItemWriter(DataSource dataSource, Class<T> type, String stagingTable) {
+        this.dataSource = dataSource;
+        this.type = type;
+        this.stagingTable = stagingTable;
+    }
+
+    public CustomerUpdateCopyItemWriter<T> column(String customerColumn, Function<T, Object> extractor) {
+        columns.put(customerColumn.toLowerCase(), extractor);
+        return this;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Assert.notEmpty(columns, "At least one column must be configured");
+
+        String stagingColumns = columns.keySet().stream()
+                .map(column -> column + " TEXT")
+                .collect(Collectors.joining(", "));
+
+        createStagingSql = "CREATE TEMP TABLE IF NOT EXISTS " + stagingTable
+                + " (seq INT, customer_id BIGINT, " + stagingColumns + ") ON COMMIT DELETE ROWS";
+
+        copySql = "COPY " + stagingTable + " (seq, customer_id, " + String.join(", ", columns.keySet())
+                + ") FROM STDIN WITH (FORMAT csv)";
+
+        // 고객별로 필드마다 null이 아닌 가장 마지막(seq가 가장 큰) 값을 고른다.
+        String latestValues = columns.keySet().stream()
+                .map(column -> "(array_agg(" + column + " ORDER BY seq DESC) FILTER (WHERE " + column
+                        + " IS NOT NULL))[1] AS " + column)
+                .collect(Collectors.joining(",\n                    "));
+
+        String assignments = columns.keySet().stream()
+                .map(column -> column + " = COALESCE(s." + column + ", c." + column + ")")
+                .collect(Collectors.joining(",\n       "));
+
+        applySql = """
+                UPDATE customer c
+                SET    %s
+                FROM  (SELECT customer_id,
+                              %s
+                       FROM   %s
+                       GROUP BY customer_id) s
+                WHERE  c.customer_id = s.customer_id
+                """.formatted(assignments, latestValues, stagingTable);
+
+        clearStagingSql = "TRUNCATE " + stagingTable;
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends CustomerUpdate> chunk) throws Exception {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+
+        // DataSourceUtils를 사용해야 청크 트랜잭션에 묶인 커넥션을 받는다.
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+
+        try {
+            createStagingTableIfNeeded(connection);
+
+            copyIn(connection, chunk);
+
+            int updated;
+
+            try (Statement statement = connection.createStatement()) {
+                updated = statement.executeUpdate(applySql);
+                statement.execute(clearStagingSql);
+            }
+
+            logger.debug("Copied {} rows into {} and updated {} customers in {} ms",
+                    chunk.size(), stagingTable, updated, (System.nanoTime() - startedAt) / 1_000_000);
+        }
+        finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void createStagingTableIfNeeded(Connection connection) throws SQLException {
+        PGConnection session = connection.unwrap(PGConnection.class);
+
+        if (!stagedConnections.add(session)) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(createStagingSql);
+        }
+        catch (SQLException | RuntimeException e) {
+            stagedConnections.remove(session);
+            throw e;
+        }
+
+        // 트랜잭션 안에서 만든 TEMP 테이블은 롤백되면 함께 없어진다.
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        stagedConnections.remove(session);
+                    }
+                }
+            });
+        }
+    }
+
+    private void copyIn(Connection connection, Chunk<? extends CustomerUpdate> chunk) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+
+        try {
+            StringBuilder line = new StringBuilder(256);
+            int seq = 0;
+
+            for (CustomerUpdate item : chunk) {
+                T update = type.cast(item);
+
+                line.setLength(0);
+                line.append(seq++).append(',').append(update.getCustomerId());
+
+                for (Function<T, Object> extractor : columns.values()) {
+                    line.append(',');
+                    appendCsvValue(line, extractor.apply(update));
+                }
+                line.append('\n');
+
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+            }
+
+            copyIn.endCopy();
+        }
+        finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    // CSV 포맷에서 따옴표 없는 빈 값은 NULL, 따옴표로 감싼 값은 문자열로 들어간다.
+    private static void appendCsvValue(StringBuilder line, Object value) {
+        if (value == null) {
+            return;
+        }
+
+        String text = value.toString();
+
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
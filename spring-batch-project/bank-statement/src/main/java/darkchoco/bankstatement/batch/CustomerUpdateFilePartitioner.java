@@ -0,0 +1,95 @@
+package darkchoco.bankstatement.batch;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 입력 파일을 gridSize 개의 바이트 구간으로 나누는 Partitioner.
+ * <p>
+ * 각 구간의 경계는 다음 줄의 시작으로 옮겨 맞추므로 한 줄이 두 partition에 걸치지 않는다.
+ * 구간은 ExecutionContext의 startOffset/endOffset으로 전달되고, worker step에서는
+ * {@link ByteRangeLineItemReader}가 이 값을 받아 자기 구간만 읽는다.
+ * 압축된 입력은 바이트 구간으로 나눌 수 없으므로, 압축을 푼 파일(또는 정렬/compaction 결과)을 사용해야 한다.
+ * jar 안의 classpath 리소스도 파일이 아니므로 FileSystemResource 등 파일 시스템의 파일을 넘겨야 한다.
+ */
+public class CustomerUpdateFilePartitioner implements Partitioner {
+
+    public static final String START_OFFSET = "startOffset";
+    public static final String END_OFFSET = "endOffset";
+
+    private final Resource resource;
+
+    public CustomerUpdateFilePartitioner(Resource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    @NonNull
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Assert.state(resource.isFile(), () -> "Partitioning requires an uncompressed file on the file system: " + resource
+                + "; set customer.update.partition.file to the uncompressed input");
+
+        try (FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            int partitions = (int) Math.max(1, Math.min(gridSize, size));
+
+            Map<String, ExecutionContext> result = new HashMap<>(partitions);
+            long start = 0;
+
+            for (int i = 0; i < partitions && start < size; i++) {
+                long end = (i == partitions - 1) ? size : nextLineStart(channel, size * (i + 1) / partitions - 1, size);
+
+                if (end <= start) {
+                    continue;
+                }
+
+                ExecutionContext context = new ExecutionContext();
+                context.putLong(START_OFFSET, start);
+                context.putLong(END_OFFSET, end);
+                result.put("partition" + i, context);
+
+                start = end;
+            }
+
+            return result;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to partition " + resource, e);
+        }
+    }
+
+    // offset 위치(포함) 이후 처음 나오는 줄바꿈 다음, 즉 다음 줄의 시작 위치를 찾는다.
+    private static long nextLineStart(FileChannel channel, long offset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        long position = offset;
+
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,320 @@
+package darkchoco.bankstatement.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * customer update 파일을 customerId 순으로 정렬해 새 파일로 쓰는 tasklet (external merge sort).
+ * <p>
+ * 입력을 memoryBudgetBytes 만큼씩 읽어 메모리에서 정렬한 뒤 spill 파일(run)로 내리고,
+ * 마지막에 run들을 k-way merge 해서 출력 파일을 만든다. 전체가 메모리에 들어가면 spill 없이 바로 쓴다.
+ * 한 번에 여는 run은 maxMergeFanIn 개까지이다. run이 더 많으면 이웃한 run끼리 묶어 중간 run으로 merge 하는 pass를
+ * run 수가 maxMergeFanIn 이하가 될 때까지 반복한다.
+ * <p>
+ * 같은 customerId 안에서는 원래 파일 순서를 유지한다. run 안에서는 안정 정렬을 사용하고,
+ * merge 시 customerId가 같으면 앞선 run을 먼저 내보내므로 별도의 순번을 저장할 필요가 없다.
+ * 중간 pass도 이웃한 run만 묶으므로 중간 run은 파일 순서대로 놓인다.
+ * 따라서 정렬된 파일을 import 해도 고객별 변경의 적용 순서는 바뀌지 않는다.
+ * <p>
+ * comment('#') 줄은 reader가 어차피 건너뛰므로 버리고, customerId를 읽을 수 없는 줄은 맨 뒤로 보내
+ * 기존과 같이 import 단계에서 오류가 나게 한다.
+ * <p>
+ * 정렬 건수, 초당 정렬 건수, spill 파일 수와 spill 바이트 수(중간 run 포함), 중간 merge pass 수는 step ExecutionContext에 기록한다.
+ */
+public class CustomerUpdateSortTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerUpdateSortTasklet.class);
+
+    // 줄 하나를 메모리에 들고 있을 때의 대략적인 비용 (String, byte[], 정렬용 객체와 참조)
+    private static final int LINE_OVERHEAD_BYTES = 80;
+
+    private static final Comparator<SortLine> BY_CUSTOMER_ID = Comparator.comparingLong(SortLine::customerId);
+
+    private final Resource input;
+    private final Path output;
+
+    private long memoryBudgetBytes = 64L * 1024 * 1024;
+    private int maxMergeFanIn = 1024;
+    private Path tempDirectory;
+
+    public CustomerUpdateSortTasklet(Resource input, Path output) {
+        Assert.notNull(input, "Input resource must not be null");
+        Assert.notNull(output, "Output path must not be null");
+
+        this.input = input;
+        this.output = output;
+    }
+
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * 한 번의 merge에서 동시에 여는 run 수. 파일 핸들과 run마다의 read buffer가 이 수만큼 필요하다.
+     */
+    public void setMaxMergeFanIn(int maxMergeFanIn) {
+        Assert.isTrue(maxMergeFanIn >= 2, "maxMergeFanIn must be at least 2");
+        this.maxMergeFanIn = maxMergeFanIn;
+    }
+
+    /**
+     * spill 파일을 만들 디렉터리. 지정하지 않으면 출력 파일과 같은 디렉터리를 사용한다.
+     */
+    public void setTempDirectory(Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) throws Exception {
+        long startedAt = System.nanoTime();
+
+        Path absoluteOutput = output.toAbsolutePath();
+        Path spillDirectory = tempDirectory != null ? tempDirectory : absoluteOutput.getParent();
+        Files.createDirectories(absoluteOutput.getParent());
+        Files.createDirectories(spillDirectory);
+
+        // 지금 merge 할 run들과, 실패해도 지울 수 있도록 만든 spill 파일 전체
+        List<Path> runs = new ArrayList<>();
+        List<Path> spillFiles = new ArrayList<>();
+        long lines = 0;
+        long spillBytes = 0;
+        int mergePasses = 0;
+
+        try {
+            List<SortLine> buffer = new ArrayList<>();
+            long bufferedBytes = 0;
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(input.getInputStream(), StandardCharsets.UTF_8), 64 * 1024)) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("#")) {
+                        continue;
+                    }
+
+                    buffer.add(new SortLine(parseCustomerId(line), line));
+                    bufferedBytes += LINE_OVERHEAD_BYTES + line.length();
+                    lines++;
+
+                    if (bufferedBytes >= memoryBudgetBytes) {
+                        Path run = spill(buffer, spillDirectory);
+                        runs.add(run);
+                        spillFiles.add(run);
+                        spillBytes += Files.size(run);
+
+                        buffer.clear();
+                        bufferedBytes = 0;
+                    }
+                }
+            }
+
+            // 임시 파일에 쓴 뒤 옮겨서, 중간에 실패해도 이전 출력 파일이 반쯤 쓰인 상태로 남지 않게 한다.
+            Path temporaryOutput = Files.createTempFile(absoluteOutput.getParent(), "customer-update-sorted-", ".tmp");
+
+            try {
+                if (runs.isEmpty()) {
+                    buffer.sort(BY_CUSTOMER_ID);
+                    writeLines(buffer, temporaryOutput);
+                }
+                else {
+                    if (!buffer.isEmpty()) {
+                        Path run = spill(buffer, spillDirectory);
+                        runs.add(run);
+                        spillFiles.add(run);
+                        spillBytes += Files.size(run);
+                        buffer.clear();
+                    }
+
+                    while (runs.size() > maxMergeFanIn) {
+                        List<Path> merged = new ArrayList<>();
+
+                        for (int from = 0; from < runs.size(); from += maxMergeFanIn) {
+                            List<Path> group = runs.subList(from, Math.min(from + maxMergeFanIn, runs.size()));
+
+                            if (group.size() == 1) {
+                                merged.add(group.get(0));
+                                continue;
+                            }
+
+                            Path run = Files.createTempFile(spillDirectory, "customer-update-run-", ".csv");
+                            spillFiles.add(run);
+                            merge(group, run);
+                            spillBytes += Files.size(run);
+
+                            // 다음 pass에서는 필요 없으므로 디스크를 바로 돌려준다.
+                            for (Path mergedRun : group) {
+                                Files.delete(mergedRun);
+                            }
+                            merged.add(run);
+                        }
+
+                        runs = merged;
+                        mergePasses++;
+                    }
+
+                    merge(runs, temporaryOutput);
+                }
+
+                Files.move(temporaryOutput, absoluteOutput, StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally {
+                Files.deleteIfExists(temporaryOutput);
+            }
+        }
+        finally {
+            for (Path spillFile : spillFiles) {
+                Files.deleteIfExists(spillFile);
+            }
+        }
+
+        long millis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        double linesPerSecond = lines * 1000.0 / millis;
+
+        ExecutionContext executionContext = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        executionContext.putLong("sort.lines", lines);
+        executionContext.putLong("sort.millis", millis);
+        executionContext.putDouble("sort.linesPerSecond", linesPerSecond);
+        executionContext.putInt("sort.spillFiles", spillFiles.size());
+        executionContext.putLong("sort.spillBytes", spillBytes);
+        executionContext.putInt("sort.mergePasses", mergePasses);
+
+        logger.info("Sorted {} customer update lines into {} in {} ms ({} lines/sec, {} spill files, {} spill bytes, {} intermediate merge passes)",
+                String.format("%,d", lines),
+                absoluteOutput,
+                String.format("%,d", millis),
+                String.format("%,.1f", linesPerSecond),
+                spillFiles.size(),
+                String.format("%,d", spillBytes),
+                mergePasses);
+
+        return RepeatStatus.FINISHED;
+    }
+
+    private static Path spill(List<SortLine> buffer, Path directory) throws IOException {
+        buffer.sort(BY_CUSTOMER_ID);
+
+        Path run = Files.createTempFile(directory, "customer-update-run-", ".csv");
+        writeLines(buffer, run);
+
+        return run;
+    }
+
+    private static void writeLines(List<SortLine> lines, Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (SortLine line : lines) {
+                writer.write(line.line());
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void merge(List<Path> runs, Path path) throws IOException {
+        // customerId가 같으면 앞선 run(= 파일에서 먼저 나온 줄)을 먼저 내보낸다.
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(runs.size(),
+                Comparator.comparingLong(RunCursor::customerId).thenComparingInt(RunCursor::runIndex));
+        List<BufferedReader> readers = new ArrayList<>(runs.size());
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < runs.size(); i++) {
+                BufferedReader reader = Files.newBufferedReader(runs.get(i), StandardCharsets.UTF_8);
+                readers.add(reader);
+
+                RunCursor cursor = new RunCursor(i, reader);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                RunCursor cursor = queue.poll();
+
+                writer.write(cursor.line);
+                writer.newLine();
+
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        }
+        finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    // "recordType,customerId,..." 에서 customerId를 읽는다. 읽을 수 없으면 맨 뒤로 보낸다.
+    private static long parseCustomerId(String line) {
+        int start = line.indexOf(',');
+        int end = start < 0 ? -1 : line.indexOf(',', start + 1);
+
+        if (start < 0) {
+            return Long.MAX_VALUE;
+        }
+
+        try {
+            return Long.parseLong(line.substring(start + 1, end < 0 ? line.length() : end).trim());
+        }
+        catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private record SortLine(long customerId, String line) {
+    }
+
+    private static final class RunCursor {
+
+        private final int runIndex;
+        private final BufferedReader reader;
+
+        private String line;
+        private long customerId;
+
+        private RunCursor(int runIndex, BufferedReader reader) {
+            this.runIndex = runIndex;
+            this.reader = reader;
+        }
+
+        private boolean advance() throws IOException {
+            line = reader.readLine();
+
+            if (line == null) {
+                return false;
+            }
+            customerId = parseCustomerId(line);
+
+            return true;
+        }
+
+        private int runIndex() {
+            return runIndex;
+        }
+
+        private long customerId() {
+            return customerId;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package darkchoco.bankstatement.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 재시작 시 입력 파일이 바뀌었는지 확인하기 위한 파일 지문.
+ * <p>
+ * 파일 크기와 앞부분 {@value #HEAD_SIZE} 바이트의 CRC32로 만든다. 파일을 다시 생성하거나 뒤에 줄을 덧붙이면
+ * 크기가 달라지고, 앞부분을 고치면 CRC가 달라진다. 수정 시각은 내용이 같아도 복사만으로 바뀌므로 사용하지 않는다.
+ * <p>
+ * 지문은 open 시 한 번만 계산하고, 커밋마다 저장하는 것은 이미 만든 문자열이므로 청크 처리에 부담이 없다.
+ */
+final class FileFingerprint {
+
+    private static final int HEAD_SIZE = 64 * 1024;
+
+    private FileFingerprint() {
+    }
+
+    static String of(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(HEAD_SIZE, size));
+
+        int read;
+
+        do {
+            read = channel.read(head, head.position());
+        } while (read > 0 && head.hasRemaining());
+
+        head.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(head);
+
+        return size + ":" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * offset이 줄의 시작인지 확인한다. 저장된 offset이 줄 중간을 가리키면 그 위치로 이동할 수 없다.
+     */
+    static boolean isLineStart(FileChannel channel, long offset) throws IOException {
+        if (offset == 0) {
+            return true;
+        }
+
+        if (offset > channel.size()) {
+            return false;
+        }
+
+        ByteBuffer previous = ByteBuffer.allocate(1);
+
+        return channel.read(previous, offset - 1) == 1 && previous.get(0) == '\n';
+    }
+}
@@ -0,0 +1,367 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.domain.CustomerAddressUpdate;
+import darkchoco.bankstatement.domain.CustomerContactUpdate;
+import darkchoco.bankstatement.domain.CustomerNameUpdate;
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * customer update 파일을 memory-map 해서 읽고, 줄의 첫 바이트(record type)로 바로 분기하는 reader.
+ * <p>
+ * PatternMatchingCompositeLineTokenizer + FieldSet + FieldSetMapper 경로와 달리 줄 String, 토큰 배열,
+ * FieldSet을 만들지 않고 콤마 위치만 찾아 CustomerNameUpdate/CustomerAddressUpdate/CustomerContactUpdate
+ * 생성자에 필요한 필드만 String으로 만든다.
+ * <p>
+ * 결과는 기존 reader와 같아야 하므로, 빠른 경로가 처리하지 않는 줄(따옴표가 있는 줄, 토큰 수가 맞지 않는 줄,
+ * 숫자 형식이 다른 줄, 알 수 없는 record type)은 기존 LineMapper(fallback)에 그대로 넘긴다.
+ * 이렇게 하면 예외를 포함한 동작이 기존과 같다.
+ * <p>
+ * {@link ByteRangeLineItemReader}처럼 [startOffset, endOffset) 구간만 읽을 수 있고,
+ * 커밋 시 다음 줄의 바이트 위치, 줄 번호와 파일 지문을 저장했다가 재시작 시 그 위치로 바로 이동한다.
+ * 파일이 바뀌었으면 기존처럼 read count만큼 줄을 건너뛴다.
+ */
+public class MappedCustomerUpdateItemReader extends AbstractItemCountingItemStreamItemReader<CustomerUpdate> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedCustomerUpdateItemReader.class);
+
+    private static final String OFFSET = "offset";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String LINE_NUMBER = "line.number";
+
+    // 2GB 이상의 파일도 읽을 수 있도록 일정 크기씩 나누어 map 한다.
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    // FlatFileItemReader의 기본 comment prefix
+    private static final byte COMMENT = '#';
+
+    private static final int MAX_FIELDS = 7;
+
+    private final Resource resource;
+    private final long startOffset;
+    private final long endOffset;
+    private final LineMapper<CustomerUpdate> fallbackLineMapper;
+
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    // 다음에 읽을 줄의 시작 위치(파일 기준 절대 offset)
+    private long position;
+    private long resumeOffset = -1;
+    private String resumeFingerprint;
+    private int resumeLineNumber = -1;
+    private String fingerprint;
+    private int lineNumber;
+
+    private byte[] line = new byte[512];
+    private int lineLength;
+    private final int[] fieldStarts = new int[MAX_FIELDS];
+    private final int[] fieldEnds = new int[MAX_FIELDS];
+
+    public MappedCustomerUpdateItemReader(Resource resource, LineMapper<CustomerUpdate> fallbackLineMapper) {
+        this(resource, 0, -1, fallbackLineMapper);
+    }
+
+    /**
+     * @param endOffset 읽기를 멈출 위치. 음수이면 파일 끝까지 읽는다.
+     */
+    public MappedCustomerUpdateItemReader(Resource resource, long startOffset, long endOffset,
+                                          LineMapper<CustomerUpdate> fallbackLineMapper) {
+        Assert.notNull(resource, "Resource must not be null");
+        Assert.notNull(fallbackLineMapper, "Fallback LineMapper must not be null");
+        Assert.isTrue(startOffset >= 0, "startOffset must not be negative");
+
+        this.resource = resource;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.fallbackLineMapper = fallbackLineMapper;
+    }
+
+    @Override
+    public void open(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        String offsetKey = getExecutionContextKey(OFFSET);
+        resumeOffset = executionContext.containsKey(offsetKey) ? executionContext.getLong(offsetKey) : -1;
+        resumeFingerprint = executionContext.getString(getExecutionContextKey(FINGERPRINT), null);
+        // comment 줄도 줄 번호에 포함되므로 read count와 다를 수 있다. 이전 실행에서 저장하지 않았으면 -1이다.
+        resumeLineNumber = executionContext.getInt(getExecutionContextKey(LINE_NUMBER), -1);
+
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (isSaveState()) {
+            executionContext.putLong(getExecutionContextKey(OFFSET), position);
+            executionContext.putString(getExecutionContextKey(FINGERPRINT), fingerprint);
+            executionContext.putInt(getExecutionContextKey(LINE_NUMBER), lineNumber);
+        }
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        Assert.state(resource.isFile(), () -> "Reading by byte offset requires an uncompressed file on the file system: " + resource);
+
+        channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+        fileSize = channel.size();
+        fingerprint = FileFingerprint.of(channel);
+        window = null;
+        position = startOffset;
+        lineNumber = 0;
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        if (resumeOffset >= 0) {
+            if (fingerprint.equals(resumeFingerprint) && FileFingerprint.isLineStart(channel, resumeOffset)) {
+                position = resumeOffset;
+                lineNumber = resumeLineNumber >= 0 ? resumeLineNumber : itemIndex;
+                return;
+            }
+
+            logger.warn("{} has changed since the last run, skipping {} items instead of seeking to offset {}",
+                    resource, itemIndex, resumeOffset);
+        }
+
+        super.jumpToItem(itemIndex);
+    }
+
+    @Override
+    protected CustomerUpdate doRead() throws Exception {
+        while (nextLine()) {
+            lineNumber++;
+
+            if (lineLength > 0 && line[0] == COMMENT) {
+                continue;
+            }
+
+            return mapLine();
+        }
+
+        return null;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        window = null;
+
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        resumeOffset = -1;
+        resumeFingerprint = null;
+        resumeLineNumber = -1;
+    }
+
+    private CustomerUpdate mapLine() throws Exception {
+        // "1," "2," "3," 로 시작하는 줄만 빠른 경로로 처리한다.
+        byte recordType = lineLength > 1 && line[1] == ',' ? line[0] : 0;
+
+        int expectedFields = switch (recordType) {
+            case '1' -> 5;
+            case '2', '3' -> 7;
+            default -> -1;
+        };
+
+        if (expectedFields < 0 || !split(expectedFields)) {
+            return fallback();
+        }
+
+        long customerId = parseLong(1);
+
+        if (customerId == Long.MIN_VALUE) {
+            return fallback();
+        }
+
+        switch (recordType) {
+            case '1':
+                return new CustomerNameUpdate(customerId, field(2), field(3), field(4));
+            case '2':
+                return new CustomerAddressUpdate(customerId, field(2), field(3), field(4), field(5), field(6));
+            default:
+                Integer notificationPreference = null;
+
+                if (trimmedStart(6) < trimmedEnd(6)) {
+                    long preference = parseLong(6);
+
+                    if (preference < Integer.MIN_VALUE || preference > Integer.MAX_VALUE) {
+                        return fallback();
+                    }
+                    notificationPreference = (int) preference;
+                }
+
+                return new CustomerContactUpdate(customerId, field(2), field(3), field(4), field(5),
+                        notificationPreference);
+        }
+    }
+
+    private CustomerUpdate fallback() throws Exception {
+        return fallbackLineMapper.mapLine(new String(line, 0, lineLength, StandardCharsets.UTF_8), lineNumber);
+    }
+
+    // 콤마 위치로 필드 경계를 기록한다. 따옴표가 있거나 필드 수가 맞지 않으면 false.
+    private boolean split(int expectedFields) {
+        int count = 0;
+        int start = 0;
+
+        for (int i = 0; i < lineLength; i++) {
+            byte b = line[i];
+
+            if (b == '"') {
+                return false;
+            }
+
+            if (b == ',') {
+                if (count == expectedFields - 1) {
+                    return false;
+                }
+                fieldStarts[count] = start;
+                fieldEnds[count] = i;
+                count++;
+                start = i + 1;
+            }
+        }
+
+        fieldStarts[count] = start;
+        fieldEnds[count] = lineLength;
+
+        return count + 1 == expectedFields;
+    }
+
+    // FieldSet.readString()처럼 앞뒤 공백을 제거한다. 빈 값은 생성자에서 어차피 null이 되므로 바로 null을 넘긴다.
+    private String field(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index);
+
+        return start < end ? new String(line, start, end - start, StandardCharsets.UTF_8) : null;
+    }
+
+    private int trimmedStart(int index) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+
+        while (start < end && (line[start] & 0xff) <= ' ') {
+            start++;
+        }
+
+        return start;
+    }
+
+    private int trimmedEnd(int index) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+
+        while (end > start && (line[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+
+        return end;
+    }
+
+    // 부호('-')와 숫자로만 된 18자리 이하의 값만 처리하고, 나머지는 Long.MIN_VALUE를 반환해 fallback 하게 한다.
+    // FieldSet.readLong()은 NumberFormat으로 읽으므로 '+'로 시작하는 값은 받지 않는다.
+    private long parseLong(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index);
+        boolean negative = false;
+
+        if (start < end && line[start] == '-') {
+            negative = true;
+            start++;
+        }
+
+        if (start == end || end - start > 18) {
+            return Long.MIN_VALUE;
+        }
+
+        long value = 0;
+
+        for (int i = start; i < end; i++) {
+            int digit = line[i] - '0';
+
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+
+        return negative ? -value : value;
+    }
+
+    // 다음 줄을 line 버퍼로 복사한다. 줄 끝의 "\r\n" 또는 "\n"은 제외한다.
+    private boolean nextLine() throws IOException {
+        long limit = endOffset >= 0 ? Math.min(endOffset, fileSize) : fileSize;
+
+        if (position >= limit) {
+            return false;
+        }
+
+        if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+            map(position);
+        }
+
+        int from = (int) (position - windowStart);
+        int i = from;
+        int windowLimit = window.limit();
+
+        while (true) {
+            while (i < windowLimit && window.get(i) != '\n') {
+                i++;
+            }
+
+            if (i < windowLimit || windowStart + windowLimit >= fileSize) {
+                break;
+            }
+
+            // 줄이 window 경계에 걸쳐 있으면 줄의 시작부터 다시 map 한다.
+            if (from == 0) {
+                throw new IllegalStateException("Line is longer than the mapping window at offset " + position);
+            }
+            map(position);
+            i -= from;
+            from = 0;
+            windowLimit = window.limit();
+        }
+
+        int length = i - from;
+        boolean newline = i < windowLimit;
+
+        if (length > line.length) {
+            line = Arrays.copyOf(line, Math.max(length, line.length * 2));
+        }
+        window.get(from, line, 0, length);
+
+        position += length + (newline ? 1 : 0);
+
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        lineLength = length;
+
+        return true;
+    }
+
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+    }
+}
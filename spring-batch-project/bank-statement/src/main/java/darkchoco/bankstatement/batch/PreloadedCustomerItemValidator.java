@@ -0,0 +1,152 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.annotation.AfterStep;
+import org.springframework.batch.core.annotation.BeforeStep;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.validator.ValidationException;
+import org.springframework.batch.item.validator.Validator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * step 시작 시 customer_id 전체를 {@link CustomerIdIndex}로 읽어 두고 메모리에서 검증하는 Validator.
+ * <p>
+ * - 주기적으로 customer 테이블의 row 수, 최대 id, insert/delete 통계를 확인해, 실행 중에 테이블이 바뀌면 인덱스를 다시 읽는다.
+ *   통계는 몇 초 늦게 반영되고 customer_id를 바꾸는 UPDATE는 놓친다({@link CustomerIdIndex.Fingerprint} 참고).
+ * - id 공간이 너무 커서 {@code maxIndexBytes} 안에 담을 수 없으면 기존처럼 row 단위 쿼리(fallback)로 검증한다.
+ * - 인덱스 종류, 크기, 메모리 사용량, 로딩 시간, 재로딩 횟수는 step ExecutionContext에 기록한다.
+ * <p>
+ * step에 listener로 등록해야 {@link BeforeStep}/{@link AfterStep}이 호출된다.
+ */
+public class PreloadedCustomerItemValidator implements Validator<CustomerUpdate> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreloadedCustomerItemValidator.class);
+
+    private final DataSource dataSource;
+    private final Validator<CustomerUpdate> fallbackValidator;
+    private final long maxIndexBytes;
+    private final long refreshIntervalMillis;
+
+    private volatile CustomerIdIndex index;
+    private volatile long lastCheckedAt;
+    private volatile int reloadCount;
+
+    public PreloadedCustomerItemValidator(DataSource dataSource,
+                                          Validator<CustomerUpdate> fallbackValidator,
+                                          long maxIndexBytes,
+                                          long refreshIntervalMillis) {
+        this.dataSource = dataSource;
+        this.fallbackValidator = fallbackValidator;
+        this.maxIndexBytes = maxIndexBytes;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    @BeforeStep
+    public void beforeStep(StepExecution stepExecution) {
+        reloadCount = 0;
+        load();
+
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        CustomerIdIndex current = index;
+
+        if (current != null) {
+            executionContext.putString("customerIdIndex.type", current.getType());
+            executionContext.putInt("customerIdIndex.size", current.getSize());
+            executionContext.putLong("customerIdIndex.bytes", current.getEstimatedBytes());
+            executionContext.putLong("customerIdIndex.loadMillis", current.getLoadMillis());
+        }
+        else {
+            executionContext.putString("customerIdIndex.type", "query");
+        }
+    }
+
+    @AfterStep
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        stepExecution.getExecutionContext().putInt("customerIdIndex.reloads", reloadCount);
+
+        // step이 끝나면 인덱스가 차지하던 메모리를 돌려준다.
+        index = null;
+
+        return null;
+    }
+
+    @Override
+    public void validate(CustomerUpdate customer) throws ValidationException {
+        CustomerIdIndex current = refreshIfChanged();
+
+        if (current == null) {
+            fallbackValidator.validate(customer);
+            return;
+        }
+
+        if (!current.contains(customer.getCustomerId())) {
+            throw new ValidationException(
+                    String.format("Customer id %s was not able to be found", customer.getCustomerId()));
+        }
+    }
+
+    private CustomerIdIndex refreshIfChanged() {
+        CustomerIdIndex current = index;
+
+        if (current == null || System.currentTimeMillis() - lastCheckedAt < refreshIntervalMillis) {
+            return current;
+        }
+
+        synchronized (this) {
+            // 다른 스레드가 먼저 확인했을 수 있으므로 한 번 더 본다.
+            if (index != current || System.currentTimeMillis() - lastCheckedAt < refreshIntervalMillis) {
+                return index;
+            }
+
+            try {
+                CustomerIdIndex.Fingerprint fingerprint = CustomerIdIndex.readFingerprint(dataSource);
+
+                if (!fingerprint.equals(current.getFingerprint())) {
+                    logger.info("Customer table changed ({} -> {}), reloading customer id index",
+                            current.getFingerprint(), fingerprint);
+                    reloadCount++;
+                    load();
+                }
+                else {
+                    lastCheckedAt = System.currentTimeMillis();
+                }
+            }
+            catch (SQLException e) {
+                // ValidationException을 던지면 filter 처리되어 item이 조용히 버려지므로 step을 실패시킨다.
+                throw new IllegalStateException("Failed to check customer table for changes", e);
+            }
+
+            return index;
+        }
+    }
+
+    private synchronized void load() {
+        try {
+            CustomerIdIndex loaded = CustomerIdIndex.load(dataSource, maxIndexBytes);
+
+            if (loaded == null) {
+                logger.warn("Customer id space does not fit in {} bytes, validating with per-row query",
+                        String.format("%,d", maxIndexBytes));
+            }
+            else {
+                logger.info("Loaded {} customer ids into {} index - {} bytes in {} ms",
+                        String.format("%,d", loaded.getSize()),
+                        loaded.getType(),
+                        String.format("%,d", loaded.getEstimatedBytes()),
+                        loaded.getLoadMillis());
+            }
+
+            index = loaded;
+            lastCheckedAt = System.currentTimeMillis();
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException("Failed to load customer id index", e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package darkchoco.bankstatement.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * step이 끝나면 초당 처리 건수를 로그로 남기고 step ExecutionContext에 기록한다.
+ */
+public class StepThroughputListener implements StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StepThroughputListener.class);
+
+    private final String itemName;
+
+    public StepThroughputListener(String itemName) {
+        this.itemName = itemName;
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        LocalDateTime startTime = stepExecution.getStartTime();
+        long millis = startTime != null ? Math.max(1, Duration.between(startTime, LocalDateTime.now()).toMillis()) : 1;
+        long writeCount = stepExecution.getWriteCount();
+        double perSecond = writeCount * 1000.0 / millis;
+
+        stepExecution.getExecutionContext().putDouble(itemName + "PerSecond", perSecond);
+
+        logger.info("{} - {} {} in {} ms ({} {}/sec)",
+                stepExecution.getStepName(),
+                String.format("%,d", writeCount),
+                itemName,
+                String.format("%,d", millis),
+                String.format("%,.1f", perSecond),
+                itemName);
+
+        return null;
+    }
+}
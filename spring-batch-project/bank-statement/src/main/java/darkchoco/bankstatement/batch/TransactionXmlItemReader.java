@@ -0,0 +1,152 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.domain.Transaction;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * transactions.xml 의 {@code <transaction>} 요소를 StAX cursor(XMLStreamReader)로 하나씩 읽는 reader.
+ * <p>
+ * DOM이나 fragment 단위 객체(XMLEvent, unmarshaller 입력)를 만들지 않고 필요한 요소의 텍스트만 꺼내므로
+ * 파일 크기와 관계없이 메모리 사용량이 일정하다. 비어 있는 {@code <credit/>}, {@code <debit/>}는 null로 매핑한다.
+ * {@code <transactionId>}, {@code <accountId>}가 없거나 숫자가 아니면 해당 {@code <transaction>}의 위치를 담은
+ * {@link ParseException}을 던진다.
+ */
+public class TransactionXmlItemReader extends AbstractItemCountingItemStreamItemReader<Transaction> {
+
+    private static final String TRANSACTION = "transaction";
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Resource resource;
+
+    private InputStream inputStream;
+    private XMLStreamReader xmlReader;
+
+    // 현재 읽고 있는 <transaction> 시작 태그의 줄 번호. 오류 메시지에 사용한다.
+    private int fragmentLine;
+
+    public TransactionXmlItemReader(Resource resource) {
+        Assert.notNull(resource, "Resource must not be null");
+
+        this.resource = resource;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+
+        // 외부 엔티티(XXE)와 DTD는 사용하지 않는다.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        inputStream = resource.getInputStream();
+        xmlReader = factory.createXMLStreamReader(inputStream);
+    }
+
+    @Override
+    protected Transaction doRead() throws Exception {
+        if (!moveToNextTransaction()) {
+            return null;
+        }
+
+        String transactionId = null;
+        String accountId = null;
+        String description = null;
+        String credit = null;
+        String debit = null;
+        String timestamp = null;
+
+        while (xmlReader.hasNext()) {
+            int event = xmlReader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xmlReader.getLocalName();
+                // getElementText()는 <credit/> 같은 빈 요소에 대해 ""를 반환하고 END_ELEMENT로 이동한다.
+                String text = xmlReader.getElementText();
+
+                switch (name) {
+                    case "transactionId" -> transactionId = text;
+                    case "accountId" -> accountId = text;
+                    case "description" -> description = text;
+                    case "credit" -> credit = text;
+                    case "debit" -> debit = text;
+                    case "timestamp" -> timestamp = text;
+                    default -> {
+                        // 알 수 없는 요소는 무시한다.
+                    }
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT && TRANSACTION.equals(xmlReader.getLocalName())) {
+                return new Transaction(
+                        parseId("transactionId", transactionId),
+                        parseId("accountId", accountId),
+                        description,
+                        toBigDecimal(credit),
+                        toBigDecimal(debit),
+                        StringUtils.hasText(timestamp)
+                                ? LocalDateTime.parse(timestamp.trim(), TIMESTAMP_FORMAT) : null);
+            }
+        }
+
+        throw new XMLStreamException("Unexpected end of document inside <transaction> at item " + getCurrentItemCount());
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (xmlReader != null) {
+            xmlReader.close();
+            xmlReader = null;
+        }
+
+        if (inputStream != null) {
+            inputStream.close();
+            inputStream = null;
+        }
+    }
+
+    private boolean moveToNextTransaction() throws XMLStreamException {
+        while (xmlReader.hasNext()) {
+            if (xmlReader.next() == XMLStreamConstants.START_ELEMENT && TRANSACTION.equals(xmlReader.getLocalName())) {
+                fragmentLine = xmlReader.getLocation().getLineNumber();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private long parseId(String name, String value) {
+        if (!StringUtils.hasText(value)) {
+            throw new ParseException(describeFragment() + " has no <" + name + ">");
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new ParseException(describeFragment() + " has an invalid <" + name + ">: '" + value + "'", e);
+        }
+    }
+
+    // getCurrentItemCount()는 doRead() 호출 전에 이미 증가해 있으므로 지금 읽는 item의 번호(1부터)이다.
+    private String describeFragment() {
+        return "<transaction> at line " + fragmentLine + " (item " + getCurrentItemCount() + ") of " + resource.getDescription();
+    }
+
+    private static BigDecimal toBigDecimal(String value) {
+        return StringUtils.hasText(value) ? new BigDecimal(value.trim()) : null;
+    }
+}
@@ -2,34 +2,56 @@ package darkchoco.bankstatement.configuration;
 
 import darkchoco.bankstatement.batch.*;
 import darkchoco.bankstatement.domain.CustomerAddressUpdate;
+import darkchoco.bankstatement.domain.CustomerCombinedUpdate;
 import darkchoco.bankstatement.domain.CustomerContactUpdate;
 import darkchoco.bankstatement.domain.CustomerNameUpdate;
 import darkchoco.bankstatement.domain.CustomerUpdate;
+import darkchoco.bankstatement.domain.Transaction;
+import darkchoco.batchsupport.AdaptiveChunkCompletionPolicy;
+import darkchoco.batchsupport.BisectingItemWriter;
+import darkchoco.batchsupport.ChunkLoggingListener;
+import darkchoco.batchsupport.DecompressingResource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.FlowBuilder;
+import org.springframework.batch.core.job.builder.FlowJobBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
-import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
 import org.springframework.batch.item.file.mapping.FieldSetMapper;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.batch.item.file.transform.LineTokenizer;
 import org.springframework.batch.item.file.transform.PatternMatchingCompositeLineTokenizer;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
 import org.springframework.batch.item.support.ClassifierCompositeItemWriter;
 import org.springframework.batch.item.validator.ValidatingItemProcessor;
+import org.springframework.batch.item.validator.Validator;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -38,6 +60,114 @@ public class BatchConfiguation {
     @Value("${file.input}")
     private String fileInput;
 
+    // query: item마다 customer 테이블 조회, preload: step 시작 시 customer_id 전체를 메모리에 적재
+    @Value("${customer.validator.mode:query}")
+    private String validatorMode;
+
+    @Value("${customer.validator.preload.max-bytes:67108864}")
+    private long validatorPreloadMaxBytes;
+
+    @Value("${customer.validator.preload.refresh-interval-ms:30000}")
+    private long validatorPreloadRefreshIntervalMillis;
+
+    // true이면 청크의 item을 읽는 즉시 virtual thread에서 검증을 시작하고, 결과는 입력 순서대로 모은다.
+    @Value("${customer.validator.async.enabled:false}")
+    private boolean asyncValidation;
+
+    @Value("${customer.validator.async.concurrency:8}")
+    private int asyncValidationConcurrency;
+
+    // true이면 청크 안에서 같은 고객의 변경을 합쳐 고객당 UPDATE 한 번으로 기록한다.
+    @Value("${customer.update.coalesce:false}")
+    private boolean coalesceUpdates;
+
+    @Value("${customer.update.chunk-size:50}")
+    private int chunkSize;
+
+    // true이면 chunk-size에서 시작해 write + commit 시간이 target-commit-ms에 맞도록 청크 크기를 조절한다.
+    @Value("${customer.update.chunk.adaptive:false}")
+    private boolean adaptiveChunk;
+
+    @Value("${customer.update.chunk.min-size:10}")
+    private int minChunkSize;
+
+    @Value("${customer.update.chunk.max-size:1000}")
+    private int maxChunkSize;
+
+    @Value("${customer.update.chunk.target-commit-ms:500}")
+    private long targetCommitMillis;
+
+    // jdbc: 단건 UPDATE의 JDBC batch, copy: PostgreSQL COPY로 staging 테이블에 적재 후 set-based UPDATE
+    @Value("${customer.update.writer:jdbc}")
+    private String updateWriterType;
+
+    // true이면 청크의 UPDATE가 행 단위 오류로 실패할 때 청크를 반씩 나누어 다시 써서 실패한 item만 건너뛴다.
+    @Value("${customer.update.writer.bisect.enabled:false}")
+    private boolean bisectFailedWrites;
+
+    @Value("${customer.update.writer.bisect.skip-limit:100}")
+    private int bisectSkipLimit;
+
+    // flatfile: FlatFileItemReader + PatternMatchingCompositeLineTokenizer, mapped: MappedCustomerUpdateItemReader
+    @Value("${customer.update.reader:flatfile}")
+    private String updateReaderType;
+
+    // true이면 입력 파일을 줄 단위로 맞춘 바이트 구간으로 나누어 여러 스레드에서 import 한다.
+    @Value("${customer.update.partitioned:false}")
+    private boolean partitioned;
+
+    @Value("${customer.update.partition.grid-size:4}")
+    private int partitionGridSize;
+
+    @Value("${customer.update.partition.pool-size:4}")
+    private int partitionPoolSize;
+
+    // partition으로 나누어 읽을 파일 시스템의 파일. 비어 있으면 customerUpdateResource()를 사용한다.
+    @Value("${customer.update.partition.file:}")
+    private String partitionFile;
+
+    // true이면 import 전에 입력 파일을 고객과 record type마다 한 줄로 줄이고, 줄인 파일을 import 한다.
+    @Value("${customer.update.compact.enabled:false}")
+    private boolean compactUpdates;
+
+    @Value("${customer.update.compact.output:compacted/customer_update_compacted.csv}")
+    private String compactOutput;
+
+    @Value("${customer.update.compact.memory-budget-bytes:67108864}")
+    private long compactMemoryBudgetBytes;
+
+    @Value("${customer.update.compact.temp-dir:}")
+    private String compactTempDirectory;
+
+    // true이면 import 전에 입력 파일을 customerId 순으로 정렬하고, 정렬된 파일을 import 한다.
+    @Value("${customer.update.sort.enabled:false}")
+    private boolean sortUpdates;
+
+    @Value("${customer.update.sort.output:sorted/customer_update_sorted.csv}")
+    private String sortOutput;
+
+    @Value("${customer.update.sort.memory-budget-bytes:67108864}")
+    private long sortMemoryBudgetBytes;
+
+    @Value("${customer.update.sort.max-merge-fan-in:1024}")
+    private int sortMaxMergeFanIn;
+
+    @Value("${customer.update.sort.temp-dir:}")
+    private String sortTempDirectory;
+
+    @Value("${transaction.file.input:data/transactions.xml}")
+    private String transactionFileInput;
+
+    @Value("${transaction.chunk-size:500}")
+    private int transactionChunkSize;
+
+    // 청크 단계별 시간 지표 파일을 쓸 디렉터리. 비어 있으면 로그만 남긴다.
+    @Value("${batch.metrics.directory:}")
+    private String metricsDirectory;
+
+    @Value("${batch.metrics.report-interval-ms:10000}")
+    private long metricsReportIntervalMillis;
+
     private final DataSource dataSource;
 
     public BatchConfiguation(DataSource dataSource) {
@@ -45,32 +175,285 @@ public class BatchConfiguation {
     }
 
     @Bean
-    public Job bankStatementJob(JobRepository jobRepository, JobCompletionNotificationListener listener, Step step) {
-        return new JobBuilder("bankStatementJob", jobRepository)
+    public Job bankStatementJob(JobRepository jobRepository,
+                                PlatformTransactionManager transactionManager,
+                                JobCompletionNotificationListener listener) throws Exception {
+        // Step 빈이 여러 개이므로 주입받지 않고 설정에 따라 직접 고른다.
+        Step step = partitioned
+                ? importCustomerUpdatesPartitioned(jobRepository, transactionManager)
+                : importCustomerUpdates(jobRepository, transactionManager);
+
+        // 줄인 파일을 정렬해야 정렬할 양도 줄어들므로 compaction을 먼저 실행한다.
+        List<Step> customerUpdateSteps = new ArrayList<>();
+
+        if (compactUpdates) {
+            customerUpdateSteps.add(compactCustomerUpdates(jobRepository, transactionManager));
+        }
+        if (sortUpdates) {
+            customerUpdateSteps.add(sortCustomerUpdates(jobRepository, transactionManager));
+        }
+        customerUpdateSteps.add(step);
+
+        FlowBuilder<FlowJobBuilder> flow = new JobBuilder("bankStatementJob", jobRepository)
                 .incrementer(new RunIdIncrementer())
                 .listener(listener)
-                .flow(step)
+                .flow(customerUpdateSteps.get(0));
+
+        for (Step next : customerUpdateSteps.subList(1, customerUpdateSteps.size())) {
+            flow = flow.next(next);
+        }
+
+        return flow
+                .next(importTransactions(jobRepository, transactionManager))
                 .end()
                 .build();
     }
 
+    @Bean
+    public Step compactCustomerUpdates(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        return new StepBuilder("compactCustomerUpdates", jobRepository)
+                .tasklet(customerUpdateCompactionTasklet(), transactionManager)
+                .build();
+    }
+
+    @Bean
+    public CustomerUpdateCompactionTasklet customerUpdateCompactionTasklet() {
+        CustomerUpdateCompactionTasklet tasklet =
+                new CustomerUpdateCompactionTasklet(customerUpdateInputResource(), Path.of(compactOutput));
+
+        tasklet.setMemoryBudgetBytes(compactMemoryBudgetBytes);
+
+        if (StringUtils.hasText(compactTempDirectory)) {
+            tasklet.setTempDirectory(Path.of(compactTempDirectory));
+        }
+
+        return tasklet;
+    }
+
+    @Bean
+    public Step sortCustomerUpdates(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        return new StepBuilder("sortCustomerUpdates", jobRepository)
+                .tasklet(customerUpdateSortTasklet(), transactionManager)
+                .build();
+    }
+
+    @Bean
+    public CustomerUpdateSortTasklet customerUpdateSortTasklet() {
+        CustomerUpdateSortTasklet tasklet =
+                new CustomerUpdateSortTasklet(compactedCustomerUpdateResource(), Path.of(sortOutput));
+
+        tasklet.setMemoryBudgetBytes(sortMemoryBudgetBytes);
+        tasklet.setMaxMergeFanIn(sortMaxMergeFanIn);
+
+        if (StringUtils.hasText(sortTempDirectory)) {
+            tasklet.setTempDirectory(Path.of(sortTempDirectory));
+        }
+
+        return tasklet;
+    }
+
+    // 입력 파일 이름이 .gz 나 .zst 로 끝나면 압축을 풀면서 읽는다.
+    private Resource customerUpdateInputResource() {
+        return DecompressingResource.decompressIfNeeded(new ClassPathResource(fileInput));
+    }
+
+    // compaction 단계를 사용하면 원본 대신 줄인 파일을 읽는다.
+    private Resource compactedCustomerUpdateResource() {
+        return compactUpdates ? new FileSystemResource(compactOutput) : customerUpdateInputResource();
+    }
+
+    // 정렬 단계를 사용하면 원본(또는 줄인 파일) 대신 정렬된 파일을 읽는다.
+    private Resource customerUpdateResource() {
+        return sortUpdates ? new FileSystemResource(sortOutput) : compactedCustomerUpdateResource();
+    }
+
+    // 정렬/compaction 결과 파일은 앞 step이 실행되어야 생기므로 isFile()이 아니라 설정으로 판단한다.
+    // 원본 입력은 context가 뜰 때 이미 있으므로 isFile()로 확인한다.
+    private boolean customerUpdateResourceIsFile() {
+        return sortUpdates || compactUpdates || customerUpdateInputResource().isFile();
+    }
+
+    // partition은 FileChannel로 파일을 직접 나누어 읽으므로 파일 시스템의 파일이 필요하다.
+    // 정렬/compaction 결과는 이미 파일이고, 그 외에는 jar 안의 classpath 리소스 대신 customer.update.partition.file을 읽는다.
+    private Resource customerUpdatePartitionResource() {
+        if (sortUpdates || compactUpdates || !StringUtils.hasText(partitionFile)) {
+            return customerUpdateResource();
+        }
+
+        return new FileSystemResource(partitionFile);
+    }
+
+    @Bean
+    public MeterRegistry batchMeterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    // step마다 따로 만들 필요는 없다. 지표는 step 이름별로 나뉘어 기록된다.
+    // step에는 이 listener와 chunkListener()가 돌려주는 청크 listener를 각각 등록한다.
+    @Bean
+    public ChunkLoggingListener chunkLoggingListener() {
+        return new ChunkLoggingListener(batchMeterRegistry(),
+                StringUtils.hasText(metricsDirectory) ? Path.of(metricsDirectory) : null,
+                metricsReportIntervalMillis);
+    }
+
     @Bean
     public Step importCustomerUpdates(JobRepository jobRepository,
                                       PlatformTransactionManager transactionManager) throws Exception {
         return new StepBuilder("importCustomerUpdates", jobRepository)
-                .<CustomerUpdate, CustomerUpdate>chunk(50, transactionManager)
-                .reader(customerUpdateItemReader())
-                .processor(customerValidatingItemProcessor())
-                .writer(customerUpdateItemWriter())
-                .listener(new ChunkLoggingListener())
+                .<CustomerUpdate, CustomerUpdate>chunk(customerUpdateCompletionPolicy(), transactionManager)
+                // MappedCustomerUpdateItemReader는 파일을 직접 읽으므로, 압축된 입력은 customerUpdateItemReader로 읽는다.
+                .reader("mapped".equals(updateReaderType) && customerUpdateResourceIsFile()
+                        ? mappedCustomerUpdateItemReader() : customerUpdateItemReader())
+                .processor(asyncValidation ? concurrentCustomerValidatingItemProcessor() : customerValidatingItemProcessor())
+                .writer(customerUpdateStepItemWriter())
+                .listener(customerUpdateValidator())
+                .listener(customerUpdateCompletionPolicy())
+                .listener(chunkLoggingListener())
+                .listener(chunkLoggingListener().chunkListener())
                 .build();
     }
 
     @Bean
-    public FlatFileItemReader<CustomerUpdate> customerUpdateItemReader() throws Exception {
+    public Step importCustomerUpdatesPartitioned(JobRepository jobRepository,
+                                                 PlatformTransactionManager transactionManager) throws Exception {
+        // 입력이 파일인지는 partitioner가 step 실행 시점에 확인한다. 이 bean은 partitioned=false여도 만들어지고,
+        // 정렬/compaction 결과 파일은 앞 step이 실행되어야 생긴다.
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("customer-update-");
+        taskExecutor.setConcurrencyLimit(partitionPoolSize);
+
+        return new StepBuilder("importCustomerUpdatesPartitioned", jobRepository)
+                .partitioner("importCustomerUpdatesWorker", customerUpdateFilePartitioner())
+                .step(importCustomerUpdatesWorker(jobRepository, transactionManager))
+                .gridSize(partitionGridSize)
+                .taskExecutor(taskExecutor)
+                // worker마다 customer id 인덱스를 다시 읽지 않도록 manager step에 등록한다.
+                .listener(customerUpdateValidator())
+                .build();
+    }
+
+    @Bean
+    public Step importCustomerUpdatesWorker(JobRepository jobRepository,
+                                            PlatformTransactionManager transactionManager) throws Exception {
+        return new StepBuilder("importCustomerUpdatesWorker", jobRepository)
+                .<CustomerUpdate, CustomerUpdate>chunk(customerUpdateCompletionPolicy(), transactionManager)
+                .reader(customerUpdatePartitionItemReader(null, null))
+                .processor(asyncValidation ? concurrentCustomerValidatingItemProcessor() : customerValidatingItemProcessor())
+                .writer(customerUpdateStepItemWriter())
+                .listener(customerUpdateCompletionPolicy())
+                .listener(chunkLoggingListener())
+                .listener(chunkLoggingListener().chunkListener())
+                .build();
+    }
+
+    // partition worker들이 함께 사용한다. 청크 크기는 step을 실행하는 스레드마다 따로 조절된다.
+    @Bean
+    public CompletionPolicy customerUpdateCompletionPolicy() {
+        if (adaptiveChunk) {
+            return new AdaptiveChunkCompletionPolicy(chunkSize, minChunkSize, maxChunkSize, targetCommitMillis);
+        }
+
+        return new SimpleCompletionPolicy(chunkSize);
+    }
+
+    @Bean
+    public CustomerUpdateFilePartitioner customerUpdateFilePartitioner() {
+        return new CustomerUpdateFilePartitioner(customerUpdatePartitionResource());
+    }
+
+    // partition마다 하나씩 생성되며, 재시작 시 자기 partition에서 마지막으로 커밋한 위치부터 읽는다.
+    @Bean
+    @StepScope
+    public AbstractItemCountingItemStreamItemReader<CustomerUpdate> customerUpdatePartitionItemReader(
+            @Value("#{stepExecutionContext['startOffset']}") Long startOffset,
+            @Value("#{stepExecutionContext['endOffset']}") Long endOffset) throws Exception {
+        AbstractItemCountingItemStreamItemReader<CustomerUpdate> reader = "mapped".equals(updateReaderType)
+                ? new MappedCustomerUpdateItemReader(
+                        customerUpdatePartitionResource(), startOffset, endOffset, customerUpdateLineMapper())
+                : new ByteRangeLineItemReader<>(
+                        customerUpdatePartitionResource(), startOffset, endOffset, customerUpdateLineMapper());
+
+        reader.setName("customerUpdatePartitionItemReader");
+
+        return reader;
+    }
+
+    // 줄의 첫 바이트로 record type을 골라 바로 객체를 만든다. 처리하지 못하는 줄은 customerUpdateLineMapper로 넘긴다.
+    @Bean
+    public MappedCustomerUpdateItemReader mappedCustomerUpdateItemReader() throws Exception {
+        MappedCustomerUpdateItemReader reader =
+                new MappedCustomerUpdateItemReader(customerUpdateResource(), customerUpdateLineMapper());
+
+        reader.setName("customerUpdateItemReader");
+
+        return reader;
+    }
+
+    @Bean
+    public DefaultLineMapper<CustomerUpdate> customerUpdateLineMapper() throws Exception {
+        DefaultLineMapper<CustomerUpdate> lineMapper = new DefaultLineMapper<>();
+
+        lineMapper.setLineTokenizer(customerUpdatesLineTokenizer());
+        lineMapper.setFieldSetMapper(customerUpdateFieldSetMapper());
+
+        return lineMapper;
+    }
+
+    @Bean
+    public Step importTransactions(JobRepository jobRepository,
+                                   PlatformTransactionManager transactionManager) {
+        return new StepBuilder("importTransactions", jobRepository)
+                .<Transaction, Transaction>chunk(transactionChunkSize, transactionManager)
+                .reader(transactionItemReader())
+                .writer(transactionItemWriter())
+                .listener(chunkLoggingListener())
+                .listener(chunkLoggingListener().chunkListener())
+                .build();
+    }
+
+    @Bean
+    public TransactionXmlItemReader transactionItemReader() {
+        TransactionXmlItemReader reader = new TransactionXmlItemReader(
+                DecompressingResource.decompressIfNeeded(new ClassPathResource(transactionFileInput)));
+
+        reader.setName("transactionItemReader");
+
+        return reader;
+    }
+
+    // 재시작 시 이미 들어간 거래가 다시 들어와도 실패하지 않도록 ON CONFLICT DO NOTHING을 사용한다.
+    @Bean
+    public JdbcBatchItemWriter<Transaction> transactionItemWriter() {
+        return new JdbcBatchItemWriterBuilder<Transaction>()
+                .beanMapped()
+                .sql("""
+                        INSERT INTO TRANSACTION (TRANSACTION_ID, ACCOUNT_ACCOUNT_ID, DESCRIPTION, CREDIT, DEBIT, TIMESTAMP)
+                        VALUES (:transactionId, :accountId, :description, :credit, :debit, :timestamp)
+                        ON CONFLICT (TRANSACTION_ID) DO NOTHING
+                        """)
+                .assertUpdates(false)
+                .dataSource(dataSource)
+                .build();
+    }
+
+    // 입력이 파일 시스템의 파일이면 커밋한 줄의 바이트 위치를 저장해 두었다가 재시작 시 그 위치로 바로 이동하는 reader를 사용한다.
+    // jar 안의 classpath resource나 압축된 입력처럼 위치를 옮길 수 없는 입력은 FlatFileItemReader로 읽는다.
+    @Bean
+    public AbstractItemCountingItemStreamItemReader<CustomerUpdate> customerUpdateItemReader() throws Exception {
+        if (customerUpdateResourceIsFile()) {
+            ByteRangeLineItemReader<CustomerUpdate> reader =
+                    new ByteRangeLineItemReader<>(customerUpdateResource(), 0, -1, customerUpdateLineMapper());
+
+            // FlatFileItemReader의 기본 comment prefix
+            reader.setComments("#");
+            reader.setName("customerUpdateItemReader");
+
+            return reader;
+        }
+
         return new FlatFileItemReaderBuilder<CustomerUpdate>()
 //                .resource(new FileSystemResource(fileInput))
-                .resource(new ClassPathResource(fileInput))
+                .resource(customerUpdateResource())
                 .name("customerUpdateItemReader")
                 .lineTokenizer(customerUpdatesLineTokenizer())
                 .fieldSetMapper(customerUpdateFieldSetMapper())
@@ -157,12 +540,39 @@ public class BatchConfiguation {
         ValidatingItemProcessor<CustomerUpdate> customerValidatingItemProcessor =
                 new ValidatingItemProcessor<>();
 
-        customerValidatingItemProcessor.setValidator(new CustomerItemValidator(dataSource));
+        customerValidatingItemProcessor.setValidator(customerUpdateValidator());
         customerValidatingItemProcessor.setFilter(true);
 
         return customerValidatingItemProcessor;
     }
 
+    @Bean
+    public ConcurrentValidatingItemProcessor<CustomerUpdate> concurrentCustomerValidatingItemProcessor() {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("customer-validation-");
+        taskExecutor.setVirtualThreads(true);
+        taskExecutor.setConcurrencyLimit(asyncValidationConcurrency);
+
+        ConcurrentValidatingItemProcessor<CustomerUpdate> processor =
+                new ConcurrentValidatingItemProcessor<>(customerUpdateValidator(), taskExecutor);
+
+        processor.setFilter(true);
+
+        return processor;
+    }
+
+    @Bean
+    public Validator<CustomerUpdate> customerUpdateValidator() {
+        CustomerItemValidator queryValidator = new CustomerItemValidator(dataSource);
+
+        if ("preload".equals(validatorMode)) {
+            // 메모리에 담을 수 없을 만큼 id 공간이 크면 queryValidator로 검증한다.
+            return new PreloadedCustomerItemValidator(
+                    dataSource, queryValidator, validatorPreloadMaxBytes, validatorPreloadRefreshIntervalMillis);
+        }
+
+        return queryValidator;
+    }
+
     @Bean
     public JdbcBatchItemWriter<CustomerUpdate> customerNameUpdateItemWriter() {
         return new JdbcBatchItemWriterBuilder<CustomerUpdate>()
@@ -214,13 +624,90 @@ public class BatchConfiguation {
                 .build();
     }
 
+    @Bean
+    public JdbcBatchItemWriter<CustomerUpdate> customerCombinedUpdateItemWriter() {
+        return new JdbcBatchItemWriterBuilder<CustomerUpdate>()
+                .beanMapped()
+                .sql("""
+                        UPDATE CUSTOMER
+                        SET    FIRST_NAME = COALESCE(:firstName, FIRST_NAME),
+                               MIDDLE_NAME = COALESCE(:middleName, MIDDLE_NAME),
+                               LAST_NAME = COALESCE(:lastName, LAST_NAME),
+                               ADDRESS1 = COALESCE(:address1, ADDRESS1),
+                               ADDRESS2 = COALESCE(:address2, ADDRESS2),
+                               CITY = COALESCE(:city, CITY),
+                               STATE = COALESCE(:state, STATE),
+                               POSTAL_CODE = COALESCE(:postalCode, POSTAL_CODE),
+                               EMAIL_ADDRESS = COALESCE(:emailAddress, EMAIL_ADDRESS),
+                               HOME_PHONE = COALESCE(:homePhone, HOME_PHONE),
+                               CELL_PHONE = COALESCE(:cellPhone, CELL_PHONE),
+                               WORK_PHONE = COALESCE(:workPhone, WORK_PHONE),
+                               NOTIFICATION_PREF = COALESCE(CAST(:notificationPreferences AS CHAR), NOTIFICATION_PREF)
+                        WHERE CUSTOMER_ID = :customerId
+                        """)
+                .dataSource(dataSource)
+                .build();
+    }
+
+    @Bean
+    public CustomerUpdateCopyItemWriter<CustomerNameUpdate> customerNameCopyItemWriter() {
+        return new CustomerUpdateCopyItemWriter<>(dataSource, CustomerNameUpdate.class, "customer_name_update_staging")
+                .column("FIRST_NAME", CustomerNameUpdate::getFirstName)
+                .column("MIDDLE_NAME", CustomerNameUpdate::getMiddleName)
+                .column("LAST_NAME", CustomerNameUpdate::getLastName);
+    }
+
+    @Bean
+    public CustomerUpdateCopyItemWriter<CustomerAddressUpdate> customerAddressCopyItemWriter() {
+        return new CustomerUpdateCopyItemWriter<>(dataSource, CustomerAddressUpdate.class, "customer_address_update_staging")
+                .column("ADDRESS1", CustomerAddressUpdate::getAddress1)
+                .column("ADDRESS2", CustomerAddressUpdate::getAddress2)
+                .column("CITY", CustomerAddressUpdate::getCity)
+                .column("STATE", CustomerAddressUpdate::getState)
+                .column("POSTAL_CODE", CustomerAddressUpdate::getPostalCode);
+    }
+
+    @Bean
+    public CustomerUpdateCopyItemWriter<CustomerContactUpdate> customerContactCopyItemWriter() {
+        return new CustomerUpdateCopyItemWriter<>(dataSource, CustomerContactUpdate.class, "customer_contact_update_staging")
+                .column("EMAIL_ADDRESS", CustomerContactUpdate::getEmailAddress)
+                .column("HOME_PHONE", CustomerContactUpdate::getHomePhone)
+                .column("CELL_PHONE", CustomerContactUpdate::getCellPhone)
+                .column("WORK_PHONE", CustomerContactUpdate::getWorkPhone)
+                .column("NOTIFICATION_PREF", CustomerContactUpdate::getNotificationPreferences);
+    }
+
+    @Bean
+    public CustomerUpdateCopyItemWriter<CustomerCombinedUpdate> customerCombinedCopyItemWriter() {
+        return new CustomerUpdateCopyItemWriter<>(dataSource, CustomerCombinedUpdate.class, "customer_combined_update_staging")
+                .column("FIRST_NAME", CustomerCombinedUpdate::getFirstName)
+                .column("MIDDLE_NAME", CustomerCombinedUpdate::getMiddleName)
+                .column("LAST_NAME", CustomerCombinedUpdate::getLastName)
+                .column("ADDRESS1", CustomerCombinedUpdate::getAddress1)
+                .column("ADDRESS2", CustomerCombinedUpdate::getAddress2)
+                .column("CITY", CustomerCombinedUpdate::getCity)
+                .column("STATE", CustomerCombinedUpdate::getState)
+                .column("POSTAL_CODE", CustomerCombinedUpdate::getPostalCode)
+                .column("EMAIL_ADDRESS", CustomerCombinedUpdate::getEmailAddress)
+                .column("HOME_PHONE", CustomerCombinedUpdate::getHomePhone)
+                .column("CELL_PHONE", CustomerCombinedUpdate::getCellPhone)
+                .column("WORK_PHONE", CustomerCombinedUpdate::getWorkPhone)
+                .column("NOTIFICATION_PREF", CustomerCombinedUpdate::getNotificationPreferences);
+    }
+
     @Bean
     public ClassifierCompositeItemWriter<CustomerUpdate> customerUpdateItemWriter() {
-        CustomerUpdateClassifier classifier =
-                new CustomerUpdateClassifier(
+        CustomerUpdateClassifier classifier = "copy".equals(updateWriterType)
+                ? new CustomerUpdateClassifier(
+                        customerNameCopyItemWriter(),
+                        customerAddressCopyItemWriter(),
+                        customerContactCopyItemWriter(),
+                        customerCombinedCopyItemWriter())
+                : new CustomerUpdateClassifier(
                         customerNameUpdateItemWriter(),
                         customerAddressUpdateItemWriter(),
-                        customerContactUpdateItemWriter());
+                        customerContactUpdateItemWriter(),
+                        customerCombinedUpdateItemWriter());
 
         ClassifierCompositeItemWriter<CustomerUpdate> compositeItemWriter =
                 new ClassifierCompositeItemWriter<>();
@@ -229,4 +716,29 @@ public class BatchConfiguation {
 
         return compositeItemWriter;
     }
+
+    // import step이 사용하는 writer. 설정에 따라 고객별로 합치거나, 실패한 청크를 나누어 다시 쓰는 writer로 감싼다.
+    private ItemWriter<CustomerUpdate> customerUpdateStepItemWriter() {
+        if (bisectFailedWrites) {
+            return bisectingCustomerUpdateItemWriter();
+        }
+
+        return coalesceUpdates ? coalescingCustomerUpdateItemWriter() : customerUpdateItemWriter();
+    }
+
+    // 건너뛴 item은 고객별로 합치기 전의 변경 단위로 기록되도록 coalescing writer 바깥을 감싼다.
+    @Bean
+    public BisectingItemWriter<CustomerUpdate> bisectingCustomerUpdateItemWriter() {
+        BisectingItemWriter<CustomerUpdate> writer = new BisectingItemWriter<>(
+                coalesceUpdates ? coalescingCustomerUpdateItemWriter() : customerUpdateItemWriter(), dataSource);
+
+        writer.setSkipLimit(bisectSkipLimit);
+
+        return writer;
+    }
+
+    @Bean
+    public CoalescingCustomerUpdateItemWriter coalescingCustomerUpdateItemWriter() {
+        return new CoalescingCustomerUpdateItemWriter(customerUpdateItemWriter());
+    }
 }
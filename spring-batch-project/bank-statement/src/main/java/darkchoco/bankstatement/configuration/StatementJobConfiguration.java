@@ -0,0 +1,100 @@
+package darkchoco.bankstatement.configuration;
+
+import darkchoco.bankstatement.batch.AccountStatementItemReader;
+import darkchoco.bankstatement.batch.StepThroughputListener;
+import darkchoco.bankstatement.domain.AccountStatement;
+import darkchoco.batchsupport.ChunkLoggingListener;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+
+/**
+ * 계좌별 명세서를 만드는 job.
+ * 실행할 job은 spring.batch.job.name으로 고른다.
+ */
+@Configuration
+public class StatementJobConfiguration {
+
+    @Value("${statement.file.output:statements.csv}")
+    private String statementFileOutput;
+
+    @Value("${statement.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${statement.fetch-size:10000}")
+    private int fetchSize;
+
+    private final DataSource dataSource;
+
+    public StatementJobConfiguration(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Bean
+    public Job statementJob(JobRepository jobRepository,
+                            PlatformTransactionManager transactionManager,
+                            ChunkLoggingListener chunkLoggingListener) {
+        return new JobBuilder("statementJob", jobRepository)
+                .incrementer(new RunIdIncrementer())
+                .start(generateStatements(jobRepository, transactionManager, chunkLoggingListener))
+                .build();
+    }
+
+    @Bean
+    public Step generateStatements(JobRepository jobRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   ChunkLoggingListener chunkLoggingListener) {
+        return new StepBuilder("generateStatements", jobRepository)
+                .<AccountStatement, AccountStatement>chunk(chunkSize, transactionManager)
+                .reader(accountStatementItemReader())
+                .writer(accountStatementItemWriter())
+                .listener(new StepThroughputListener("accounts"))
+                .listener(chunkLoggingListener)
+                .listener(chunkLoggingListener.chunkListener())
+                .build();
+    }
+
+    @Bean
+    public AccountStatementItemReader accountStatementItemReader() {
+        AccountStatementItemReader reader = new AccountStatementItemReader(dataSource);
+
+        reader.setName("accountStatementItemReader");
+        reader.setFetchSize(fetchSize);
+
+        return reader;
+    }
+
+    @Bean
+    public FlatFileItemWriter<AccountStatement> accountStatementItemWriter() {
+        return new FlatFileItemWriterBuilder<AccountStatement>()
+                .name("accountStatementItemWriter")
+                .resource(new FileSystemResource(statementFileOutput))
+                .headerCallback(writer -> writer.write(
+                        "accountId,lastStatementDate,openingBalance,totalCredit,totalDebit,closingBalance,transactionCount"))
+                .lineAggregator(statement -> statement.getAccountId()
+                        + "," + statement.getLastStatementDate()
+                        + "," + toAmount(statement.getOpeningBalanceCents())
+                        + "," + toAmount(statement.getTotalCreditCents())
+                        + "," + toAmount(statement.getTotalDebitCents())
+                        + "," + toAmount(statement.getClosingBalanceCents())
+                        + "," + statement.getTransactionCount())
+                .build();
+    }
+
+    private static String toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+}
@@ -0,0 +1,28 @@
+package darkchoco.bankstatement.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * 계좌 하나에 대한 명세서. 금액은 부동소수점 오차 없이 누적하기 위해 cent 단위 long으로 보관한다.
+ */
+@ToString
+@AllArgsConstructor
+@Getter
+public class AccountStatement {
+
+    private final long accountId;
+    private final LocalDateTime lastStatementDate;
+    private final long openingBalanceCents;
+    private final long totalCreditCents;
+    // debit은 음수로 저장되어 있으므로 그대로 더한다.
+    private final long totalDebitCents;
+    private final int transactionCount;
+
+    public long getClosingBalanceCents() {
+        return openingBalanceCents + totalCreditCents + totalDebitCents;
+    }
+}
@@ -0,0 +1,123 @@
+package darkchoco.bankstatement.domain;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 한 고객에 대한 이름/주소/연락처 변경(record type 1/2/3)을 하나로 합친 row 이미지.
+ * <p>
+ * null인 필드는 "변경 없음"을 뜻한다. 기존 writer들이 COALESCE로 null을 무시하므로, 나중에 들어온
+ * 변경의 null이 아닌 값이 앞선 값을 덮어쓰는 방식(last-write-wins)으로 합치면 각 변경을 순서대로
+ * UPDATE 했을 때와 결과가 같다.
+ */
+@ToString
+@Getter
+public class CustomerCombinedUpdate extends CustomerUpdate {
+
+    private final String firstName;
+    private final String middleName;
+    private final String lastName;
+    private final String address1;
+    private final String address2;
+    private final String city;
+    private final String state;
+    private final String postalCode;
+    private final String emailAddress;
+    private final String homePhone;
+    private final String cellPhone;
+    private final String workPhone;
+    private final Integer notificationPreferences;
+
+    private CustomerCombinedUpdate(long customerId,
+                                   String firstName, String middleName, String lastName,
+                                   String address1, String address2, String city, String state, String postalCode,
+                                   String emailAddress, String homePhone, String cellPhone, String workPhone,
+                                   Integer notificationPreferences) {
+        super(customerId);
+
+        this.firstName = firstName;
+        this.middleName = middleName;
+        this.lastName = lastName;
+        this.address1 = address1;
+        this.address2 = address2;
+        this.city = city;
+        this.state = state;
+        this.postalCode = postalCode;
+        this.emailAddress = emailAddress;
+        this.homePhone = homePhone;
+        this.cellPhone = cellPhone;
+        this.workPhone = workPhone;
+        this.notificationPreferences = notificationPreferences;
+    }
+
+    public static CustomerCombinedUpdate from(CustomerUpdate update) {
+        return new CustomerCombinedUpdate(update.getCustomerId(),
+                null, null, null,
+                null, null, null, null, null,
+                null, null, null, null,
+                null).merge(update);
+    }
+
+    /**
+     * 같은 고객의 다음 변경을 합친 새 인스턴스를 반환한다.
+     */
+    public CustomerCombinedUpdate merge(CustomerUpdate update) {
+        if (update.getCustomerId() != customerId) {
+            throw new IllegalArgumentException(
+                    "Cannot merge update of customer " + update.getCustomerId() + " into customer " + customerId);
+        }
+
+        if (update instanceof CustomerNameUpdate name) {
+            return new CustomerCombinedUpdate(customerId,
+                    latest(firstName, name.getFirstName()),
+                    latest(middleName, name.getMiddleName()),
+                    latest(lastName, name.getLastName()),
+                    address1, address2, city, state, postalCode,
+                    emailAddress, homePhone, cellPhone, workPhone,
+                    notificationPreferences);
+        }
+        else if (update instanceof CustomerAddressUpdate address) {
+            return new CustomerCombinedUpdate(customerId,
+                    firstName, middleName, lastName,
+                    latest(address1, address.getAddress1()),
+                    latest(address2, address.getAddress2()),
+                    latest(city, address.getCity()),
+                    latest(state, address.getState()),
+                    latest(postalCode, address.getPostalCode()),
+                    emailAddress, homePhone, cellPhone, workPhone,
+                    notificationPreferences);
+        }
+        else if (update instanceof CustomerContactUpdate contact) {
+            return new CustomerCombinedUpdate(customerId,
+                    firstName, middleName, lastName,
+                    address1, address2, city, state, postalCode,
+                    latest(emailAddress, contact.getEmailAddress()),
+                    latest(homePhone, contact.getHomePhone()),
+                    latest(cellPhone, contact.getCellPhone()),
+                    latest(workPhone, contact.getWorkPhone()),
+                    latest(notificationPreferences, contact.getNotificationPreferences()));
+        }
+        else if (update instanceof CustomerCombinedUpdate combined) {
+            return new CustomerCombinedUpdate(customerId,
+                    latest(firstName, combined.firstName),
+                    latest(middleName, combined.middleName),
+                    latest(lastName, combined.lastName),
+                    latest(address1, combined.address1),
+                    latest(address2, combined.address2),
+                    latest(city, combined.city),
+                    latest(state, combined.state),
+                    latest(postalCode, combined.postalCode),
+                    latest(emailAddress, combined.emailAddress),
+                    latest(homePhone, combined.homePhone),
+                    latest(cellPhone, combined.cellPhone),
+                    latest(workPhone, combined.workPhone),
+                    latest(notificationPreferences, combined.notificationPreferences));
+        }
+
+        throw new IllegalArgumentException("Invalid type: " + update.getClass().getCanonicalName());
+    }
+
+    private static <T> T latest(T current, T update) {
+        return update != null ? update : current;
+    }
+}
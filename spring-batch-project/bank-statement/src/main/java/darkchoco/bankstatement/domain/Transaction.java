@@ -0,0 +1,22 @@
+package darkchoco.bankstatement.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@ToString
+@AllArgsConstructor
+@Getter
+public class Transaction {
+
+    private final long transactionId;
+    private final long accountId;
+    private final String description;
+    // <credit/>, <debit/> 처럼 비어 있는 값은 null
+    private final BigDecimal credit;
+    private final BigDecimal debit;
+    private final LocalDateTime timestamp;
+}
@@ -0,0 +1,115 @@
+package darkchoco.bankstatement.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 재시작한 뒤에도 LineMapper와 FlatFileParseException이 받는 줄 번호가 파일의 실제 줄 번호인지 확인한다.
+ * comment 줄도 줄 번호에 포함되므로 read count와 줄 번호는 다르다.
+ */
+class ByteRangeLineItemReaderTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsTheLineNumberAcrossARestart() throws Exception {
+        Resource resource = file("# header", "a", "# comment", "b", "c", "# comment", "d");
+        ExecutionContext executionContext = new ExecutionContext();
+
+        List<String> items = read(reader(resource), executionContext, 2);
+        items.addAll(read(reader(resource), executionContext, Integer.MAX_VALUE));
+
+        assertThat(items).containsExactly("2:a", "4:b", "5:c", "7:d");
+    }
+
+    @Test
+    void reportsTheLineOfAParseErrorAfterARestart() throws Exception {
+        Resource resource = file("# header", "a", "# comment", "b", "bad");
+        ExecutionContext executionContext = new ExecutionContext();
+
+        read(reader(resource), executionContext, 2);
+
+        ByteRangeLineItemReader<String> reader = reader(resource);
+        reader.open(executionContext);
+
+        try {
+            assertThatThrownBy(reader::read)
+                    .isInstanceOf(FlatFileParseException.class)
+                    .hasMessageStartingWith("Parsing error at line: 5 ")
+                    .extracting(e -> ((FlatFileParseException) e).getLineNumber())
+                    .isEqualTo(5);
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    // 파일이 바뀌어 read count만큼 줄을 건너뛰는 경우에는 건너뛰면서 줄 번호를 센다.
+    @Test
+    void countsTheSkippedLinesWhenTheFileHasChanged() throws Exception {
+        Resource resource = file("# header", "a", "# comment", "b", "c");
+        ExecutionContext executionContext = new ExecutionContext();
+
+        read(reader(resource), executionContext, 2);
+        executionContext.putString("lines.fingerprint", "changed");
+
+        assertThat(read(reader(resource), executionContext, Integer.MAX_VALUE)).containsExactly("5:c");
+    }
+
+    private Resource file(String... lines) throws Exception {
+        return new FileSystemResource(Files.writeString(directory.resolve("lines.csv"),
+                String.join("\n", lines) + "\n", StandardCharsets.UTF_8));
+    }
+
+    private static ByteRangeLineItemReader<String> reader(Resource resource) {
+        ByteRangeLineItemReader<String> reader = new ByteRangeLineItemReader<>(resource, 0, -1, (line, lineNumber) -> {
+            if (line.equals("bad")) {
+                throw new IllegalArgumentException("bad line");
+            }
+
+            return lineNumber + ":" + line;
+        });
+
+        reader.setName("lines");
+        reader.setComments("#");
+
+        return reader;
+    }
+
+    // count개까지 읽고 커밋한 것처럼 update() 한 뒤 닫는다.
+    private static List<String> read(ByteRangeLineItemReader<String> reader,
+                                     ExecutionContext executionContext, int count) throws Exception {
+        List<String> items = new ArrayList<>();
+
+        reader.open(executionContext);
+
+        try {
+            String item;
+
+            while (items.size() < count && (item = reader.read()) != null) {
+                items.add(item);
+            }
+
+            reader.update(executionContext);
+        }
+        finally {
+            reader.close();
+        }
+
+        return items;
+    }
+}
@@ -0,0 +1,100 @@
+package darkchoco.bankstatement.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 고객 하나를 지우고 다른 고객을 최대 id보다 작은 id로 넣어 row 수와 최대 id가 그대로여도 fingerprint가 달라지는지 확인한다.
+ * <p>
+ * application.properties의 PostgreSQL에 별도 schema를 만들어 사용하고, 연결할 수 없으면 건너뛴다.
+ * pg_stat_user_tables는 변경한 세션이 idle이 된 뒤에 반영되므로 통계가 바뀔 때까지 기다린다.
+ */
+class CustomerIdIndexTests {
+
+    private static final String URL = "jdbc:postgresql://localhost:45432/dev";
+    private static final String SCHEMA = "customer_id_index_test";
+
+    private JdbcTemplate admin;
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource adminDataSource = new DriverManagerDataSource(URL, "bach", "bach");
+        assumeTrue(reachable(adminDataSource), "PostgreSQL is not running on " + URL);
+
+        admin = new JdbcTemplate(adminDataSource);
+        admin.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        admin.execute("CREATE SCHEMA " + SCHEMA);
+
+        dataSource = new DriverManagerDataSource(URL + "?currentSchema=" + SCHEMA, "bach", "bach");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // 1 ~ 10 중 7이 빠져 있고 최대 id는 20이다.
+        jdbcTemplate.execute("CREATE TABLE customer (customer_id INT PRIMARY KEY)");
+        jdbcTemplate.update("INSERT INTO customer SELECT id FROM generate_series(1, 10) id WHERE id <> 7");
+        jdbcTemplate.update("INSERT INTO customer VALUES (20)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (admin != null) {
+            admin.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        }
+    }
+
+    @Test
+    void detectsADeleteAndAnInsertBelowTheMaxId() throws Exception {
+        awaitFingerprint(fingerprint -> fingerprint.inserted() == 10);
+
+        CustomerIdIndex index = CustomerIdIndex.load(dataSource, 1024);
+        assertThat(index.contains(5)).isTrue();
+        assertThat(index.contains(7)).isFalse();
+        assertThat(CustomerIdIndex.readFingerprint(dataSource)).isEqualTo(index.getFingerprint());
+
+        jdbcTemplate.update("DELETE FROM customer WHERE customer_id = 5");
+        jdbcTemplate.update("INSERT INTO customer VALUES (7)");
+
+        CustomerIdIndex.Fingerprint fingerprint = awaitFingerprint(changed -> changed.deleted() == 1 && changed.inserted() == 11);
+
+        assertThat(fingerprint.count()).isEqualTo(index.getFingerprint().count());
+        assertThat(fingerprint.maxId()).isEqualTo(index.getFingerprint().maxId());
+        assertThat(fingerprint).isNotEqualTo(index.getFingerprint());
+
+        CustomerIdIndex reloaded = CustomerIdIndex.load(dataSource, 1024);
+        assertThat(reloaded.contains(5)).isFalse();
+        assertThat(reloaded.contains(7)).isTrue();
+    }
+
+    private CustomerIdIndex.Fingerprint awaitFingerprint(Predicate<CustomerIdIndex.Fingerprint> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        CustomerIdIndex.Fingerprint fingerprint = CustomerIdIndex.readFingerprint(dataSource);
+
+        while (!condition.test(fingerprint)) {
+            assertThat(System.currentTimeMillis()).as("statistics not updated: %s", fingerprint).isLessThan(deadline);
+            Thread.sleep(100);
+            fingerprint = CustomerIdIndex.readFingerprint(dataSource);
+        }
+
+        return fingerprint;
+    }
+
+    private static boolean reachable(DriverManagerDataSource dataSource) {
+        try (Connection ignored = dataSource.getConnection()) {
+            return true;
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.configuration.BatchConfiguation;
+import darkchoco.bankstatement.domain.CustomerAddressUpdate;
+import darkchoco.bankstatement.domain.CustomerContactUpdate;
+import darkchoco.bankstatement.domain.CustomerNameUpdate;
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 줄인 파일을 순서대로 UPDATE 한 결과가 원래 파일을 순서대로 UPDATE 한 결과와 같은지 확인한다.
+ * <p>
+ * UPDATE는 writer들의 SQL처럼 "COALESCE(:value, COLUMN)"으로, 즉 null이 아닌 값만 칼럼에 쓰는 것으로 흉내 낸다.
+ * 두 파일은 BatchConfiguation의 customerUpdateLineMapper로 읽으므로 import 단계와 같은 값이 UPDATE에 들어간다.
+ */
+class CustomerUpdateCompactionTaskletTests {
+
+    // 합친 줄 하나의 추정 비용이 수백 바이트이므로, 입력을 읽는 동안 여러 번 spill 하고 bucket도 여러 개 만든다.
+    private static final long SMALL_BUDGET = 32 * 1024;
+
+    private LineMapper<CustomerUpdate> lineMapper;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // 사용하는 bean 메서드는 DataSource나 @Value 값을 사용하지 않는다.
+        lineMapper = new BatchConfiguation(null).customerUpdateLineMapper();
+    }
+
+    @Test
+    void spillsInterleavedUpdatesAndKeepsTheLastValues() throws Exception {
+        Path input = Files.write(directory.resolve("customer_update.csv"), interleavedUpdates(20_000, 300));
+        Path output = directory.resolve("compacted/customer_update_compacted.csv");
+
+        ExecutionContext executionContext = compact(new FileSystemResource(input), output, SMALL_BUDGET);
+
+        assertThat(executionContext.getInt("compaction.spillFiles")).isGreaterThan(1);
+        assertThat(executionContext.getLong("compaction.inputLines")).isEqualTo(20_000);
+        // 고객 300명 x record type 3개보다 많을 수 없다.
+        assertThat(executionContext.getLong("compaction.outputLines")).isLessThanOrEqualTo(900);
+        assertThat(sequentialCoalesce(output)).isEqualTo(sequentialCoalesce(input));
+        // bucket과 pass-through 임시 파일은 지운다.
+        try (Stream<Path> files = Files.list(output.getParent())) {
+            assertThat(files).containsExactly(output);
+        }
+    }
+
+    @Test
+    void givesTheSameResultWithoutSpilling() throws Exception {
+        Path input = Files.write(directory.resolve("customer_update.csv"), interleavedUpdates(20_000, 300));
+        Path spilled = directory.resolve("spilled.csv");
+        Path inMemory = directory.resolve("in_memory.csv");
+
+        compact(new FileSystemResource(input), spilled, SMALL_BUDGET);
+        ExecutionContext executionContext = compact(new FileSystemResource(input), inMemory, Long.MAX_VALUE);
+
+        assertThat(executionContext.getInt("compaction.spillFiles")).isZero();
+        assertThat(sequentialCoalesce(inMemory)).isEqualTo(sequentialCoalesce(input));
+        assertThat(Files.readAllLines(inMemory)).containsExactlyInAnyOrderElementsOf(Files.readAllLines(spilled));
+    }
+
+    @Test
+    void compactsTheBundledInput() throws Exception {
+        Resource input = new ClassPathResource("data/customer_update.csv");
+        Path copy = Files.write(directory.resolve("customer_update.csv"), input.getContentAsByteArray());
+        Path output = directory.resolve("customer_update_compacted.csv");
+
+        ExecutionContext executionContext = compact(input, output, SMALL_BUDGET);
+
+        assertThat(executionContext.getInt("compaction.spillFiles")).isGreaterThan(1);
+        assertThat(executionContext.getLong("compaction.outputLines"))
+                .isLessThan(executionContext.getLong("compaction.inputLines"));
+        assertThat(sequentialCoalesce(output)).isEqualTo(sequentialCoalesce(copy));
+    }
+
+    // 합칠 수 없는 줄은 import 단계에서 기존과 같은 오류가 나도록 입력 순서대로 맨 뒤에 남는다.
+    @Test
+    void passesThroughLinesItCannotCompact() throws Exception {
+        Path input = Files.writeString(directory.resolve("customer_update.csv"), String.join("\n",
+                "# comment",
+                "1,7,Jane,,Doe",
+                "1,x,Jane,,Doe",
+                "1,7,,Q,",
+                "4,7,a,b",
+                "1,7,Joan,,") + "\n", StandardCharsets.UTF_8);
+        Path output = directory.resolve("customer_update_compacted.csv");
+
+        compact(new FileSystemResource(input), output, Long.MAX_VALUE);
+
+        assertThat(Files.readAllLines(output)).containsExactly("1,7,Joan,Q,Doe", "1,x,Jane,,Doe", "4,7,a,b");
+    }
+
+    private ExecutionContext compact(Resource input, Path output, long memoryBudgetBytes) throws Exception {
+        CustomerUpdateCompactionTasklet tasklet = new CustomerUpdateCompactionTasklet(input, output);
+        tasklet.setMemoryBudgetBytes(memoryBudgetBytes);
+
+        StepExecution stepExecution = new StepExecution("compactCustomerUpdates", new JobExecution(1L));
+        tasklet.execute(new StepContribution(stepExecution), new ChunkContext(new StepContext(stepExecution)));
+
+        return stepExecution.getExecutionContext();
+    }
+
+    // 고객마다 칼럼 값. 줄을 순서대로 import 했을 때 CUSTOMER 테이블에 남는 값과 같다.
+    private Map<Long, Map<String, Object>> sequentialCoalesce(Path file) throws Exception {
+        Map<Long, Map<String, Object>> customers = new TreeMap<>();
+        int lineNumber = 0;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+
+            if (line.startsWith("#")) {
+                continue;
+            }
+
+            CustomerUpdate update = lineMapper.mapLine(line, lineNumber);
+            Map<String, Object> customer = customers.computeIfAbsent(update.getCustomerId(), id -> new TreeMap<>());
+
+            columns(update).forEach((column, value) -> {
+                if (value != null) {
+                    customer.put(column, value);
+                }
+            });
+        }
+
+        return customers;
+    }
+
+    private static Map<String, Object> columns(CustomerUpdate update) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+
+        switch (update) {
+            case CustomerNameUpdate name -> {
+                columns.put("FIRST_NAME", name.getFirstName());
+                columns.put("MIDDLE_NAME", name.getMiddleName());
+                columns.put("LAST_NAME", name.getLastName());
+            }
+            case CustomerAddressUpdate address -> {
+                columns.put("ADDRESS1", address.getAddress1());
+                columns.put("ADDRESS2", address.getAddress2());
+                columns.put("CITY", address.getCity());
+                columns.put("STATE", address.getState());
+                columns.put("POSTAL_CODE", address.getPostalCode());
+            }
+            case CustomerContactUpdate contact -> {
+                columns.put("EMAIL_ADDRESS", contact.getEmailAddress());
+                columns.put("HOME_PHONE", contact.getHomePhone());
+                columns.put("CELL_PHONE", contact.getCellPhone());
+                columns.put("WORK_PHONE", contact.getWorkPhone());
+                columns.put("NOTIFICATION_PREF", contact.getNotificationPreferences());
+            }
+            default -> throw new IllegalArgumentException("Unexpected update " + update);
+        }
+
+        return columns;
+    }
+
+    // 같은 고객의 세 record type이 파일 전체에 섞여 나오고, 필드 절반 정도는 비어 있거나 공백만 있다.
+    private static List<String> interleavedUpdates(int lines, int customers) {
+        Random random = new Random(42);
+        List<String> result = new ArrayList<>(lines);
+
+        for (int i = 0; i < lines; i++) {
+            int recordType = random.nextInt(3) + 1;
+            long customerId = random.nextInt(customers) + 1;
+            int fields = recordType == 1 ? 3 : 5;
+
+            StringBuilder line = new StringBuilder().append(recordType).append(',').append(customerId);
+
+            for (int field = 0; field < fields; field++) {
+                line.append(',');
+
+                // 연락처의 마지막 필드는 notification preference(숫자)이다.
+                if (recordType == 3 && field == fields - 1) {
+                    line.append(random.nextBoolean() ? "" : String.valueOf(random.nextInt(3) + 1));
+                }
+                else {
+                    line.append(value(random, i));
+                }
+            }
+
+            result.add(line.toString());
+        }
+
+        return result;
+    }
+
+    private static String value(Random random, int line) {
+        return switch (random.nextInt(8)) {
+            case 0, 1, 2 -> "";
+            case 3 -> "  ";
+            // 콤마와 따옴표가 있는 값은 compaction 출력에서도 다시 같은 토큰으로 읽혀야 한다.
+            case 4 -> "\"Doe, Jr " + line + "\"";
+            case 5 -> "\"say \"\"hi\"\" " + line + "\"";
+            default -> "v" + line;
+        };
+    }
+}
@@ -0,0 +1,170 @@
+package darkchoco.bankstatement.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 정렬 결과가 customerId 순이고, 같은 고객 안에서는 입력 순서를 유지하는지(안정 정렬) 확인한다.
+ * 기대 값은 입력 줄을 List.sort(안정 정렬)로 customerId 순으로 정렬한 것이다.
+ */
+class CustomerUpdateSortTaskletTests {
+
+    // 줄 하나의 추정 비용이 100바이트 정도이므로 run 하나에 10줄 남짓만 들어간다.
+    private static final long TINY_BUDGET = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mergesManyRunsInCustomerOrderAndKeepsFileOrderWithinACustomer() throws Exception {
+        List<String> lines = interleavedUpdates(5_000, 50);
+        Path input = Files.write(directory.resolve("customer_update.csv"), lines);
+        Path output = directory.resolve("sorted/customer_update_sorted.csv");
+
+        ExecutionContext executionContext = sort(new FileSystemResource(input), output, TINY_BUDGET);
+
+        assertThat(executionContext.getInt("sort.spillFiles")).isGreaterThan(100);
+        assertThat(executionContext.getLong("sort.lines")).isEqualTo(5_000);
+
+        List<String> sorted = Files.readAllLines(output);
+        assertThat(sorted).containsExactlyElementsOf(stableSort(lines));
+        assertThat(sorted).extracting(CustomerUpdateSortTaskletTests::customerId).isSorted();
+        // 각 줄의 마지막 필드는 입력에서의 순번이므로, 같은 고객의 순번은 증가해야 한다.
+        for (int i = 1; i < sorted.size(); i++) {
+            if (customerId(sorted.get(i)) == customerId(sorted.get(i - 1))) {
+                assertThat(sequence(sorted.get(i))).isGreaterThan(sequence(sorted.get(i - 1)));
+            }
+        }
+        // run 파일은 지운다.
+        try (Stream<Path> files = Files.list(output.getParent())) {
+            assertThat(files).containsExactly(output);
+        }
+    }
+
+    // run이 400개 남짓이므로 fan-in 4로는 중간 pass를 여러 번 거친다. 중간 run도 spill 파일로 센다.
+    @Test
+    void mergesInSeveralPassesWhenThereAreMoreRunsThanTheFanIn() throws Exception {
+        List<String> lines = interleavedUpdates(5_000, 50);
+        Path input = Files.write(directory.resolve("customer_update.csv"), lines);
+        Path output = directory.resolve("sorted/customer_update_sorted.csv");
+
+        ExecutionContext singlePass = sort(new FileSystemResource(input), directory.resolve("single.csv"), TINY_BUDGET);
+        ExecutionContext executionContext = sort(new FileSystemResource(input), output, TINY_BUDGET, 4);
+
+        assertThat(singlePass.getInt("sort.mergePasses")).isZero();
+        assertThat(executionContext.getInt("sort.mergePasses")).isGreaterThanOrEqualTo(4);
+        assertThat(executionContext.getInt("sort.spillFiles")).isGreaterThan(singlePass.getInt("sort.spillFiles"));
+        assertThat(executionContext.getLong("sort.spillBytes")).isGreaterThan(singlePass.getLong("sort.spillBytes"));
+
+        assertThat(Files.readAllLines(output)).containsExactlyElementsOf(stableSort(lines));
+        try (Stream<Path> files = Files.list(output.getParent())) {
+            assertThat(files).containsExactly(output);
+        }
+    }
+
+    @Test
+    void givesTheSameResultWithoutSpilling() throws Exception {
+        List<String> lines = interleavedUpdates(5_000, 50);
+        Path input = Files.write(directory.resolve("customer_update.csv"), lines);
+        Path output = directory.resolve("customer_update_sorted.csv");
+
+        ExecutionContext executionContext = sort(new FileSystemResource(input), output, Long.MAX_VALUE);
+
+        assertThat(executionContext.getInt("sort.spillFiles")).isZero();
+        assertThat(Files.readAllLines(output)).containsExactlyElementsOf(stableSort(lines));
+    }
+
+    @Test
+    void sortsTheBundledInput() throws Exception {
+        Resource input = new ClassPathResource("data/customer_update_shuffled.csv");
+        List<String> lines = new String(input.getContentAsByteArray(), StandardCharsets.UTF_8).lines()
+                .filter(line -> !line.startsWith("#"))
+                .toList();
+        Path output = directory.resolve("customer_update_sorted.csv");
+
+        ExecutionContext executionContext = sort(input, output, TINY_BUDGET);
+
+        assertThat(executionContext.getInt("sort.spillFiles")).isGreaterThan(1);
+        assertThat(Files.readAllLines(output)).containsExactlyElementsOf(stableSort(lines));
+    }
+
+    // comment 줄은 버리고, customerId를 읽을 수 없는 줄은 입력 순서대로 맨 뒤로 보낸다.
+    @Test
+    void dropsCommentsAndMovesUnreadableLinesToTheEnd() throws Exception {
+        Path input = Files.writeString(directory.resolve("customer_update.csv"), String.join("\n",
+                "# comment",
+                "1,9,a,,b",
+                "garbage",
+                "1,3,c,,d",
+                "1,x,e,,f",
+                "2,3,g,,h,i,j",
+                "1,9,k,,l") + "\n", StandardCharsets.UTF_8);
+        Path output = directory.resolve("customer_update_sorted.csv");
+
+        sort(new FileSystemResource(input), output, 64);
+
+        assertThat(Files.readAllLines(output)).containsExactly(
+                "1,3,c,,d", "2,3,g,,h,i,j", "1,9,a,,b", "1,9,k,,l", "garbage", "1,x,e,,f");
+    }
+
+    private ExecutionContext sort(Resource input, Path output, long memoryBudgetBytes) throws Exception {
+        return sort(input, output, memoryBudgetBytes, 1024);
+    }
+
+    private ExecutionContext sort(Resource input, Path output, long memoryBudgetBytes, int maxMergeFanIn) throws Exception {
+        CustomerUpdateSortTasklet tasklet = new CustomerUpdateSortTasklet(input, output);
+        tasklet.setMemoryBudgetBytes(memoryBudgetBytes);
+        tasklet.setMaxMergeFanIn(maxMergeFanIn);
+
+        StepExecution stepExecution = new StepExecution("sortCustomerUpdates", new JobExecution(1L));
+        tasklet.execute(new StepContribution(stepExecution), new ChunkContext(new StepContext(stepExecution)));
+
+        return stepExecution.getExecutionContext();
+    }
+
+    private static List<String> stableSort(List<String> lines) {
+        List<String> sorted = new ArrayList<>(lines);
+        sorted.sort(Comparator.comparingLong(CustomerUpdateSortTaskletTests::customerId));
+        return sorted;
+    }
+
+    // 고객이 파일 전체에 섞여 나온다. 마지막 필드에 입력 순번을 넣어 안정성을 확인할 수 있게 한다.
+    private static List<String> interleavedUpdates(int lines, int customers) {
+        Random random = new Random(7);
+        List<String> result = new ArrayList<>(lines);
+
+        for (int i = 0; i < lines; i++) {
+            result.add("1," + (random.nextInt(customers) + 1) + ",name,," + i);
+        }
+
+        return result;
+    }
+
+    private static long customerId(String line) {
+        return Long.parseLong(line.split(",")[1]);
+    }
+
+    private static int sequence(String line) {
+        return Integer.parseInt(line.substring(line.lastIndexOf(',') + 1));
+    }
+}
@@ -0,0 +1,206 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.configuration.BatchConfiguation;
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MappedCustomerUpdateItemReader가 BatchConfiguation의 FlatFileItemReader 경로
+ * (customerUpdatesLineTokenizer + customerUpdateFieldSetMapper)와 같은 item을 같은 순서로 읽는지 확인한다.
+ */
+class MappedCustomerUpdateItemReaderTests {
+
+    private BatchConfiguation configuration;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        // 사용하는 bean 메서드는 DataSource나 @Value 값을 사용하지 않는다.
+        configuration = new BatchConfiguation(null);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"data/customer_update.csv", "data/customer_update_shuffled.csv"})
+    void readsTheSameItemsAsTheTokenizer(String input) throws Exception {
+        Resource resource = new ClassPathResource(input);
+
+        List<CustomerUpdate> expected = readAll(flatFileReader(resource), new ExecutionContext());
+
+        assertThat(expected).hasSizeGreaterThan(1000);
+        assertSameItems(readAll(mappedReader(resource), new ExecutionContext()), expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"data/customer_update.csv", "data/customer_update_shuffled.csv"})
+    void continuesFromTheSavedOffsetAfterRestart(String input) throws Exception {
+        Resource resource = new ClassPathResource(input);
+
+        List<CustomerUpdate> expected = readAll(flatFileReader(resource), new ExecutionContext());
+        ExecutionContext executionContext = new ExecutionContext();
+
+        List<CustomerUpdate> items = read(mappedReader(resource), executionContext, 50);
+        assertThat(executionContext.getLong("customerUpdateItemReader.offset")).isPositive();
+
+        items.addAll(readAll(mappedReader(resource), executionContext));
+
+        assertSameItems(items, expected);
+        // FlatFileItemReader는 read count만큼 줄을 건너뛰어 같은 위치에서 이어 읽는다.
+        ExecutionContext flatFileContext = new ExecutionContext();
+        List<CustomerUpdate> flatFileItems = read(flatFileReader(resource), flatFileContext, 50);
+        flatFileItems.addAll(readAll(flatFileReader(resource), flatFileContext));
+        assertSameItems(items, flatFileItems);
+    }
+
+    @Test
+    void skipsByReadCountWhenTheFileHasChanged() throws Exception {
+        Resource resource = new ClassPathResource("data/customer_update.csv");
+
+        List<CustomerUpdate> expected = readAll(flatFileReader(resource), new ExecutionContext());
+        ExecutionContext executionContext = new ExecutionContext();
+
+        List<CustomerUpdate> items = read(mappedReader(resource), executionContext, 50);
+        executionContext.putString("customerUpdateItemReader.fingerprint", "changed");
+        executionContext.putLong("customerUpdateItemReader.offset", 1);
+
+        items.addAll(readAll(mappedReader(resource), executionContext));
+
+        assertSameItems(items, expected);
+    }
+
+    // 따옴표가 있는 줄은 fallback LineMapper로 넘어가므로, 재시작한 뒤에도 파일의 실제 줄 번호를 받아야 한다.
+    @Test
+    void passesTheFileLineNumberToTheFallbackAfterRestart() throws Exception {
+        Path file = Files.writeString(directory.resolve("customer_update_comments.csv"), String.join("\n",
+                "# comment",
+                "1,101,Jane,,Doe",
+                "# comment",
+                "1,102,Joan,,Doe",
+                "1,103,\"Doe, Jr\",Q,Smith")
+                + "\n", StandardCharsets.UTF_8);
+        Resource resource = new FileSystemResource(file);
+        LineMapper<CustomerUpdate> lineMapper = configuration.customerUpdateLineMapper();
+        List<Integer> lineNumbers = new ArrayList<>();
+        ExecutionContext executionContext = new ExecutionContext();
+
+        read(mappedReader(resource), executionContext, 2);
+
+        MappedCustomerUpdateItemReader reader = new MappedCustomerUpdateItemReader(resource, (line, lineNumber) -> {
+            lineNumbers.add(lineNumber);
+            return lineMapper.mapLine(line, lineNumber);
+        });
+        reader.setName("customerUpdateItemReader");
+
+        assertThat(read(reader, executionContext, Integer.MAX_VALUE)).hasSize(1);
+        assertThat(lineNumbers).containsExactly(5);
+    }
+
+    // 빠른 경로가 fallback LineMapper로 넘기는 줄이 섞인 파일
+    @Test
+    void fallsBackToTheLineMapperForLinesItDoesNotHandle() throws Exception {
+        Path file = directory.resolve("customer_update_edge.csv");
+        Files.writeString(file, String.join("\r\n",
+                "# comment",
+                "1,101,Jane,,Doe",
+                "1,102,\"Doe, Jr\",Q,Smith",
+                "2, 103 , 1 Main St ,,Springfield, IL ,62701",
+                "3,104,a@example.com,,,555-0100,+1",
+                "3,105,,,555-0101,,  2 ",
+                "3,106,b@example.com,555-0102,,,")
+                + "\n", StandardCharsets.UTF_8);
+
+        Resource resource = new FileSystemResource(file);
+        List<CustomerUpdate> expected = readAll(flatFileReader(resource), new ExecutionContext());
+
+        assertThat(expected).hasSize(6);
+        assertSameItems(readAll(mappedReader(resource), new ExecutionContext()), expected);
+    }
+
+    // FieldSet.readLong()은 '+'로 시작하는 값을 받지 않는다. 빠른 경로도 이 줄을 fallback으로 넘겨 같은 오류가 난다.
+    @Test
+    void rejectsTheLinesTheTokenizerRejects() throws Exception {
+        Path file = Files.writeString(directory.resolve("customer_update_invalid.csv"), "1,+7,Jane,,Doe\n");
+        Resource resource = new FileSystemResource(file);
+
+        assertThatThrownBy(() -> readAll(flatFileReader(resource), new ExecutionContext()))
+                .hasCauseInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> readAll(mappedReader(resource), new ExecutionContext()))
+                .isInstanceOf(NumberFormatException.class);
+    }
+
+    private FlatFileItemReader<CustomerUpdate> flatFileReader(Resource resource) throws Exception {
+        return new FlatFileItemReaderBuilder<CustomerUpdate>()
+                .resource(resource)
+                .name("customerUpdateItemReader")
+                .lineTokenizer(configuration.customerUpdatesLineTokenizer())
+                .fieldSetMapper(configuration.customerUpdateFieldSetMapper())
+                .build();
+    }
+
+    private MappedCustomerUpdateItemReader mappedReader(Resource resource) throws Exception {
+        LineMapper<CustomerUpdate> lineMapper = configuration.customerUpdateLineMapper();
+        MappedCustomerUpdateItemReader reader = new MappedCustomerUpdateItemReader(resource, lineMapper);
+
+        reader.setName("customerUpdateItemReader");
+
+        return reader;
+    }
+
+    private static List<CustomerUpdate> readAll(ItemStreamReader<CustomerUpdate> reader,
+                                                ExecutionContext executionContext) throws Exception {
+        return read(reader, executionContext, Integer.MAX_VALUE);
+    }
+
+    // count개까지 읽고 커밋한 것처럼 update() 한 뒤 닫는다.
+    private static List<CustomerUpdate> read(ItemStreamReader<CustomerUpdate> reader,
+                                             ExecutionContext executionContext, int count) throws Exception {
+        List<CustomerUpdate> items = new ArrayList<>();
+
+        reader.open(executionContext);
+
+        try {
+            CustomerUpdate item;
+
+            while (items.size() < count && (item = reader.read()) != null) {
+                items.add(item);
+            }
+
+            reader.update(executionContext);
+        }
+        finally {
+            reader.close();
+        }
+
+        return items;
+    }
+
+    // CustomerUpdate 하위 클래스는 equals()가 없으므로 타입과 필드를 비교한다.
+    private static void assertSameItems(List<CustomerUpdate> actual, List<CustomerUpdate> expected) {
+        assertThat(actual)
+                .usingRecursiveComparison()
+                .withStrictTypeChecking()
+                .isEqualTo(expected);
+    }
+}
@@ -0,0 +1,96 @@
+package darkchoco.bankstatement.batch;
+
+import darkchoco.bankstatement.domain.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ParseException;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionXmlItemReaderTests {
+
+    @Test
+    void mapsEmptyAmountsToNull() throws Exception {
+        TransactionXmlItemReader reader = reader("""
+                <transactions>
+                    <transaction>
+                        <transactionId> 7 </transactionId>
+                        <accountId>405</accountId>
+                        <description>Skinix</description>
+                        <credit/>
+                        <debit>-438</debit>
+                        <timestamp>2018-06-01 19:39:53</timestamp>
+                    </transaction>
+                </transactions>
+                """);
+
+        Transaction transaction = reader.read();
+
+        assertThat(transaction.getTransactionId()).isEqualTo(7);
+        assertThat(transaction.getAccountId()).isEqualTo(405);
+        assertThat(transaction.getCredit()).isNull();
+        assertThat(transaction.getDebit()).isEqualTo(new BigDecimal("-438"));
+        assertThat(transaction.getTimestamp()).isEqualTo(LocalDateTime.of(2018, 6, 1, 19, 39, 53));
+        assertThat(reader.read()).isNull();
+        reader.close();
+    }
+
+    @Test
+    void namesTheFragmentWithoutAnId() throws Exception {
+        TransactionXmlItemReader reader = reader("""
+                <transactions>
+                    <transaction>
+                        <transactionId>1</transactionId>
+                        <accountId>405</accountId>
+                    </transaction>
+                    <transaction>
+                        <accountId>296</accountId>
+                        <description>Mydeo</description>
+                    </transaction>
+                </transactions>
+                """);
+
+        reader.read();
+
+        assertThatThrownBy(reader::read)
+                .isInstanceOf(ParseException.class)
+                .hasMessageStartingWith("<transaction> at line 6 (item 2)")
+                .hasMessageEndingWith("has no <transactionId>");
+        reader.close();
+    }
+
+    @Test
+    void namesTheFragmentWithAnInvalidId() throws Exception {
+        TransactionXmlItemReader reader = reader("""
+                <transactions>
+                    <transaction>
+                        <transactionId>1</transactionId>
+                        <accountId>x405</accountId>
+                    </transaction>
+                </transactions>
+                """);
+
+        assertThatThrownBy(reader::read)
+                .isInstanceOf(ParseException.class)
+                .hasMessageContaining("<transaction> at line 2 (item 1)")
+                .hasMessageEndingWith("has an invalid <accountId>: 'x405'")
+                .hasCauseInstanceOf(NumberFormatException.class);
+        reader.close();
+    }
+
+    private static TransactionXmlItemReader reader(String xml) {
+        TransactionXmlItemReader reader = new TransactionXmlItemReader(
+                new ByteArrayResource(xml.getBytes(StandardCharsets.UTF_8)));
+
+        reader.setName("transactionItemReader");
+        reader.open(new ExecutionContext());
+
+        return reader;
+    }
+}
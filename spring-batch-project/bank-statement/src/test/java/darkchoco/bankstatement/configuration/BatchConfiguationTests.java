@@ -0,0 +1,59 @@
+package darkchoco.bankstatement.configuration;
+
+import darkchoco.bankstatement.batch.ByteRangeLineItemReader;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 입력 설정에 따라 context가 뜰 때 고르는 step과 reader를 확인한다.
+ */
+class BatchConfiguationTests {
+
+    /**
+     * jar로 실행할 때처럼 입력이 파일 시스템의 파일이 아니어도, partitioned=false이면 context가 뜨는지 확인한다.
+     * 압축된 classpath 입력은 jar 안의 classpath resource처럼 isFile()이 false이다.
+     */
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.batch.job.enabled=false",
+            "customer.update.partitioned=false",
+            "file.input=data/customer_update_sample.csv.gz"})
+    class CompressedInput {
+
+        @Autowired
+        private ApplicationContext context;
+
+        @Test
+        void startsWithoutAFileSystemInputWhenNotPartitioned() {
+            assertThat(context.getBean("importCustomerUpdatesPartitioned", Step.class)).isNotNull();
+            assertThat(context.getBean("customerUpdateItemReader")).isInstanceOf(FlatFileItemReader.class);
+        }
+    }
+
+    /**
+     * 정렬 결과 파일은 정렬 step이 실행되어야 생긴다. context가 뜰 때 파일이 없어도 파일을 읽는 reader를 골라야 한다.
+     */
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.batch.job.enabled=false",
+            "customer.update.sort.enabled=true",
+            "customer.update.sort.output=target/not-sorted-yet/customer_update_sorted.csv",
+            "file.input=data/customer_update_sample.csv.gz"})
+    class SortedInput {
+
+        @Autowired
+        private ApplicationContext context;
+
+        @Test
+        void readsTheSortOutputAsAFileBeforeItExists() {
+            assertThat(context.getBean("customerUpdateItemReader")).isInstanceOf(ByteRangeLineItemReader.class);
+        }
+    }
+}
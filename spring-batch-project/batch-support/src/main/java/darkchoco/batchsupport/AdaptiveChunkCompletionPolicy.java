@@ -0,0 +1,273 @@
+package darkchoco.batchsupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.annotation.AfterChunk;
+import org.springframework.batch.core.annotation.AfterChunkError;
+import org.springframework.batch.core.annotation.AfterStep;
+import org.springframework.batch.core.annotation.BeforeChunk;
+import org.springframework.batch.core.annotation.BeforeStep;
+import org.springframework.batch.core.annotation.BeforeWrite;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+import org.springframework.util.Assert;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 측정한 write + commit 시간에 맞춰 청크 크기를 조절하는 CompletionPolicy.
+ * <p>
+ * 초기 크기로 시작해서, 청크마다 writer 호출부터 커밋이 끝날 때까지 걸린 시간을 재고 item당 시간
+ * (지수 이동 평균)으로 목표 커밋 시간에 맞는 크기를 계산한다. 크기는 [minChunkSize, maxChunkSize]
+ * 안에서 한 번에 최대 두 배/절반까지만 바꾸고, 차이가 작으면 바꾸지 않는다.
+ * 크기를 키운 뒤 처리량(items/sec)이 오히려 떨어지면 이전 크기로 되돌리고 그 크기를 상한으로 삼는다.
+ * <p>
+ * 현재 크기, 조정 횟수, 최근 조정 내역은 step ExecutionContext에 기록되며, 재시작 시에는 마지막 크기부터 시작한다.
+ * <p>
+ * 상태는 step을 실행하는 스레드별로 따로 관리하므로 partition worker step에서 함께 써도 된다.
+ * StepBuilder.chunk(policy, ...)와 함께 listener(policy)로도 등록해야 시간을 잴 수 있다.
+ */
+public class AdaptiveChunkCompletionPolicy extends CompletionPolicySupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveChunkCompletionPolicy.class);
+
+    public static final String CHUNK_SIZE = "adaptiveChunk.chunkSize";
+    public static final String ADJUSTMENTS = "adaptiveChunk.adjustments";
+    public static final String HISTORY = "adaptiveChunk.history";
+
+    private static final int MAX_HISTORY = 50;
+
+    // 측정값 하나에 크기가 크게 흔들리지 않도록 item당 시간을 지수 이동 평균으로 다룬다.
+    private static final double SMOOTHING = 0.3;
+
+    // 목표 크기와의 차이가 이 비율보다 작으면 바꾸지 않는다. 처리량 비교에도 같은 값을 쓴다.
+    private static final double TOLERANCE = 0.1;
+
+    private final int initialChunkSize;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long targetCommitNanos;
+
+    private final ThreadLocal<State> state = new ThreadLocal<>();
+
+    public AdaptiveChunkCompletionPolicy(int initialChunkSize, int minChunkSize, int maxChunkSize,
+                                         long targetCommitMillis) {
+        Assert.isTrue(minChunkSize >= 1, "minChunkSize must be at least 1");
+        Assert.isTrue(minChunkSize <= initialChunkSize && initialChunkSize <= maxChunkSize,
+                "initialChunkSize must be between minChunkSize and maxChunkSize");
+        Assert.isTrue(targetCommitMillis > 0, "targetCommitMillis must be positive");
+
+        this.initialChunkSize = initialChunkSize;
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetCommitNanos = targetCommitMillis * 1_000_000;
+    }
+
+    @BeforeStep
+    public void beforeStep(StepExecution stepExecution) {
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+
+        // 재시작이면 마지막으로 조정된 크기부터 시작한다.
+        int chunkSize = executionContext.containsKey(CHUNK_SIZE)
+                ? clamp(executionContext.getInt(CHUNK_SIZE), maxChunkSize)
+                : initialChunkSize;
+
+        State current = new State(stepExecution, chunkSize);
+        current.adjustments = executionContext.getInt(ADJUSTMENTS, 0);
+
+        String history = executionContext.getString(HISTORY, "");
+        if (!history.isEmpty()) {
+            current.history.addAll(history.lines().toList());
+        }
+
+        state.set(current);
+        executionContext.putInt(CHUNK_SIZE, chunkSize);
+    }
+
+    @AfterStep
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        state.remove();
+
+        return null;
+    }
+
+    @BeforeChunk
+    public void beforeChunk(ChunkContext context) {
+        State current = state.get();
+
+        if (current != null) {
+            current.chunkStartedAt = System.nanoTime();
+            current.readCountAtStart = current.stepExecution.getReadCount();
+            current.writeStartedAt = 0;
+        }
+    }
+
+    @BeforeWrite
+    public void beforeWrite(Chunk<?> items) {
+        State current = state.get();
+
+        if (current != null) {
+            current.writeStartedAt = System.nanoTime();
+        }
+    }
+
+    // 커밋이 끝난 뒤에 호출되므로 beforeWrite부터 여기까지가 write + commit 시간이다.
+    @AfterChunk
+    public void afterChunk(ChunkContext context) {
+        State current = state.get();
+
+        if (current == null || current.writeStartedAt == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long commitNanos = now - current.writeStartedAt;
+        long chunkNanos = now - current.chunkStartedAt;
+        long items = current.stepExecution.getReadCount() - current.readCountAtStart;
+
+        current.writeStartedAt = 0;
+        current.chunks++;
+
+        if (items > 0) {
+            adjust(current, items, commitNanos, chunkNanos);
+        }
+    }
+
+    @AfterChunkError
+    public void afterChunkError(ChunkContext context) {
+        State current = state.get();
+
+        if (current != null) {
+            current.writeStartedAt = 0;
+        }
+    }
+
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        State current = state.get();
+
+        return new ChunkSizeContext(parent, current != null ? current.chunkSize : initialChunkSize);
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context, RepeatStatus result) {
+        return super.isComplete(context, result) || isComplete(context);
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        return ((ChunkSizeContext) context).isComplete();
+    }
+
+    @Override
+    public void update(RepeatContext context) {
+        ((ChunkSizeContext) context).increment();
+    }
+
+    private void adjust(State current, long items, long commitNanos, long chunkNanos) {
+        double perItemNanos = (double) commitNanos / items;
+        double itemsPerSecond = items * 1_000_000_000.0 / Math.max(1, chunkNanos);
+
+        current.perItemNanos = current.perItemNanos == 0
+                ? perItemNanos
+                : SMOOTHING * perItemNanos + (1 - SMOOTHING) * current.perItemNanos;
+        current.itemsPerSecond = current.itemsPerSecond == 0
+                ? itemsPerSecond
+                : SMOOTHING * itemsPerSecond + (1 - SMOOTHING) * current.itemsPerSecond;
+
+        int size = current.chunkSize;
+        int next;
+        String reason;
+
+        if (current.grownFrom > 0 && current.itemsPerSecond < current.throughputBeforeGrowth * (1 - TOLERANCE)) {
+            // 크기를 키웠더니 처리량이 떨어졌다. 되돌리고 그 크기를 상한으로 둔다.
+            next = current.grownFrom;
+            current.ceiling = next;
+            reason = "throughput dropped";
+        }
+        else {
+            long ideal = Math.round(targetCommitNanos / current.perItemNanos);
+            long bounded = Math.max(size / 2, Math.min((long) size * 2, ideal));
+
+            next = clamp(bounded, current.ceiling);
+            reason = "write+commit " + (commitNanos / 1_000_000) + " ms";
+
+            if (Math.abs(next - size) < Math.max(1, size * TOLERANCE)) {
+                return;
+            }
+        }
+
+        current.grownFrom = next > size ? size : 0;
+        current.throughputBeforeGrowth = current.itemsPerSecond;
+        current.chunkSize = next;
+        current.adjustments++;
+
+        String entry = String.format("chunk %d: %d -> %d (%s, %.1f items/sec)",
+                current.chunks, size, next, reason, itemsPerSecond);
+
+        current.history.addLast(entry);
+        while (current.history.size() > MAX_HISTORY) {
+            current.history.removeFirst();
+        }
+
+        ExecutionContext executionContext = current.stepExecution.getExecutionContext();
+        executionContext.putInt(CHUNK_SIZE, next);
+        executionContext.putInt(ADJUSTMENTS, current.adjustments);
+        executionContext.putString(HISTORY, String.join("\n", current.history));
+
+        logger.debug("{} - {}", current.stepExecution.getStepName(), entry);
+    }
+
+    private int clamp(long size, int ceiling) {
+        return (int) Math.max(minChunkSize, Math.min(Math.min(maxChunkSize, ceiling), size));
+    }
+
+    private final class State {
+
+        private final StepExecution stepExecution;
+        private final Deque<String> history = new ArrayDeque<>();
+
+        private int chunkSize;
+        private int ceiling = maxChunkSize;
+        private int adjustments;
+        private int chunks;
+
+        private long chunkStartedAt;
+        private long writeStartedAt;
+        private long readCountAtStart;
+
+        private double perItemNanos;
+        private double itemsPerSecond;
+
+        // 직전 조정에서 크기를 키웠다면 그 전 크기와 그때의 처리량
+        private int grownFrom;
+        private double throughputBeforeGrowth;
+
+        private State(StepExecution stepExecution, int chunkSize) {
+            this.stepExecution = stepExecution;
+            this.chunkSize = chunkSize;
+        }
+    }
+
+    private static final class ChunkSizeContext extends RepeatContextSupport {
+
+        private final int chunkSize;
+
+        private ChunkSizeContext(RepeatContext parent, int chunkSize) {
+            super(parent);
+            this.chunkSize = chunkSize;
+        }
+
+        private boolean isComplete() {
+            return getStartedCount() >= chunkSize;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package darkchoco.batchsupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.lang.NonNull;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * delegate의 JDBC batch가 실패하면 청크를 반씩 나누어 다시 써서, 실패한 item만 골라내는 writer.
+ * <p>
+ * fault tolerant step의 scan은 청크를 item 하나씩 별도 트랜잭션으로 다시 쓰므로 청크 크기만큼 트랜잭션이 필요하다.
+ * 이 writer는 청크 트랜잭션 안에서 savepoint를 만들고 delegate를 호출한다. 실패하면 savepoint로 되돌린 뒤
+ * 앞 절반과 뒤 절반을 각각 같은 방식으로 다시 쓴다. 성공한 구간은 batch 그대로 청크와 함께 커밋되고,
+ * item 하나까지 줄어도 실패하는 것만 건너뛴다. 실패한 item이 k개이면 delegate 호출은 대략 k log n 번이다.
+ * 나누어 쓸 때도 앞 구간을 먼저 쓰므로 item을 쓰는 순서는 바뀌지 않는다.
+ * <p>
+ * 행 단위 데이터 오류(무결성 제약 위반, UPDATE 대상 없음, SQLState 22xxx/23xxx)만 나누어 다시 쓰고,
+ * 커넥션 오류처럼 어느 item을 다시 써도 실패할 예외는 그대로 던진다.
+ * 건너뛴 item 수가 skipLimit을 넘어도 예외를 던져 청크 전체를 롤백한다.
+ * <p>
+ * 건너뛴 item은 청크에서 빼므로 step의 write count와 afterWrite listener에는 실제로 쓴 item만 남는다.
+ * SkipListener가 있으면 건너뛴 item을 onSkipInWrite()로 알린다.
+ * 나누어 쓴 청크 수, 건너뛴 item 수, delegate 호출 수는 step ExecutionContext의 bisect.* 에 기록한다.
+ * ExecutionContext는 청크가 롤백되면 이전 값으로 되돌아가지만 write skip count는 그렇지 않으므로,
+ * 건너뛴 item 수는 청크가 커밋된 뒤 afterChunk에서 write skip count에 더하고 afterChunkError에서는 버린다.
+ * step builder는 writer를 ChunkListener로 자동 등록한다. 다른 writer로 감쌌다면 listener로 따로 등록해야 한다.
+ * <p>
+ * savepoint는 DataSourceUtils로 얻은, 청크 트랜잭션에 묶인 커넥션에 만든다.
+ * 따라서 delegate는 같은 DataSource를 사용하는 JDBC writer여야 한다.
+ */
+public class BisectingItemWriter<T> implements ItemWriter<T>, ChunkListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(BisectingItemWriter.class);
+
+    private final ItemWriter<T> delegate;
+    private final DataSource dataSource;
+
+    private int skipLimit = Integer.MAX_VALUE;
+    private Predicate<Throwable> recoverable = BisectingItemWriter::isRowLevelError;
+    private SkipListener<?, ? super T> skipListener;
+
+    // 청크를 실행하는 스레드에서 건너뛴, 아직 커밋되지 않은 item 수. partition worker들이 writer를 함께 쓴다.
+    private final ThreadLocal<Integer> pendingWriteSkips = new ThreadLocal<>();
+
+    public BisectingItemWriter(ItemWriter<T> delegate, DataSource dataSource) {
+        Assert.notNull(delegate, "Delegate must not be null");
+        Assert.notNull(dataSource, "DataSource must not be null");
+
+        this.delegate = delegate;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * step 전체에서 건너뛸 수 있는 item 수. 넘으면 마지막 예외를 던진다.
+     */
+    public void setSkipLimit(int skipLimit) {
+        this.skipLimit = skipLimit;
+    }
+
+    /**
+     * 나누어 다시 쓸 예외인지 판단한다. 기본값은 행 단위 데이터 오류만 true이다.
+     */
+    public void setRecoverable(Predicate<Throwable> recoverable) {
+        this.recoverable = recoverable;
+    }
+
+    public void setSkipListener(SkipListener<?, ? super T> skipListener) {
+        this.skipListener = skipListener;
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends T> chunk) throws Exception {
+        if (chunk.isEmpty() || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            delegate.write(chunk);
+            return;
+        }
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+
+        try {
+            Recovery recovery = new Recovery(connection);
+            Exception failure = recovery.tryWrite(chunk.getItems());
+
+            if (failure == null) {
+                recovery.record(0);
+                return;
+            }
+
+            logger.debug("Write of {} items failed, bisecting to isolate the failed items", chunk.size());
+
+            recovery.bisect(chunk.getItems(), failure);
+            recovery.removeSkipped(chunk);
+            recovery.record(1);
+        }
+        finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    @Override
+    public void beforeChunk(@NonNull ChunkContext context) {
+        pendingWriteSkips.remove();
+    }
+
+    @Override
+    public void afterChunk(@NonNull ChunkContext context) {
+        Integer skipped = pendingWriteSkips.get();
+
+        if (skipped != null) {
+            StepExecution stepExecution = context.getStepContext().getStepExecution();
+            stepExecution.setWriteSkipCount(stepExecution.getWriteSkipCount() + skipped);
+            pendingWriteSkips.remove();
+        }
+    }
+
+    @Override
+    public void afterChunkError(@NonNull ChunkContext context) {
+        pendingWriteSkips.remove();
+    }
+
+    /**
+     * 무결성 제약 위반, UPDATE/DELETE 대상 없음(JdbcBatchItemWriter의 assertUpdates),
+     * SQLState가 22(data exception)나 23(integrity constraint violation)으로 시작하는 오류를 행 단위 오류로 본다.
+     */
+    public static boolean isRowLevelError(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException
+                    || cause instanceof IncorrectResultSizeDataAccessException) {
+                return true;
+            }
+
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && (sqlException.getSQLState().startsWith("22") || sqlException.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // 청크 하나를 처리하는 동안의 상태
+    private final class Recovery {
+
+        private final Connection connection;
+        private final Set<T> skippedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private int writes;
+        private int skipped;
+
+        private Recovery(Connection connection) {
+            this.connection = connection;
+        }
+
+        // items를 savepoint 안에서 쓴다. 실패하면 savepoint로 되돌리고 예외를 반환한다.
+        private Exception tryWrite(List<? extends T> items) throws Exception {
+            Savepoint savepoint = connection.setSavepoint();
+            writes++;
+
+            try {
+                delegate.write(new Chunk<>(items));
+            }
+            catch (Exception e) {
+                connection.rollback(savepoint);
+
+                if (!recoverable.test(e)) {
+                    throw e;
+                }
+
+                return e;
+            }
+
+            connection.releaseSavepoint(savepoint);
+
+            return null;
+        }
+
+        // items는 failure로 실패한 구간이다. 앞 절반부터 다시 써서, 실패한 절반만 더 나눈다.
+        private void bisect(List<? extends T> items, Exception failure) throws Exception {
+            if (items.size() == 1) {
+                skip(items.get(0), failure);
+                return;
+            }
+
+            int middle = items.size() / 2;
+
+            for (List<? extends T> half : List.of(items.subList(0, middle), items.subList(middle, items.size()))) {
+                Exception halfFailure = tryWrite(half);
+
+                if (halfFailure != null) {
+                    bisect(half, halfFailure);
+                }
+            }
+        }
+
+        private void skip(T item, Exception failure) throws Exception {
+            StepExecution stepExecution = currentStepExecution();
+            long skippedInStep = stepExecution != null
+                    ? stepExecution.getExecutionContext().getLong("bisect.skippedItems", 0) + skipped
+                    : skipped;
+
+            if (skippedInStep >= skipLimit) {
+                logger.warn("Skip limit {} exceeded while recovering from a failed write", skipLimit);
+                throw failure;
+            }
+
+            skipped++;
+            skippedItems.add(item);
+            logger.warn("Skipping item that failed to write: {} - {}", item, failure.getMessage());
+
+            if (skipListener != null) {
+                skipListener.onSkipInWrite(item, failure);
+            }
+        }
+
+        // step은 writer가 돌아온 뒤 청크에 남은 item 수를 write count에 더한다.
+        private void removeSkipped(Chunk<? extends T> chunk) {
+            for (Iterator<? extends T> iterator = chunk.iterator(); iterator.hasNext(); ) {
+                if (skippedItems.contains(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void record(int bisectedChunks) {
+            StepExecution stepExecution = currentStepExecution();
+
+            if (stepExecution == null) {
+                return;
+            }
+
+            ExecutionContext executionContext = stepExecution.getExecutionContext();
+            executionContext.putLong("bisect.writes", executionContext.getLong("bisect.writes", 0) + writes);
+
+            if (bisectedChunks == 0) {
+                return;
+            }
+
+            executionContext.putLong("bisect.chunks", executionContext.getLong("bisect.chunks", 0) + bisectedChunks);
+            executionContext.putLong("bisect.skippedItems",
+                    executionContext.getLong("bisect.skippedItems", 0) + skipped);
+            pendingWriteSkips.set(pendingWriteSkips.get() != null ? pendingWriteSkips.get() + skipped : skipped);
+
+            logger.info("Recovered failed chunk with {} writes, skipped {} items", writes, skipped);
+        }
+    }
+
+    private static StepExecution currentStepExecution() {
+        StepContext context = StepSynchronizationManager.getContext();
+
+        return context != null ? context.getStepExecution() : null;
+    }
+}
@@ -0,0 +1,21 @@
+package darkchoco.batchsupport;
+
+import org.springframework.batch.item.Chunk;
+
+/**
+ * 청크의 item을 한 번에 받는 {@link org.springframework.batch.item.ItemProcessor}.
+ * 현재 시각 읽기, 조회, bulk query처럼 청크마다 한 번이면 되는 일을 item마다 반복하지 않게 한다.
+ * <p>
+ * Spring Batch에는 청크 전체를 처리하는 hook이 없으므로, {@link BulkProcessingItemWriter}가 item을 쓰기 직전에 실행한다.
+ *
+ * @param <I> 읽은 item 타입
+ * @param <O> 쓸 item 타입
+ */
+@FunctionalInterface
+public interface BulkItemProcessor<I, O> {
+
+    /**
+     * 청크의 item을 처리한다. 돌려준 청크에 없는 item은 쓰지 않으며(filter), 받은 청크를 그대로 돌려줘도 된다.
+     */
+    Chunk<O> process(Chunk<? extends I> chunk) throws Exception;
+}
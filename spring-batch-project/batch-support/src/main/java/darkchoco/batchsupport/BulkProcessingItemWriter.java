@@ -0,0 +1,63 @@
+package darkchoco.batchsupport;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.util.Assert;
+
+/**
+ * 청크를 {@link BulkItemProcessor}로 처리하고 그 결과를 delegate로 쓰는 writer.
+ * <p>
+ * item processor 없이 step의 writer로 사용한다. item processor와 마찬가지로 청크 transaction 안에서 처리한다.
+ * fault-tolerant step이 실패한 청크를 retry하거나 scan하면 processor는 같은 item을 다시 받으므로,
+ * 앞서 처리했는지에 기대면 안 된다. processor가 뺀 item은 step의 filter count에 더하지 않는다.
+ */
+public class BulkProcessingItemWriter<I, O> implements ItemStreamWriter<I> {
+
+    private final BulkItemProcessor<I, O> processor;
+    private final ItemWriter<O> delegate;
+
+    public BulkProcessingItemWriter(BulkItemProcessor<I, O> processor, ItemWriter<O> delegate) {
+        Assert.notNull(processor, "BulkItemProcessor must not be null");
+        Assert.notNull(delegate, "Delegate writer must not be null");
+
+        this.processor = processor;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void write(Chunk<? extends I> chunk) throws Exception {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        Chunk<O> processed = processor.process(chunk);
+
+        if (processed != null && !processed.isEmpty()) {
+            delegate.write(processed);
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        if (delegate instanceof ItemStream stream) {
+            stream.open(executionContext);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        if (delegate instanceof ItemStream stream) {
+            stream.update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (delegate instanceof ItemStream stream) {
+            stream.close();
+        }
+    }
+}
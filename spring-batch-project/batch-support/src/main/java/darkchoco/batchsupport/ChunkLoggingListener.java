@@ -0,0 +1,301 @@
+package darkchoco.batchsupport;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 청크마다 누적 read/write 건수를 로그로 남기고, 청크 처리 시간을 read/process/write/commit 단계로 나누어
+ * step별 Micrometer Timer(percentile histogram)에 기록하는 listener.
+ * <p>
+ * 청크 안에서 read, process, write는 차례로 실행되므로 단계의 경계만 재면 된다.
+ * (beforeChunk ~ 첫 beforeProcess ~ beforeWrite ~ afterWrite ~ afterChunk) item마다 하는 일은 첫
+ * beforeProcess인지 확인하는 것뿐이고, 나머지는 청크당 몇 번의 System.nanoTime() 호출이다.
+ * processor가 없는 step은 beforeWrite까지를 read 시간으로 본다.
+ * <p>
+ * metricsDirectory를 지정하면 reportInterval마다, 그리고 step이 끝날 때 단계별 count/mean/max/p50/p95/p99와
+ * items/sec, filter/skip 비율을 {@code <stepName>.properties} 파일로 쓴다.
+ * <p>
+ * item마다 호출되는 부분에 annotation listener의 reflection 호출이 끼지 않도록 listener 인터페이스를 직접 구현한다.
+ * 이 클래스는 StepExecutionListener이고, 청크와 item 단계는 {@link #chunkListener()}가 돌려주는 listener가 잰다.
+ * step에는 두 listener를 각각 등록하며({@code .listener(listener).listener(listener.chunkListener())}),
+ * 청크 listener는 StepBuilder가 item listener로도 자동으로 등록한다. 상태는 step을 실행하는 스레드별로 관리하므로
+ * partition worker step에서 함께 써도 된다.
+ */
+public class ChunkLoggingListener implements StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkLoggingListener.class);
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry meterRegistry;
+    private final Path metricsDirectory;
+    private final long reportIntervalNanos;
+
+    private final ThreadLocal<StepMetrics> current = new ThreadLocal<>();
+    private final ChunkPhaseListener chunkListener = new ChunkPhaseListener();
+
+    public ChunkLoggingListener() {
+        this(Metrics.globalRegistry, null, 0);
+    }
+
+    /**
+     * @param metricsDirectory 지표 파일을 쓸 디렉터리. null이면 파일을 쓰지 않는다.
+     */
+    public ChunkLoggingListener(MeterRegistry meterRegistry, Path metricsDirectory, long reportIntervalMillis) {
+        this.meterRegistry = meterRegistry;
+        this.metricsDirectory = metricsDirectory;
+        this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+    }
+
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        current.set(new StepMetrics(stepExecution));
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        StepMetrics metrics = current.get();
+
+        if (metrics != null) {
+            current.remove();
+            report(metrics);
+
+            logger.info("{} - read {} / process {} / write {} / commit {} ms per chunk (p95)",
+                    stepExecution.getStepName(),
+                    percentileMillis(metrics.read, 0.95),
+                    percentileMillis(metrics.process, 0.95),
+                    percentileMillis(metrics.write, 0.95),
+                    percentileMillis(metrics.commit, 0.95));
+        }
+
+        return null;
+    }
+
+    /**
+     * 청크의 read/process/write/commit 시간을 재는 listener. ItemProcessListener와 ItemWriteListener도 구현하므로
+     * ChunkListener로 등록하면 StepBuilder가 item listener로도 등록한다.
+     */
+    public ChunkListener chunkListener() {
+        return chunkListener;
+    }
+
+    private void report(StepMetrics metrics) {
+        if (metricsDirectory == null) {
+            return;
+        }
+
+        StepExecution stepExecution = metrics.stepExecution;
+        long readCount = stepExecution.getReadCount();
+        LocalDateTime startTime = stepExecution.getStartTime();
+        long elapsedMillis = startTime != null
+                ? Math.max(1, Duration.between(startTime, LocalDateTime.now()).toMillis())
+                : 1;
+
+        StringBuilder content = new StringBuilder(1024);
+        content.append("# ").append(LocalDateTime.now()).append('\n');
+        content.append("step=").append(stepExecution.getStepName()).append('\n');
+        content.append("readCount=").append(readCount).append('\n');
+        content.append("writeCount=").append(stepExecution.getWriteCount()).append('\n');
+        content.append("filterCount=").append(stepExecution.getFilterCount()).append('\n');
+        content.append("skipCount=").append(stepExecution.getSkipCount()).append('\n');
+        content.append("commitCount=").append(stepExecution.getCommitCount()).append('\n');
+        content.append("itemsPerSecond=").append(String.format("%.1f", readCount * 1000.0 / elapsedMillis)).append('\n');
+        content.append("filterRate=").append(ratio(stepExecution.getFilterCount(), readCount)).append('\n');
+        content.append("skipRate=").append(ratio(stepExecution.getSkipCount(), readCount)).append('\n');
+
+        appendTimer(content, "read", metrics.read);
+        appendTimer(content, "process", metrics.process);
+        appendTimer(content, "write", metrics.write);
+        appendTimer(content, "commit", metrics.commit);
+
+        String fileName = stepExecution.getStepName().replaceAll("[^A-Za-z0-9._-]", "_") + ".properties";
+
+        try {
+            Files.createDirectories(metricsDirectory);
+
+            Path target = metricsDirectory.resolve(fileName);
+            Path temporary = Files.createTempFile(metricsDirectory, fileName, ".tmp");
+
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                writer.write(content.toString());
+            }
+
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            // 지표 파일을 쓰지 못해도 step은 계속 진행한다.
+            logger.warn("Failed to write chunk metrics for {}: {}", stepExecution.getStepName(), e.getMessage());
+        }
+    }
+
+    private static void appendTimer(StringBuilder content, String phase, Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+
+        content.append(phase).append(".count=").append(snapshot.count()).append('\n');
+        content.append(phase).append(".mean.ms=").append(String.format("%.3f", snapshot.mean(TimeUnit.MILLISECONDS))).append('\n');
+        content.append(phase).append(".max.ms=").append(String.format("%.3f", snapshot.max(TimeUnit.MILLISECONDS))).append('\n');
+
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            content.append(phase).append(".p").append(Math.round(percentile.percentile() * 100)).append(".ms=")
+                    .append(String.format("%.3f", percentile.value(TimeUnit.MILLISECONDS))).append('\n');
+        }
+    }
+
+    private static String percentileMillis(Timer timer, double percentile) {
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                return String.format("%.1f", value.value(TimeUnit.MILLISECONDS));
+            }
+        }
+
+        return "-";
+    }
+
+    private static String ratio(long count, long total) {
+        return String.format("%.4f", total == 0 ? 0.0 : (double) count / total);
+    }
+
+    private Timer timer(String stepName, String phase) {
+        return Timer.builder("batch.chunk.duration")
+                .description("Chunk duration by phase")
+                .tag("step", stepName)
+                .tag("phase", phase)
+                .publishPercentiles(PERCENTILES)
+                .register(meterRegistry);
+    }
+
+    private final class StepMetrics {
+
+        private final StepExecution stepExecution;
+
+        private final Timer read;
+        private final Timer process;
+        private final Timer write;
+        private final Timer commit;
+
+        private long chunkStartedAt;
+        private long processStartedAt;
+        private long writeStartedAt;
+        private long writeEndedAt;
+        private long readCountAtChunkStart;
+        private long lastReportedAt = System.nanoTime();
+
+        private StepMetrics(StepExecution stepExecution) {
+            String stepName = stepExecution.getStepName();
+
+            this.stepExecution = stepExecution;
+            this.read = timer(stepName, "read");
+            this.process = timer(stepName, "process");
+            this.write = timer(stepName, "write");
+            this.commit = timer(stepName, "commit");
+        }
+    }
+
+    private final class ChunkPhaseListener implements ChunkListener,
+            ItemProcessListener<Object, Object>, ItemWriteListener<Object> {
+
+        @Override
+        public void beforeChunk(@NonNull ChunkContext context) {
+            StepMetrics metrics = current.get();
+
+            if (metrics != null) {
+                metrics.chunkStartedAt = System.nanoTime();
+                metrics.processStartedAt = 0;
+                metrics.writeStartedAt = 0;
+                metrics.writeEndedAt = 0;
+                metrics.readCountAtChunkStart = metrics.stepExecution.getReadCount();
+            }
+        }
+
+        @Override
+        public void beforeProcess(@NonNull Object item) {
+            StepMetrics metrics = current.get();
+
+            if (metrics != null && metrics.processStartedAt == 0) {
+                metrics.processStartedAt = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void beforeWrite(@NonNull Chunk<?> items) {
+            StepMetrics metrics = current.get();
+
+            if (metrics != null) {
+                metrics.writeStartedAt = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void afterWrite(@NonNull Chunk<?> items) {
+            StepMetrics metrics = current.get();
+
+            if (metrics != null) {
+                metrics.writeEndedAt = System.nanoTime();
+            }
+        }
+
+        // 커밋이 끝난 뒤 호출된다.
+        @Override
+        public void afterChunk(@NonNull ChunkContext context) {
+            long now = System.nanoTime();
+
+            long rCount = context.getStepContext().getStepExecution().getReadCount();
+            long wCount = context.getStepContext().getStepExecution().getWriteCount();
+
+            logger.info("Processed chunk - Read count: {} / Write count: {}",
+                    String.format("%,6d", rCount),
+                    String.format("%,6d", wCount));
+
+            StepMetrics metrics = current.get();
+
+            // 마지막에 읽을 것이 없어 바로 끝난 청크는 기록하지 않는다.
+            if (metrics == null || (rCount == metrics.readCountAtChunkStart && metrics.writeStartedAt == 0)) {
+                return;
+            }
+
+            long writeStartedAt = metrics.writeStartedAt != 0 ? metrics.writeStartedAt : now;
+            long writeEndedAt = metrics.writeEndedAt != 0 ? metrics.writeEndedAt : now;
+            long readEndedAt = metrics.processStartedAt != 0 ? metrics.processStartedAt : writeStartedAt;
+
+            metrics.read.record(readEndedAt - metrics.chunkStartedAt, TimeUnit.NANOSECONDS);
+            metrics.process.record(writeStartedAt - readEndedAt, TimeUnit.NANOSECONDS);
+            metrics.write.record(writeEndedAt - writeStartedAt, TimeUnit.NANOSECONDS);
+            metrics.commit.record(now - writeEndedAt, TimeUnit.NANOSECONDS);
+
+            if (metricsDirectory != null && now - metrics.lastReportedAt >= reportIntervalNanos) {
+                metrics.lastReportedAt = now;
+                report(metrics);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package darkchoco.batchsupport;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * gzip(.gz) 또는 zstd(.zst) 로 압축된 resource를 압축을 푼 내용으로 읽게 하는 resource.
+ * <p>
+ * 압축 해제는 별도 스레드에서 {@value #BLOCK_SIZE} 바이트 block 단위로 미리 해 두고, 최대 bufferedBlocks 개까지
+ * 큐에 쌓아 둔다. reader 스레드는 큐에서 block을 꺼내 읽기만 하므로, 파싱과 압축 해제가 동시에 진행된다.
+ * 큐가 가득 차면 압축 해제 스레드가 기다리므로 메모리 사용량은 BLOCK_SIZE * bufferedBlocks 를 넘지 않는다.
+ * <p>
+ * 압축 파일은 바이트 위치로 이동할 수 없으므로 {@link #isFile()}은 false를 반환한다. 따라서 재시작 시에는
+ * reader가 read count만큼 item을 다시 읽어 건너뛴다(FlatFileItemReader, JsonItemReader 등의 기본 동작).
+ * 여러 member로 이어 붙인 gzip 파일과 여러 frame으로 된 zstd 파일도 처음부터 끝까지 이어서 읽는다.
+ */
+public class DecompressingResource extends AbstractResource {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    public enum Compression {
+
+        GZIP(".gz"),
+        ZSTD(".zst");
+
+        private final String extension;
+
+        Compression(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private final Resource delegate;
+    private final Compression compression;
+
+    private int bufferedBlocks = 16;
+
+    public DecompressingResource(Resource delegate, Compression compression) {
+        Assert.notNull(delegate, "Delegate resource must not be null");
+        Assert.notNull(compression, "Compression must not be null");
+
+        this.delegate = delegate;
+        this.compression = compression;
+    }
+
+    /**
+     * 파일 이름이 .gz 나 .zst 로 끝나면 압축을 풀어 읽는 resource로 감싸고, 아니면 그대로 반환한다.
+     */
+    public static Resource decompressIfNeeded(Resource resource) {
+        String filename = resource.getFilename();
+
+        if (filename != null) {
+            for (Compression compression : Compression.values()) {
+                if (filename.endsWith(compression.extension)) {
+                    return new DecompressingResource(resource, compression);
+                }
+            }
+        }
+
+        return resource;
+    }
+
+    public void setBufferedBlocks(int bufferedBlocks) {
+        Assert.isTrue(bufferedBlocks > 0, "bufferedBlocks must be positive");
+
+        this.bufferedBlocks = bufferedBlocks;
+    }
+
+    @Override
+    @NonNull
+    public InputStream getInputStream() throws IOException {
+        InputStream compressed = delegate.getInputStream();
+
+        try {
+            InputStream decompressing = switch (compression) {
+                case GZIP -> new GZIPInputStream(compressed, BLOCK_SIZE);
+                case ZSTD -> new ZstdInputStream(new BufferedInputStream(compressed, BLOCK_SIZE));
+            };
+
+            return new PrefetchingInputStream(decompressing, bufferedBlocks, "decompress-" + delegate.getFilename());
+        }
+        catch (IOException | RuntimeException e) {
+            compressed.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean exists() {
+        return delegate.exists();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return delegate.lastModified();
+    }
+
+    // 압축을 푼 크기는 끝까지 읽어 보기 전에는 알 수 없다.
+    @Override
+    public long contentLength() throws IOException {
+        throw new IOException("Content length of " + getDescription() + " is unknown");
+    }
+
+    // 압축 확장자를 뺀 이름. 내용이 그 이름의 파일과 같다.
+    @Override
+    public String getFilename() {
+        String filename = delegate.getFilename();
+
+        return filename != null ? filename.substring(0, filename.length() - compression.extension.length()) : null;
+    }
+
+    @Override
+    @NonNull
+    public String getDescription() {
+        return compression.name().toLowerCase() + " decompressed " + delegate.getDescription();
+    }
+
+    /**
+     * 별도 스레드가 source를 block 단위로 읽어 큐에 넣고, 이 stream은 큐에서 block을 꺼내 돌려준다.
+     * source에서 발생한 예외는 읽는 쪽에서 IOException으로 다시 던진다.
+     */
+    static final class PrefetchingInputStream extends InputStream {
+
+        private final BlockingQueue<byte[]> blocks;
+        private final Thread producer;
+
+        private volatile Throwable failure;
+        private volatile boolean closed;
+
+        private byte[] current;
+        private int position;
+
+        PrefetchingInputStream(InputStream source, int capacity, String threadName) {
+            this.blocks = new ArrayBlockingQueue<>(capacity);
+            this.producer = Thread.ofPlatform().name(threadName).daemon().start(() -> produce(source));
+        }
+
+        private void produce(InputStream source) {
+            try (source) {
+                while (!closed) {
+                    byte[] block = new byte[BLOCK_SIZE];
+                    int length = source.readNBytes(block, 0, BLOCK_SIZE);
+
+                    if (length == 0) {
+                        break;
+                    }
+
+                    blocks.put(length == BLOCK_SIZE ? block : Arrays.copyOf(block, length));
+                }
+            }
+            catch (InterruptedException e) {
+                // close()가 호출되었다.
+                return;
+            }
+            catch (Throwable e) {
+                failure = e;
+            }
+
+            try {
+                blocks.put(END_OF_STREAM);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextBlock()) {
+                return -1;
+            }
+
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!nextBlock()) {
+                return -1;
+            }
+
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return current != null ? current.length - position : 0;
+        }
+
+        // 현재 block을 다 읽었으면 다음 block을 기다린다. 더 읽을 내용이 없으면 false.
+        private boolean nextBlock() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+
+            if (current == END_OF_STREAM) {
+                return false;
+            }
+
+            if (current != null && position < current.length) {
+                return true;
+            }
+
+            try {
+                current = blocks.take();
+                position = 0;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+            }
+
+            if (current == END_OF_STREAM) {
+                if (failure != null) {
+                    throw new IOException("Failed to decompress input", failure);
+                }
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            producer.interrupt();
+            blocks.clear();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package darkchoco.batchsupport;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.Assert;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 예약된 job 하나의 실행을 TaskExecutor에서 시작해, scheduler 스레드가 바로 돌아오게 하는 runner.
+ * <p>
+ * {@link #trigger(Callable)}은 trigger를 기록하고 실행을 executor(보통 작업마다 virtual thread를 만드는 executor)에
+ * 넘기기만 한다. 실행 중에 들어온 trigger는 {@link OverlapPolicy}에 따라 버리거나, 현재 실행 뒤에 줄 세우거나,
+ * 기다리는 다른 trigger와 합쳐 한 번만 이어서 실행한다. 같은 job의 실행은 겹치지 않으며,
+ * 줄 선 실행은 앞 실행을 마친 스레드에서 차례로 시작한다.
+ * <p>
+ * trigger부터 실행 시작까지의 시간은 {@code batch.scheduler.trigger.latency} timer에, 버린 trigger 수는
+ * {@code batch.scheduler.trigger.skipped} counter에 job 이름 tag와 함께 기록한다.
+ * <p>
+ * {@link #destroy()}가 호출되면 새 trigger를 거절하고 기다리는 trigger는 버린다. DataSource가 닫히기 전에 끝나도록
+ * 실행 중인 job은 shutdown timeout(기본 30초)까지 기다린다. timeout이 지나면 경고를 남기고 돌아오며,
+ * 실행은 중단시키지 않으므로 자기 스레드에서 계속된다.
+ */
+public class ScheduledJobRunner implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledJobRunner.class);
+
+    /**
+     * 같은 job이 실행 중일 때 들어온 trigger를 어떻게 처리할지.
+     */
+    public enum OverlapPolicy {
+        /** trigger를 버린다. */
+        SKIP,
+        /** queue 용량까지 trigger마다 한 번씩 차례로 실행한다. */
+        QUEUE,
+        /** 그동안 trigger가 몇 번 들어왔든 현재 실행 뒤에 한 번만 실행한다. */
+        COALESCE
+    }
+
+    private final String jobName;
+    private final OverlapPolicy overlapPolicy;
+    private final TaskExecutor taskExecutor;
+
+    private int queueCapacity = 16;
+
+    private long shutdownTimeoutMillis = 30_000;
+
+    private final Timer triggerLatency;
+    private final Counter skippedTriggers;
+
+    // this로 보호한다.
+    private final Deque<PendingRun> pendingRuns = new ArrayDeque<>();
+    private boolean running;
+    private boolean closed;
+
+    public ScheduledJobRunner(String jobName, OverlapPolicy overlapPolicy, TaskExecutor taskExecutor,
+                              MeterRegistry meterRegistry) {
+        Assert.hasText(jobName, "Job name must not be empty");
+        Assert.notNull(overlapPolicy, "Overlap policy must not be null");
+        Assert.notNull(taskExecutor, "TaskExecutor must not be null");
+        Assert.notNull(meterRegistry, "MeterRegistry must not be null");
+
+        this.jobName = jobName;
+        this.overlapPolicy = overlapPolicy;
+        this.taskExecutor = taskExecutor;
+        this.triggerLatency = Timer.builder("batch.scheduler.trigger.latency")
+                .description("Time from a schedule trigger until the job run starts")
+                .tag("job", jobName)
+                .register(meterRegistry);
+        this.skippedTriggers = Counter.builder("batch.scheduler.trigger.skipped")
+                .description("Schedule triggers dropped because a run was in flight")
+                .tag("job", jobName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@link OverlapPolicy#QUEUE}일 때 현재 실행 뒤에 기다릴 수 있는 실행 수. 넘는 trigger는 버린다. 기본값은 16이다.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        Assert.isTrue(queueCapacity > 0, "Queue capacity must be positive");
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * {@link #destroy()}가 실행 중인 job을 기다리는 시간. 기본값은 30초이다.
+     */
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        Assert.isTrue(shutdownTimeoutMillis >= 0, "Shutdown timeout must not be negative");
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * trigger를 기록하고 job을 기다리지 않고 돌아온다.
+     *
+     * @param launch job을 실행한다. 실행 중인 job이 끝난 뒤 executor에서 호출된다.
+     * @return trigger를 버렸으면 false
+     */
+    public boolean trigger(Callable<JobExecution> launch) {
+        PendingRun run = new PendingRun(System.nanoTime(), launch);
+
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (running) {
+                return enqueue(run);
+            }
+            running = true;
+        }
+
+        try {
+            taskExecutor.execute(() -> runAll(run));
+        }
+        catch (RuntimeException e) {
+            finished();
+            throw e;
+        }
+
+        return true;
+    }
+
+    /**
+     * 현재 실행이 끝나기를 기다리는 trigger를 버린다. 실행 중인 job은 중단하지 않는다.
+     */
+    public synchronized int cancelPending() {
+        int cancelled = pendingRuns.size();
+        pendingRuns.clear();
+        return cancelled;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+
+        synchronized (this) {
+            closed = true;
+            pendingRuns.clear();
+
+            while (running) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    logger.warn("{} is still running after {} ms, no longer waiting for it", jobName, shutdownTimeoutMillis);
+                    return;
+                }
+                wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            }
+        }
+    }
+
+    public Timer getTriggerLatency() {
+        return triggerLatency;
+    }
+
+    // lock을 잡은 채로 호출된다.
+    private boolean enqueue(PendingRun run) {
+        switch (overlapPolicy) {
+            case QUEUE -> {
+                if (pendingRuns.size() < queueCapacity) {
+                    pendingRuns.addLast(run);
+                    return true;
+                }
+            }
+            case COALESCE -> {
+                // latency가 기다린 시간 전체를 포함하도록 가장 이른 trigger 시각을 남기고,
+                // 실행은 가장 최근 trigger로 한다.
+                PendingRun waiting = pendingRuns.pollFirst();
+                pendingRuns.addLast(waiting == null ? run : new PendingRun(waiting.triggeredAt(), run.launch()));
+                return true;
+            }
+            case SKIP -> {
+            }
+        }
+
+        skippedTriggers.increment();
+        logger.debug("Skipped trigger of {} because a run is in flight", jobName);
+
+        return false;
+    }
+
+    private void runAll(PendingRun first) {
+        PendingRun run = first;
+
+        try {
+            while (run != null) {
+                start(run);
+
+                synchronized (this) {
+                    run = pendingRuns.pollFirst();
+                    if (run == null) {
+                        running = false;
+                        notifyAll();
+                    }
+                }
+            }
+        }
+        finally {
+            // 실행에서 Error가 새어 나왔다. 다음 trigger가 새로 실행할 수 있게 한다.
+            if (run != null) {
+                finished();
+            }
+        }
+    }
+
+    private synchronized void finished() {
+        running = false;
+        notifyAll();
+    }
+
+    private void start(PendingRun run) {
+        long latency = System.nanoTime() - run.triggeredAt();
+        triggerLatency.record(latency, TimeUnit.NANOSECONDS);
+        logger.debug("Starting {} {} ms after its trigger", jobName, TimeUnit.NANOSECONDS.toMillis(latency));
+
+        try {
+            JobExecution jobExecution = run.launch().call();
+            if (jobExecution != null) {
+                logger.debug("{} ends with status {}", jobName, jobExecution.getStatus());
+            }
+        }
+        catch (Exception e) {
+            logger.error("Failed to run " + jobName, e);
+        }
+    }
+
+    private record PendingRun(long triggeredAt, Callable<JobExecution> launch) {
+    }
+}
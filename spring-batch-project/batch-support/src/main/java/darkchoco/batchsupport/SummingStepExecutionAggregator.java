@@ -0,0 +1,130 @@
+package darkchoco.batchsupport;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.support.DefaultStepExecutionAggregator;
+import org.springframework.batch.core.partition.support.StepExecutionAggregator;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * partitioned step의 worker step execution을 {@link DefaultStepExecutionAggregator}처럼 합치고,
+ * worker가 ExecutionContext에 남긴 숫자 중 주어진 key prefix로 시작하는 값을 더하는 aggregator.
+ * <p>
+ * count와 status는 기본 aggregator처럼 이번 실행의 worker만 합친다. 합계는 job instance의 모든 partition을 대상으로 한다.
+ * 재시작 전에 끝난 partition은 다시 실행되지 않지만 마지막 실행의 값으로 더한다. 재시작한 worker의 ExecutionContext는
+ * 실패한 실행의 값을 이어서 세므로 두 번 더해지지 않는다.
+ * <p>
+ * 합계는 partitioned step과 job execution의 ExecutionContext에 같은 key로 저장한다. int와 long 값은 long으로,
+ * 다른 숫자는 double로 더한다. 비율은 더할 수 없으므로 {@link #addRate(String, String, String)}로 지정한 key는
+ * 합계로부터 다시 계산한다.
+ */
+public class SummingStepExecutionAggregator implements StepExecutionAggregator {
+
+    private final StepExecutionAggregator delegate = new DefaultStepExecutionAggregator();
+
+    private final JobExplorer jobExplorer;
+    private final String workerStepName;
+    private final List<String> keyPrefixes;
+    private final Map<String, Rate> rates = new LinkedHashMap<>();
+
+    private record Rate(String countKey, String millisKey) {
+    }
+
+    /**
+     * @param workerStepName worker step 이름. worker step execution의 이름은 {@code workerStepName:partition}이다.
+     * @param keyPrefixes    더할 ExecutionContext key의 prefix. 보통 item stream의 이름이다.
+     */
+    public SummingStepExecutionAggregator(JobExplorer jobExplorer, String workerStepName, String... keyPrefixes) {
+        Assert.notNull(jobExplorer, "JobExplorer must not be null");
+        Assert.hasText(workerStepName, "Worker step name must not be empty");
+        Assert.notEmpty(keyPrefixes, "At least one key prefix is required");
+
+        this.jobExplorer = jobExplorer;
+        this.workerStepName = workerStepName;
+        this.keyPrefixes = List.of(keyPrefixes);
+    }
+
+    /**
+     * {@code rateKey}를 {@code millisKey}의 시간 1초당 {@code countKey}의 수로 지정한다.
+     * partition의 비율을 더하지 않고 더한 count와 시간으로 계산하므로, 병렬로 실행한 partition에서는 worker 시간 1초당 비율이다.
+     */
+    public void addRate(String rateKey, String countKey, String millisKey) {
+        rates.put(rateKey, new Rate(countKey, millisKey));
+    }
+
+    @Override
+    public void aggregate(StepExecution result, Collection<StepExecution> executions) {
+        delegate.aggregate(result, executions);
+
+        Map<String, Number> sums = new TreeMap<>();
+        for (StepExecution partition : lastPartitionExecutions(result, executions)) {
+            for (Map.Entry<String, Object> entry : partition.getExecutionContext().entrySet()) {
+                if (entry.getValue() instanceof Number value && matches(entry.getKey()) && !rates.containsKey(entry.getKey())) {
+                    sums.merge(entry.getKey(), value, SummingStepExecutionAggregator::add);
+                }
+            }
+        }
+        rates.forEach((key, rate) -> {
+            Number count = sums.get(rate.countKey());
+            Number millis = sums.get(rate.millisKey());
+            if (count != null && millis != null) {
+                sums.put(key, millis.longValue() == 0 ? 0.0 : count.doubleValue() * 1_000 / millis.longValue());
+            }
+        });
+
+        ExecutionContext jobContext = result.getJobExecution().getExecutionContext();
+        sums.forEach((key, sum) -> {
+            result.getExecutionContext().put(key, sum);
+            jobContext.put(key, sum);
+        });
+    }
+
+    // 이번 실행의 execution이 job instance의 이전 실행에 저장된 execution보다 우선한다.
+    private Collection<StepExecution> lastPartitionExecutions(StepExecution result, Collection<StepExecution> executions) {
+        Map<String, StepExecution> last = new HashMap<>();
+        String prefix = workerStepName + ":";
+
+        for (JobExecution jobExecution : jobExplorer.getJobExecutions(result.getJobExecution().getJobInstance())) {
+            for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+                if (stepExecution.getStepName().startsWith(prefix)) {
+                    last.merge(stepExecution.getStepName(), stepExecution,
+                            (a, b) -> a.getId() > b.getId() ? a : b);
+                }
+            }
+        }
+        for (StepExecution execution : executions) {
+            last.put(execution.getStepName(), execution);
+        }
+
+        return last.values();
+    }
+
+    private boolean matches(String key) {
+        for (String keyPrefix : keyPrefixes) {
+            if (key.startsWith(keyPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Number add(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return a.longValue() + b.longValue();
+        }
+        return a.doubleValue() + b.doubleValue();
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer;
+    }
+}
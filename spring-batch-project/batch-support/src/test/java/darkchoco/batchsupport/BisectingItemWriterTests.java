@@ -0,0 +1,214 @@
+package darkchoco.batchsupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.support.ResourcelessJobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BisectingItemWriterTests {
+
+    // 50, 333, 777은 이미 있는 id이고, 500은 컬럼 길이를 넘는다. 청크 0, 3, 4, 7에 하나씩 있다.
+    private static final List<Integer> FAILING_IDS = List.of(50, 333, 500, 777);
+
+    private EmbeddedDatabase dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    private final List<Integer> skippedIds = new ArrayList<>();
+    private final List<Integer> writtenIds = new ArrayList<>();
+
+    record Row(int id, String value) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("CREATE TABLE row_item (id INT PRIMARY KEY, item_value VARCHAR(5))");
+        jdbcTemplate.update("INSERT INTO row_item VALUES (50, 'x'), (333, 'x'), (777, 'x')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    void skipsOnlyTheItemsThatFail() throws Exception {
+        StepExecution stepExecution = run(Integer.MAX_VALUE);
+
+        assertEquals(BatchStatus.COMPLETED, stepExecution.getStatus());
+        assertEquals(1000, stepExecution.getReadCount());
+        assertEquals(996, stepExecution.getWriteCount());
+        assertEquals(4, stepExecution.getWriteSkipCount());
+        assertEquals(996, newRows());
+
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        assertEquals(4, executionContext.getLong("bisect.chunks"));
+        assertEquals(4, executionContext.getLong("bisect.skippedItems"));
+        // 성공한 청크 6개는 1번, 실패한 청크 4개는 1 + 2 * log2(100)번쯤 쓴다.
+        assertEquals(66, executionContext.getLong("bisect.writes"));
+        assertEquals(66, delegateCalls.get());
+
+        assertEquals(FAILING_IDS, skippedIds);
+        // afterWrite에는 실제로 쓴 item만 전달되고, 순서는 바뀌지 않는다.
+        assertEquals(IntStream.rangeClosed(1, 1000).boxed().filter(id -> !FAILING_IDS.contains(id)).toList(), writtenIds);
+    }
+
+    @Test
+    void rollsBackTheChunkWhenTheSkipLimitIsExceeded() throws Exception {
+        StepExecution stepExecution = run(3);
+
+        assertEquals(BatchStatus.FAILED, stepExecution.getStatus());
+        // 청크 0 ~ 6은 커밋되고, 네 번째로 실패한 777이 있는 청크 7은 통째로 롤백된다.
+        assertEquals(697, stepExecution.getWriteCount());
+        assertEquals(3, stepExecution.getWriteSkipCount());
+        assertEquals(7, stepExecution.getCommitCount());
+        assertEquals(1, stepExecution.getRollbackCount());
+        assertEquals(697, newRows());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM row_item WHERE id BETWEEN 701 AND 800 AND item_value <> 'x'", Integer.class));
+        assertEquals(3, stepExecution.getExecutionContext().getLong("bisect.skippedItems"));
+    }
+
+    // 나누어 쓴 청크의 커밋이 실패하면 그 청크에서 건너뛴 item은 write skip count에도 bisect.* 에도 남지 않는다.
+    @Test
+    void dropsTheSkipsOfAChunkWhoseCommitFails() throws Exception {
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource) {
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+                // 333을 건너뛴 청크 3의 커밋만 실패한다.
+                if (skippedIds.contains(333)) {
+                    throw new TransactionSystemException("Commit failed");
+                }
+
+                super.doCommit(status);
+            }
+        };
+        transactionManager.setRollbackOnCommitFailure(true);
+
+        StepExecution stepExecution = run(Integer.MAX_VALUE, transactionManager);
+
+        assertEquals(BatchStatus.FAILED, stepExecution.getStatus());
+        assertEquals(299, stepExecution.getWriteCount());
+        assertEquals(1, stepExecution.getWriteSkipCount());
+        assertEquals(3, stepExecution.getCommitCount());
+        assertEquals(299, newRows());
+
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        assertEquals(1, executionContext.getLong("bisect.chunks"));
+        assertEquals(1, executionContext.getLong("bisect.skippedItems"));
+    }
+
+    @Test
+    void rethrowsErrorsThatAreNotRowLevel() throws Exception {
+        BisectingItemWriter<Row> writer = new BisectingItemWriter<>(chunk -> {
+            throw new IllegalStateException("connection lost");
+        }, dataSource);
+
+        StepExecution stepExecution = run(writer, new DataSourceTransactionManager(dataSource));
+
+        assertEquals(BatchStatus.FAILED, stepExecution.getStatus());
+        assertEquals(0, stepExecution.getWriteCount());
+        assertEquals(0, stepExecution.getWriteSkipCount());
+    }
+
+    private StepExecution run(int skipLimit) throws Exception {
+        return run(skipLimit, new DataSourceTransactionManager(dataSource));
+    }
+
+    private StepExecution run(int skipLimit, PlatformTransactionManager transactionManager) throws Exception {
+        JdbcBatchItemWriter<Row> jdbcWriter = new JdbcBatchItemWriterBuilder<Row>()
+                .dataSource(dataSource)
+                .sql("INSERT INTO row_item (id, item_value) VALUES (?, ?)")
+                .itemPreparedStatementSetter((row, ps) -> {
+                    ps.setInt(1, row.id());
+                    ps.setString(2, row.value());
+                })
+                .build();
+        jdbcWriter.afterPropertiesSet();
+
+        BisectingItemWriter<Row> writer = new BisectingItemWriter<>(chunk -> {
+            delegateCalls.incrementAndGet();
+            jdbcWriter.write(chunk);
+        }, dataSource);
+        writer.setSkipLimit(skipLimit);
+        writer.setSkipListener(new SkipListener<Object, Row>() {
+            @Override
+            public void onSkipInWrite(Row item, Throwable t) {
+                skippedIds.add(item.id());
+            }
+        });
+
+        return run(writer, transactionManager);
+    }
+
+    private StepExecution run(ItemWriter<Row> writer, PlatformTransactionManager transactionManager) throws Exception {
+        List<Row> rows = IntStream.rangeClosed(1, 1000)
+                .mapToObj(id -> new Row(id, id == 500 ? "too long" : "v"))
+                .toList();
+
+        ResourcelessJobRepository jobRepository = new ResourcelessJobRepository();
+
+        Job job = new JobBuilder("bisectJob", jobRepository)
+                .start(new StepBuilder("bisectStep", jobRepository)
+                        .<Row, Row>chunk(100, transactionManager)
+                        .reader(new ListItemReader<>(rows))
+                        .writer(writer)
+                        .listener(new ItemWriteListener<Row>() {
+                            @Override
+                            public void afterWrite(Chunk<? extends Row> items) {
+                                items.forEach(row -> writtenIds.add(row.id()));
+                            }
+                        })
+                        .build())
+                .build();
+
+        TaskExecutorJobLauncher jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+
+        JobExecution jobExecution = jobLauncher.run(job, new JobParameters());
+
+        return jobExecution.getStepExecutions().iterator().next();
+    }
+
+    private int newRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM row_item WHERE item_value <> 'x'", Integer.class);
+    }
+}
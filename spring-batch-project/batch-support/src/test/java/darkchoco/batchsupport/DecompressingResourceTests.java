@@ -0,0 +1,200 @@
+package darkchoco.batchsupport;
+
+import darkchoco.batchsupport.DecompressingResource.Compression;
+import darkchoco.batchsupport.DecompressingResource.PrefetchingInputStream;
+import io.airlift.compress.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecompressingResourceTests {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsGzip() throws IOException {
+        byte[] content = content(1_000_000);
+
+        assertArrayEquals(content, readAll(resource(gzip(content), Compression.GZIP)));
+    }
+
+    @Test
+    void roundTripsZstd() throws IOException {
+        byte[] content = content(1_000_000);
+
+        assertArrayEquals(content, readAll(resource(zstd(content), Compression.ZSTD)));
+    }
+
+    @Test
+    void readsEveryMemberOfConcatenatedGzip() throws IOException {
+        byte[] first = content(100_000);
+        byte[] second = "tail\n".getBytes(StandardCharsets.UTF_8);
+
+        byte[] decompressed = readAll(resource(concat(gzip(first), gzip(second)), Compression.GZIP));
+
+        assertArrayEquals(concat(first, second), decompressed);
+    }
+
+    @Test
+    void readsEveryFrameOfConcatenatedZstd() throws IOException {
+        byte[] first = content(100_000);
+        byte[] second = "tail\n".getBytes(StandardCharsets.UTF_8);
+
+        byte[] decompressed = readAll(resource(concat(zstd(first), zstd(second)), Compression.ZSTD));
+
+        assertArrayEquals(concat(first, second), decompressed);
+    }
+
+    @Test
+    void readsSingleBytesAcrossBlocks() throws IOException {
+        byte[] content = content(BLOCK_SIZE + 10);
+
+        try (InputStream input = resource(gzip(content), Compression.GZIP).getInputStream()) {
+            input.skipNBytes(BLOCK_SIZE - 1);
+
+            assertEquals(content[BLOCK_SIZE - 1] & 0xff, input.read());
+            assertEquals(content[BLOCK_SIZE] & 0xff, input.read());
+            assertEquals(8, input.skip(8));
+            assertEquals(content[BLOCK_SIZE + 9] & 0xff, input.read());
+            assertEquals(-1, input.read());
+        }
+    }
+
+    @Test
+    void rethrowsDecompressionErrorsToTheReader() throws IOException {
+        byte[] compressed = gzip(content(1_000_000));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+        try (InputStream input = resource(truncated, Compression.GZIP).getInputStream()) {
+            IOException exception = assertThrows(IOException.class, input::readAllBytes);
+
+            assertEquals("Failed to decompress input", exception.getMessage());
+            assertInstanceOf(IOException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    void closeStopsProducerBlockedOnFullQueue() throws Exception {
+        AtomicLong produced = new AtomicLong();
+        CountDownLatch sourceClosed = new CountDownLatch(1);
+
+        // 끝없이 읽히는 source. 큐가 차면 producer는 put()에서 기다린다.
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                produced.incrementAndGet();
+                return 'x';
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                Arrays.fill(buffer, offset, offset + length, (byte) 'x');
+                produced.addAndGet(length);
+                return length;
+            }
+
+            @Override
+            public void close() {
+                sourceClosed.countDown();
+            }
+        };
+
+        PrefetchingInputStream input = new PrefetchingInputStream(endless, 1, "prefetch-test");
+        assertEquals('x', input.read());
+
+        // 꺼낸 block, 큐의 block, put()에서 기다리는 block까지 세 block을 읽으면 producer가 멈춘다.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (produced.get() < 3L * BLOCK_SIZE && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3L * BLOCK_SIZE, produced.get());
+
+        input.close();
+
+        assertTrue(sourceClosed.await(5, TimeUnit.SECONDS), "producer did not close the source");
+        assertEquals(3L * BLOCK_SIZE, produced.get());
+        assertThrows(IOException.class, input::read);
+    }
+
+    @Test
+    void decompressesByFileExtension() throws IOException {
+        Path gz = Files.write(directory.resolve("data.csv.gz"), gzip(content(1000)));
+        Path plain = Files.write(directory.resolve("data.csv"), content(1000));
+
+        Resource decompressed = DecompressingResource.decompressIfNeeded(new FileSystemResource(gz));
+        Resource unchanged = new FileSystemResource(plain);
+
+        assertInstanceOf(DecompressingResource.class, decompressed);
+        assertEquals("data.csv", decompressed.getFilename());
+        assertArrayEquals(content(1000), readAll(decompressed));
+        assertSame(unchanged, DecompressingResource.decompressIfNeeded(unchanged));
+    }
+
+    private static DecompressingResource resource(byte[] compressed, Compression compression) {
+        DecompressingResource resource = new DecompressingResource(new ByteArrayResource(compressed), compression);
+        resource.setBufferedBlocks(2);
+        return resource;
+    }
+
+    private static byte[] readAll(Resource resource) throws IOException {
+        try (InputStream input = resource.getInputStream()) {
+            return input.readAllBytes();
+        }
+    }
+
+    // 압축이 적당히 되도록 줄 번호가 들어간 CSV 같은 내용
+    private static byte[] content(int size) {
+        StringBuilder content = new StringBuilder(size + 32);
+        for (int line = 0; content.length() < size; line++) {
+            content.append(line).append(",customer-").append(line % 997).append(",").append(line * 31 % 10007).append('\n');
+        }
+        return content.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream output = new GZIPOutputStream(compressed)) {
+            output.write(content);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] zstd(byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream output = new ZstdOutputStream(compressed)) {
+            output.write(content);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
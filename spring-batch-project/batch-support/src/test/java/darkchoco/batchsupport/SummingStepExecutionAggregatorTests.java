@@ -0,0 +1,42 @@
+package darkchoco.batchsupport;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class SummingStepExecutionAggregatorTests {
+
+    @Test
+    void computesTheRateFromTheSums() {
+        JobExecution jobExecution = new JobExecution(new JobInstance(1L, "job"), 1L, new JobParameters());
+        StepExecution result = new StepExecution("manager", jobExecution);
+        SummingStepExecutionAggregator aggregator = new SummingStepExecutionAggregator(mock(JobExplorer.class), "worker", "writer.");
+        aggregator.addRate("writer.rows.per.second", "writer.updated", "writer.write.ms");
+
+        aggregator.aggregate(result, List.of(worker(jobExecution, "worker:a", 100, 1_000), worker(jobExecution, "worker:b", 300, 500)));
+
+        // 초당 100 + 600 row가 아니라 1.5초에 400 row이다.
+        ExecutionContext jobContext = jobExecution.getExecutionContext();
+        assertEquals(400L, jobContext.get("writer.updated"));
+        assertEquals(1_500L, jobContext.get("writer.write.ms"));
+        assertEquals(400 / 1.5, jobContext.getDouble("writer.rows.per.second"), 1e-9);
+        assertEquals(400 / 1.5, result.getExecutionContext().getDouble("writer.rows.per.second"), 1e-9);
+    }
+
+    private static StepExecution worker(JobExecution jobExecution, String name, long updated, long millis) {
+        StepExecution worker = new StepExecution(name, jobExecution);
+        worker.getExecutionContext().putLong("writer.updated", updated);
+        worker.getExecutionContext().putLong("writer.write.ms", millis);
+        worker.getExecutionContext().putDouble("writer.rows.per.second", updated * 1_000.0 / millis);
+        return worker;
+    }
+}
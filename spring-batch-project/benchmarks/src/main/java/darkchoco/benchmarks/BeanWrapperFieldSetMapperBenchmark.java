@@ -0,0 +1,87 @@
+package darkchoco.benchmarks;
+
+import com.baeldung.batch.Coffee;
+import com.baeldung.batchscheduler.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.validation.BindException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * spring-batch-2-baeldung의 reader가 사용하는 BeanWrapperFieldSetMapper의 비용.
+ * <p>
+ * 설정은 BatchConfiguration.reader()(Coffee)와 SpringBatchScheduler의 reader(Book)와 같고,
+ * 입력은 coffee-list.csv, books.csv를 미리 tokenize 해 둔 FieldSet이다.
+ * BeanWrapper로 setter를 찾고 타입 변환을 하는 비용이 item마다 얼마인지 본다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeanWrapperFieldSetMapperBenchmark {
+
+    private BeanWrapperFieldSetMapper<Coffee> coffeeMapper;
+    private BeanWrapperFieldSetMapper<Book> bookMapper;
+
+    private FieldSet[] coffeeFieldSets;
+    private FieldSet[] bookFieldSets;
+    private int nextCoffee;
+    private int nextBook;
+
+    @Setup
+    public void setUp() throws Exception {
+        coffeeMapper = new BeanWrapperFieldSetMapper<>();
+        coffeeMapper.setTargetType(Coffee.class);
+        coffeeMapper.afterPropertiesSet();
+
+        bookMapper = new BeanWrapperFieldSetMapper<>();
+        bookMapper.setTargetType(Book.class);
+        bookMapper.afterPropertiesSet();
+
+        coffeeFieldSets = tokenize(BenchmarkData.lines("coffee-list.csv"), "brand", "origin", "characteristics");
+        bookFieldSets = tokenize(BenchmarkData.lines("books.csv"), "id", "name");
+    }
+
+    @Benchmark
+    public Coffee mapCoffee() throws BindException {
+        FieldSet fieldSet = coffeeFieldSets[nextCoffee];
+        nextCoffee = nextCoffee + 1 == coffeeFieldSets.length ? 0 : nextCoffee + 1;
+
+        return coffeeMapper.mapFieldSet(fieldSet);
+    }
+
+    @Benchmark
+    public Book mapBook() throws BindException {
+        FieldSet fieldSet = bookFieldSets[nextBook];
+        nextBook = nextBook + 1 == bookFieldSets.length ? 0 : nextBook + 1;
+
+        return bookMapper.mapFieldSet(fieldSet);
+    }
+
+    private static FieldSet[] tokenize(String[] lines, String... names) {
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+        tokenizer.setNames(names);
+
+        FieldSet[] fieldSets = new FieldSet[lines.length];
+
+        for (int i = 0; i < lines.length; i++) {
+            fieldSets[i] = tokenizer.tokenize(lines[i]);
+        }
+
+        return fieldSets;
+    }
+}
@@ -0,0 +1,42 @@
+package darkchoco.benchmarks;
+
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 각 모듈에 들어 있는 입력 파일을 benchmark 입력으로 읽어 온다.
+ * <p>
+ * 측정 중에 I/O가 섞이지 않도록 @Setup에서 한 번만 읽어 메모리에 올려 두고 사용한다.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static byte[] bytes(String classPathResource) {
+        try (InputStream in = new ClassPathResource(classPathResource).getInputStream()) {
+            return in.readAllBytes();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + classPathResource, e);
+        }
+    }
+
+    // 데이터가 아닌 빈 줄과 '#' 주석 줄은 제외한다.
+    static String[] lines(String classPathResource) {
+        List<String> lines = new String(bytes(classPathResource), StandardCharsets.UTF_8).lines()
+                .filter(line -> !line.isBlank() && !line.startsWith("#"))
+                .toList();
+
+        if (lines.isEmpty()) {
+            throw new IllegalStateException(classPathResource + " has no data lines");
+        }
+
+        return lines.toArray(String[]::new);
+    }
+}
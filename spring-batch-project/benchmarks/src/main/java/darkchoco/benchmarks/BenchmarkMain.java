@@ -0,0 +1,28 @@
+package darkchoco.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar의 main class.
+ * <p>
+ * JMH 명령행 옵션을 그대로 받고, 할당량(gc.alloc.rate.norm)도 함께 보도록 GC profiler를 항상 붙인다.
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                  # 전체 실행
+ * java -jar benchmarks/target/benchmarks.jar CustomerUpdate   # 이름이 일치하는 benchmark만 실행
+ * </pre>
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        new Runner(new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
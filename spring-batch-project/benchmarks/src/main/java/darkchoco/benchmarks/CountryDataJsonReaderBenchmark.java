@@ -0,0 +1,62 @@
+package darkchoco.benchmarks;
+
+import darkchoco.narasdata.domain.CountryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.json.JacksonJsonObjectReader;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * naras-data의 reader가 사용하는 JacksonJsonObjectReader&lt;CountryData&gt;로 countries.json 전체를 읽는 비용.
+ * <p>
+ * 한 번의 측정이 파일 하나(국가 약 250개)를 open - read - close 하는 것이므로,
+ * 국가당 비용은 결과를 국가 수로 나누면 된다. 파일은 메모리에 올려 두고 읽어 디스크 I/O는 포함하지 않는다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountryDataJsonReaderBenchmark {
+
+    private ByteArrayResource countries;
+
+    @Setup
+    public void setUp() {
+        countries = new ByteArrayResource(BenchmarkData.bytes("countries.json"));
+    }
+
+    @Benchmark
+    public int readAll(Blackhole blackhole) throws Exception {
+        JacksonJsonObjectReader<CountryData> reader = new JacksonJsonObjectReader<>(CountryData.class);
+        int count = 0;
+
+        reader.open(countries);
+
+        try {
+            CountryData countryData;
+
+            while ((countryData = reader.read()) != null) {
+                blackhole.consume(countryData);
+                count++;
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,81 @@
+package darkchoco.benchmarks;
+
+import darkchoco.bankstatement.batch.CustomerUpdateClassifier;
+import darkchoco.bankstatement.configuration.BatchConfiguation;
+import darkchoco.bankstatement.domain.CustomerCombinedUpdate;
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.file.mapping.FieldSetMapper;
+import org.springframework.batch.item.file.transform.LineTokenizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassifierCompositeItemWriter가 item마다 호출하는 CustomerUpdateClassifier.classify()의 비용.
+ * <p>
+ * 입력은 data/customer_update.csv를 실제 reader와 같은 tokenizer/mapper로 변환한 item이고,
+ * combined는 같은 item을 CustomerCombinedUpdate로 바꾼 것(CoalescingCustomerUpdateItemWriter 경로)이다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerUpdateClassifierBenchmark {
+
+    private CustomerUpdateClassifier classifier;
+
+    private CustomerUpdate[] updates;
+    private CustomerUpdate[] combinedUpdates;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        BatchConfiguation configuration = new BatchConfiguation(null);
+        LineTokenizer tokenizer = configuration.customerUpdatesLineTokenizer();
+        FieldSetMapper<CustomerUpdate> fieldSetMapper = configuration.customerUpdateFieldSetMapper();
+
+        String[] lines = BenchmarkData.lines("data/customer_update.csv");
+        updates = new CustomerUpdate[lines.length];
+        combinedUpdates = new CustomerUpdate[lines.length];
+
+        for (int i = 0; i < lines.length; i++) {
+            updates[i] = fieldSetMapper.mapFieldSet(tokenizer.tokenize(lines[i]));
+            combinedUpdates[i] = CustomerCombinedUpdate.from(updates[i]);
+        }
+
+        classifier = new CustomerUpdateClassifier(noOpWriter(), noOpWriter(), noOpWriter(), noOpWriter());
+    }
+
+    @Benchmark
+    public ItemWriter<? super CustomerUpdate> classify() {
+        return classifier.classify(updates[nextIndex()]);
+    }
+
+    @Benchmark
+    public ItemWriter<? super CustomerUpdate> classifyCombined() {
+        return classifier.classify(combinedUpdates[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == updates.length ? 0 : index + 1;
+        return index;
+    }
+
+    private static ItemWriter<CustomerUpdate> noOpWriter() {
+        return chunk -> {
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package darkchoco.benchmarks;
+
+import darkchoco.bankstatement.configuration.BatchConfiguation;
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.file.mapping.FieldSetMapper;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.batch.item.file.transform.LineTokenizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * bank-statement의 customer update 한 줄을 처리하는 비용.
+ * <p>
+ * BatchConfiguation의 customerUpdatesLineTokenizer(PatternMatchingCompositeLineTokenizer)와
+ * customerUpdateFieldSetMapper를 그대로 사용하고, 입력은 data/customer_update*.csv의 줄을 순서대로 돌려 쓴다.
+ * 파일에는 세 가지 record type이 섞여 있으므로 type별 분기 비용도 실제 비율대로 측정된다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerUpdateLineBenchmark {
+
+    @Param({"data/customer_update.csv", "data/customer_update_shuffled.csv"})
+    private String input;
+
+    private LineTokenizer tokenizer;
+    private FieldSetMapper<CustomerUpdate> fieldSetMapper;
+
+    private String[] lines;
+    private FieldSet[] fieldSets;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        // 두 bean 메서드는 DataSource나 @Value 값을 사용하지 않는다.
+        BatchConfiguation configuration = new BatchConfiguation(null);
+
+        tokenizer = configuration.customerUpdatesLineTokenizer();
+        fieldSetMapper = configuration.customerUpdateFieldSetMapper();
+
+        lines = BenchmarkData.lines(input);
+        fieldSets = new FieldSet[lines.length];
+
+        for (int i = 0; i < lines.length; i++) {
+            fieldSets[i] = tokenizer.tokenize(lines[i]);
+        }
+    }
+
+    @Benchmark
+    public FieldSet tokenize() {
+        return tokenizer.tokenize(lines[nextIndex()]);
+    }
+
+    @Benchmark
+    public CustomerUpdate mapFieldSet() throws Exception {
+        return fieldSetMapper.mapFieldSet(fieldSets[nextIndex()]);
+    }
+
+    @Benchmark
+    public CustomerUpdate tokenizeAndMap() throws Exception {
+        return fieldSetMapper.mapFieldSet(tokenizer.tokenize(lines[nextIndex()]));
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == lines.length ? 0 : index + 1;
+        return index;
+    }
+}
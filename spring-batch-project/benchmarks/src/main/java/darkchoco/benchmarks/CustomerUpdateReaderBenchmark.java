@@ -0,0 +1,116 @@
+package darkchoco.benchmarks;
+
+import darkchoco.bankstatement.batch.MappedCustomerUpdateItemReader;
+import darkchoco.bankstatement.configuration.BatchConfiguation;
+import darkchoco.bankstatement.domain.CustomerUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.FieldSetMapper;
+import org.springframework.batch.item.file.transform.LineTokenizer;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * bank-statement의 customer update 파일 하나를 처음부터 끝까지 읽는 비용을 두 reader로 비교한다.
+ * <p>
+ * tokenizer는 BatchConfiguation의 FlatFileItemReader 경로(customerUpdatesLineTokenizer + customerUpdateFieldSetMapper),
+ * mapped는 같은 LineMapper를 fallback으로 쓰는 MappedCustomerUpdateItemReader이다.
+ * MappedCustomerUpdateItemReader는 파일을 직접 map 하므로 data/customer_update*.csv를 임시 파일로 복사해 두고
+ * 두 reader 모두 그 파일을 읽는다. 파일은 page cache에 올라 있으므로 디스크 I/O는 거의 포함되지 않는다.
+ * 한 번의 측정이 open - read - close 이므로 줄당 비용은 결과를 줄 수(약 2,700)로 나누면 된다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerUpdateReaderBenchmark {
+
+    @Param({"data/customer_update.csv", "data/customer_update_shuffled.csv"})
+    private String input;
+
+    private Path file;
+
+    private LineTokenizer tokenizer;
+    private FieldSetMapper<CustomerUpdate> fieldSetMapper;
+    private LineMapper<CustomerUpdate> lineMapper;
+
+    @Setup
+    public void setUp() throws Exception {
+        // 사용하는 bean 메서드는 DataSource나 @Value 값을 사용하지 않는다.
+        BatchConfiguation configuration = new BatchConfiguation(null);
+
+        tokenizer = configuration.customerUpdatesLineTokenizer();
+        fieldSetMapper = configuration.customerUpdateFieldSetMapper();
+        lineMapper = configuration.customerUpdateLineMapper();
+
+        file = Files.createTempFile("customer_update", ".csv");
+        Files.write(file, BenchmarkData.bytes(input));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int tokenizer(Blackhole blackhole) throws Exception {
+        return readAll(new FlatFileItemReaderBuilder<CustomerUpdate>()
+                .resource(new FileSystemResource(file))
+                .name("customerUpdateItemReader")
+                .lineTokenizer(tokenizer)
+                .fieldSetMapper(fieldSetMapper)
+                .saveState(false)
+                .build(), blackhole);
+    }
+
+    @Benchmark
+    public int mapped(Blackhole blackhole) throws Exception {
+        MappedCustomerUpdateItemReader reader =
+                new MappedCustomerUpdateItemReader(new FileSystemResource(file), lineMapper);
+
+        reader.setName("customerUpdateItemReader");
+        reader.setSaveState(false);
+
+        return readAll(reader, blackhole);
+    }
+
+    private static int readAll(ItemStreamReader<CustomerUpdate> reader, Blackhole blackhole) throws Exception {
+        int count = 0;
+
+        reader.open(new ExecutionContext());
+
+        try {
+            CustomerUpdate update;
+
+            while ((update = reader.read()) != null) {
+                blackhole.consume(update);
+                count++;
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return count;
+    }
+}
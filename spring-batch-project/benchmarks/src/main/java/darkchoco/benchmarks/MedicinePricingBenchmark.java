@@ -0,0 +1,90 @@
+package darkchoco.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import com.baeldung.batchreaderproperties.job.MedicineBulkProcessor;
+import com.baeldung.batchreaderproperties.job.MedicineProcessor;
+import com.baeldung.batchreaderproperties.model.Medicine;
+import com.baeldung.batchreaderproperties.model.MedicineCategory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.Chunk;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * medExpirationJob의 청크 하나에 sale price를 매기는 비용. item마다 MedicineProcessor를 호출하는 경우(perItem)와
+ * 청크 전체를 MedicineBulkProcessor에 한 번에 넘기는 경우(bulk)를 비교한다.
+ * <p>
+ * 의약품은 오늘부터 90일 안에 만료되도록 고르게 만들어 절반 정도가 할인 대상(45일 미만)이 된다.
+ * 두 processor의 item 로그는 WARN으로 꺼서 로그 출력 비용은 측정에서 제외한다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MedicinePricingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int chunkSize;
+
+    private MedicineProcessor processor;
+    private MedicineBulkProcessor bulkProcessor;
+
+    private Chunk<Medicine> chunk;
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(MedicineProcessor.class)).setLevel(Level.WARN);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(MedicineBulkProcessor.class)).setLevel(Level.WARN);
+
+        processor = new MedicineProcessor();
+        processor.setSaleStartsDays(45);
+        processor.setMedicineSale(0.1);
+
+        bulkProcessor = new MedicineBulkProcessor();
+        bulkProcessor.setSaleStartsDays(45);
+        bulkProcessor.setMedicineSale(0.1);
+
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        List<Medicine> medicines = new ArrayList<>(chunkSize);
+
+        for (int i = 0; i < chunkSize; i++) {
+            Timestamp expirationDate = new Timestamp(now + TimeUnit.DAYS.toMillis(random.nextInt(90)) + random.nextInt(86_400_000));
+            medicines.add(new Medicine(new UUID(random.nextLong(), random.nextLong()), "medicine" + i, MedicineCategory.ANESTHETICS,
+                    expirationDate, 10.0 + random.nextInt(100), null, 0, null));
+        }
+
+        chunk = new Chunk<>(medicines);
+    }
+
+    @Benchmark
+    public void perItem(Blackhole blackhole) {
+        for (Medicine medicine : chunk) {
+            blackhole.consume(processor.process(medicine));
+        }
+    }
+
+    @Benchmark
+    public Chunk<Medicine> bulk() {
+        return bulkProcessor.process(chunk);
+    }
+}
@@ -0,0 +1,103 @@
+package darkchoco.benchmarks;
+
+import darkchoco.narasdata.batch.ParallelJsonArrayItemReader;
+import darkchoco.narasdata.domain.CountryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.json.JacksonJsonObjectReader;
+import org.springframework.batch.item.json.builder.JsonItemReaderBuilder;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * naras-data의 두 reader, 즉 reader()의 JsonItemReader와 parallelReader()의 ParallelJsonArrayItemReader로
+ * 같은 배열 전체를 open - read - close 하는 비용.
+ * <p>
+ * copies는 countries.json의 원소를 몇 번 이어 붙인 배열을 읽을지이다(1이면 국가 약 250개, 40이면 약 10,000개).
+ * workers는 ParallelJsonArrayItemReader에만 적용되고 batchSize는 parallelReader()처럼 기본값(256)을 쓴다.
+ * CountryDataJsonReaderBenchmark처럼 파일은 메모리에 올려 두고 읽는다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelJsonArrayReaderBenchmark {
+
+    @Param({"1", "40"})
+    private int copies;
+
+    @Param({"1", "4"})
+    private int workers;
+
+    private ByteArrayResource countries;
+
+    @Setup
+    public void setUp() {
+        String array = new String(BenchmarkData.bytes("countries.json"), StandardCharsets.UTF_8).strip();
+        String elements = array.substring(1, array.length() - 1).strip();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        out.writeBytes("[".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < copies; i++) {
+            out.writeBytes(((i == 0 ? "" : ",\n") + elements).getBytes(StandardCharsets.UTF_8));
+        }
+        out.writeBytes("]".getBytes(StandardCharsets.UTF_8));
+
+        countries = new ByteArrayResource(out.toByteArray());
+    }
+
+    @Benchmark
+    public int jsonItemReader(Blackhole blackhole) throws Exception {
+        return readAll(new JsonItemReaderBuilder<CountryData>()
+                .jsonObjectReader(new JacksonJsonObjectReader<>(CountryData.class))
+                .resource(countries)
+                .name("countryDataItemReader")
+                .build(), blackhole);
+    }
+
+    @Benchmark
+    public int parallelJsonArrayItemReader(Blackhole blackhole) throws Exception {
+        ParallelJsonArrayItemReader<CountryData> reader = new ParallelJsonArrayItemReader<>(countries, CountryData.class);
+        reader.setWorkers(workers);
+        reader.setName("countryDataItemReader");
+
+        return readAll(reader, blackhole);
+    }
+
+    private static int readAll(ItemStreamReader<CountryData> reader, Blackhole blackhole) throws Exception {
+        int count = 0;
+
+        reader.open(new ExecutionContext());
+
+        try {
+            CountryData countryData;
+
+            while ((countryData = reader.read()) != null) {
+                blackhole.consume(countryData);
+                count++;
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,121 @@
+package darkchoco.benchmarks;
+
+import darkchoco.bankstatement.batch.TransactionXmlItemReader;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * TransactionXmlItemReader가 파일 크기와 관계없이 일정한 heap으로 읽는지 확인하는 독립 실행 harness.
+ * <p>
+ * JMH benchmark가 아니다. 인자로 받은 요소 수마다 transactions.xml과 같은 모양의 파일을 임시 디렉터리에 만들고,
+ * 끝까지 읽으면서 10%마다 GC 후 사용 중인 heap을 잰다. heap 상한을 작게 주면 크기에 비례해 메모리를 쓰는 경우
+ * OutOfMemoryError로 바로 드러난다.
+ * <pre>
+ * java -Xmx64m -cp benchmarks/target/benchmarks.jar darkchoco.benchmarks.TransactionXmlHeapCheck 10000 100000 1000000
+ * </pre>
+ */
+public class TransactionXmlHeapCheck {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static void main(String[] args) throws Exception {
+        long[] sizes = args.length == 0
+                ? new long[]{10_000, 100_000, 1_000_000}
+                : Arrays.stream(args).mapToLong(Long::parseLong).toArray();
+
+        System.out.printf("max heap %.1f MB%n", mb(Runtime.getRuntime().maxMemory()));
+        System.out.printf("%12s %12s %14s %14s %10s%n", "elements", "file MB", "max used MB", "last used MB", "ms");
+
+        for (long size : sizes) {
+            Path file = Files.createTempFile("transactions", ".xml");
+
+            try {
+                generate(file, size);
+                check(file, size);
+            }
+            finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static void check(Path file, long size) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        TransactionXmlItemReader reader = new TransactionXmlItemReader(new FileSystemResource(file));
+        reader.setName("transactionItemReader");
+        reader.setSaveState(false);
+
+        long step = Math.max(1, size / 10);
+        long count = 0;
+        long maxUsed = 0;
+        long lastUsed = 0;
+        long start = System.nanoTime();
+
+        reader.open(new ExecutionContext());
+
+        try {
+            while (reader.read() != null) {
+                if (++count % step == 0) {
+                    memory.gc();
+                    lastUsed = memory.getHeapMemoryUsage().getUsed();
+                    maxUsed = Math.max(maxUsed, lastUsed);
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        if (count != size) {
+            throw new IllegalStateException("Read " + count + " of " + size + " elements");
+        }
+
+        System.out.printf("%,12d %12.1f %14.1f %14.1f %,10d%n",
+                size, mb(Files.size(file)), mb(maxUsed), mb(lastUsed), millis);
+    }
+
+    // transactions.xml과 같은 요소 구성. credit와 debit 중 하나는 빈 요소이다.
+    private static void generate(Path file, long size) throws IOException {
+        Random random = new Random(size);
+        LocalDateTime base = LocalDateTime.of(2018, 6, 1, 0, 0);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version='1.0' encoding='UTF-8'?>\n<transactions>\n");
+
+            for (long id = 1; id <= size; id++) {
+                int amount = random.nextInt(5000) + 1;
+                boolean credit = random.nextBoolean();
+
+                writer.write("\t<transaction>\n");
+                writer.write("\t\t<transactionId>" + id + "</transactionId>\n");
+                writer.write("\t\t<accountId>" + (random.nextInt(1000) + 1) + "</accountId>\n");
+                writer.write("\t\t<description>Vendor" + random.nextInt(500) + "</description>\n");
+                writer.write(credit ? "\t\t<credit>" + amount + "</credit>\n" : "\t\t<credit/>\n");
+                writer.write(credit ? "\t\t<debit/>\n" : "\t\t<debit>-" + amount + "</debit>\n");
+                writer.write("\t\t<timestamp>" + base.plusSeconds(random.nextInt(30 * 24 * 3600)).format(TIMESTAMP_FORMAT)
+                        + "</timestamp>\n");
+                writer.write("\t</transaction>\n");
+            }
+
+            writer.write("</transactions>\n");
+        }
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
@@ -4,10 +4,16 @@ import darkchoco.narasdata.domain.CountryData;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.lang.NonNull;
 
+/**
+ * full, shadow import에서 사용하는 processor. 모든 국가를 쓰지만 다음 증분 import가 바뀌지 않은 국가를
+ * 건너뛸 수 있도록 {@link CountryContentHash}를 계산해 둔다.
+ */
 public class CountryCapitalProcessor implements ItemProcessor<CountryData, CountryData> {
 
     @Override
     public CountryData process(@NonNull CountryData item) {
+        item.setContentHash(CountryContentHash.of(item));
+
         return item;
     }
 }
@@ -0,0 +1,143 @@
+package darkchoco.narasdata.batch;
+
+import darkchoco.narasdata.domain.CountryData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 증분 import에서 내용이 바뀐 국가만 writer로 넘기는 processor.
+ * <p>
+ * step이 시작할 때 country 테이블의 code와 content_hash를 한 번에 읽어 두고, 국가마다 {@link CountryContentHash}를
+ * 계산해 저장된 값과 같으면 null을 반환해 걸러낸다. 새 국가와 바뀐 국가는 hash를 채워 넘기므로
+ * writer가 hash도 함께 저장한다. 따라서 DB에 쓰는 양은 바뀐 국가 수에 비례한다.
+ * <p>
+ * 새로 추가된 국가, 바뀐 국가, 그대로인 국가의 수는 step ExecutionContext의 incremental.* 에 기록한다.
+ * 청크에서 센 수는 {@link #update(ExecutionContext)}에서 청크 트랜잭션과 함께 저장되고, 커밋된 뒤 afterChunk에서
+ * 합계에 더한다. 롤백된 청크의 수는 버리므로 재시작하면 커밋된 청크까지의 수에 이어서 센다.
+ * 청크 단위로 세므로 multi-threaded step에서는 사용할 수 없다.
+ * step의 processor로 등록하면 ItemStream, StepExecutionListener, ChunkListener로도 함께 등록된다.
+ */
+public class CountryChangeDetectionProcessor
+        implements ItemProcessor<CountryData, CountryData>, ItemStream, StepExecutionListener, ChunkListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(CountryChangeDetectionProcessor.class);
+
+    public static final String INSERTED = "incremental.inserted";
+    public static final String UPDATED = "incremental.updated";
+    public static final String UNCHANGED = "incremental.unchanged";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private Map<String, String> storedHashes = Map.of();
+
+    // 커밋된 청크까지의 합계
+    private long inserted;
+    private long updated;
+    private long unchanged;
+
+    // 아직 커밋되지 않은 현재 청크의 수
+    private long chunkInserted;
+    private long chunkUpdated;
+    private long chunkUnchanged;
+
+    public CountryChangeDetectionProcessor(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        Map<String, String> hashes = new HashMap<>();
+
+        jdbcTemplate.query("SELECT code, content_hash FROM country", rs -> {
+            hashes.put(rs.getString(1), rs.getString(2));
+        });
+
+        storedHashes = hashes;
+
+        logger.info("Loaded content hashes of {} stored countries", hashes.size());
+    }
+
+    @Override
+    public CountryData process(@NonNull CountryData item) {
+        String hash = CountryContentHash.of(item);
+
+        if (!storedHashes.containsKey(item.getCode())) {
+            chunkInserted++;
+        }
+        else if (hash.equals(storedHashes.get(item.getCode()))) {
+            chunkUnchanged++;
+            return null;
+        }
+        else {
+            chunkUpdated++;
+        }
+
+        item.setContentHash(hash);
+
+        return item;
+    }
+
+    @Override
+    public void open(@NonNull ExecutionContext executionContext) {
+        inserted = executionContext.getLong(INSERTED, 0);
+        updated = executionContext.getLong(UPDATED, 0);
+        unchanged = executionContext.getLong(UNCHANGED, 0);
+        discardChunk();
+    }
+
+    // 청크 트랜잭션 안에서 호출되므로, 커밋될 청크의 수까지 더해 저장한다.
+    @Override
+    public void update(@NonNull ExecutionContext executionContext) {
+        executionContext.putLong(INSERTED, inserted + chunkInserted);
+        executionContext.putLong(UPDATED, updated + chunkUpdated);
+        executionContext.putLong(UNCHANGED, unchanged + chunkUnchanged);
+    }
+
+    @Override
+    public void beforeChunk(@NonNull ChunkContext context) {
+        discardChunk();
+    }
+
+    @Override
+    public void afterChunk(@NonNull ChunkContext context) {
+        inserted += chunkInserted;
+        updated += chunkUpdated;
+        unchanged += chunkUnchanged;
+        discardChunk();
+    }
+
+    @Override
+    public void afterChunkError(@NonNull ChunkContext context) {
+        discardChunk();
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        logger.info("Incremental import: {} inserted, {} updated, {} unchanged ({})",
+                inserted, updated, unchanged, stepExecution.getStatus());
+
+        storedHashes = Map.of();
+
+        return stepExecution.getExitStatus();
+    }
+
+    private void discardChunk() {
+        chunkInserted = 0;
+        chunkUpdated = 0;
+        chunkUnchanged = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package darkchoco.narasdata.batch;
+
+import darkchoco.narasdata.domain.CountryData;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * country 테이블에 저장하는 국가 내용의 SHA-256 hash.
+ * <p>
+ * 테이블에 들어가는 칼럼과 수도 목록을 정해진 순서로, 값마다 길이를 앞에 붙여 hash한다. 길이를 붙이므로
+ * ("ab", "c")와 ("a", "bc")가 구분되고, null(-1)과 빈 문자열(0)도 구분된다. 수도는 JSON에 있는 순서대로 넣는다.
+ * JVM이나 실행 환경과 관계없이 같은 내용이면 항상 같은 값이므로 DB에 저장해 두고 다음 실행에서 비교할 수 있다.
+ */
+public final class CountryContentHash {
+
+    private CountryContentHash() {
+    }
+
+    public static String of(CountryData country) {
+        MessageDigest digest = sha256();
+
+        update(digest, country.getCode());
+        update(digest, country.getCommonName());
+        update(digest, country.getOfficialName());
+        update(digest, country.getFlagEmoji());
+        update(digest, country.getFlagImg());
+        update(digest, country.getRegion());
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(country.getPopulation()).array());
+        update(digest, country.getGoogleMapUrl());
+
+        List<String> capitals = country.getCapital();
+        update(digest, capitals == null ? -1 : capitals.size());
+
+        if (capitals != null) {
+            for (String capital : capitals) {
+                update(digest, capital);
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            update(digest, -1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void update(MessageDigest digest, int value) {
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(value).array());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // 모든 Java 플랫폼은 SHA-256을 제공해야 한다.
+            throw new IllegalStateException(e);
+        }
+    }
+}
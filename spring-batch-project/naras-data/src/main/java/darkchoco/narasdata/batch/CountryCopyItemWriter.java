@@ -0,0 +1,187 @@
+package darkchoco.narasdata.batch;
+
+import darkchoco.narasdata.domain.CountryData;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * JDBC batch INSERT 대신 PostgreSQL COPY 프로토콜로 국가와 수도를 넣는 writer.
+ * <p>
+ * 청크마다 COPY country를 끝낸 뒤 COPY country_capital을 실행하므로, country_capital의 FOREIGN KEY가 참조하는
+ * 국가는 항상 먼저 들어가 있다. 두 COPY 모두 청크 트랜잭션에 묶인 커넥션에서 실행되어 청크와 함께 커밋/롤백된다.
+ * <p>
+ * 수도 행은 CountryData의 capital 목록에서 바로 만들므로 CountryCapitalData 목록을 따로 만들지 않는다.
+ * 행은 CSV로 만들어 {@value #FLUSH_CHARS} 글자 정도씩 모아서 보낸다.
+ */
+public class CountryCopyItemWriter implements ItemWriter<CountryData> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CountryCopyItemWriter.class);
+
+    private static final int FLUSH_CHARS = 32 * 1024;
+
+    private static final String COPY_COUNTRY_SQL = """
+            COPY %s (code, common_name, official_name, flag_emoji, flag_img, region, population, google_map_url, content_hash)
+            FROM STDIN WITH (FORMAT csv)""";
+
+    private static final String COPY_CAPITAL_SQL = "COPY %s (capital, country_code) FROM STDIN WITH (FORMAT csv)";
+
+    private final DataSource dataSource;
+
+    private final String copyCountrySql;
+    private final String copyCapitalSql;
+
+    public CountryCopyItemWriter(DataSource dataSource) {
+        this(dataSource, "country", "country_capital");
+    }
+
+    // shadow 테이블처럼 같은 칼럼을 가진 다른 테이블에 넣을 때 사용한다.
+    public CountryCopyItemWriter(DataSource dataSource, String countryTable, String capitalTable) {
+        Assert.notNull(dataSource, "DataSource must not be null");
+        Assert.hasText(countryTable, "Country table must not be empty");
+        Assert.hasText(capitalTable, "Capital table must not be empty");
+
+        this.dataSource = dataSource;
+        this.copyCountrySql = COPY_COUNTRY_SQL.formatted(countryTable);
+        this.copyCapitalSql = COPY_CAPITAL_SQL.formatted(capitalTable);
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends CountryData> chunk) throws Exception {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+
+        // DataSourceUtils를 사용해야 청크 트랜잭션에 묶인 커넥션을 받는다.
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+
+        try {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+            long countries = copyCountries(pgConnection, chunk);
+            long capitals = copyCapitals(pgConnection, chunk);
+
+            logger.debug("Copied {} countries and {} capitals in {} ms",
+                    countries, capitals, (System.nanoTime() - startedAt) / 1_000_000);
+        }
+        finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private long copyCountries(PGConnection connection, Chunk<? extends CountryData> chunk) throws SQLException {
+        CopyIn copyIn = connection.getCopyAPI().copyIn(copyCountrySql);
+
+        try {
+            StringBuilder rows = new StringBuilder(FLUSH_CHARS + 1024);
+
+            for (CountryData country : chunk) {
+                appendCsvValue(rows, country.getCode());
+                rows.append(',');
+                appendCsvValue(rows, country.getCommonName());
+                rows.append(',');
+                appendCsvValue(rows, country.getOfficialName());
+                rows.append(',');
+                appendCsvValue(rows, country.getFlagEmoji());
+                rows.append(',');
+                appendCsvValue(rows, country.getFlagImg());
+                rows.append(',');
+                appendCsvValue(rows, country.getRegion());
+                rows.append(',').append(country.getPopulation()).append(',');
+                appendCsvValue(rows, country.getGoogleMapUrl());
+                rows.append(',');
+                appendCsvValue(rows, country.getContentHash());
+                rows.append('\n');
+
+                flushIfFull(copyIn, rows);
+            }
+
+            flush(copyIn, rows);
+
+            return copyIn.endCopy();
+        }
+        finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private long copyCapitals(PGConnection connection, Chunk<? extends CountryData> chunk) throws SQLException {
+        CopyIn copyIn = connection.getCopyAPI().copyIn(copyCapitalSql);
+
+        try {
+            StringBuilder rows = new StringBuilder(FLUSH_CHARS + 1024);
+
+            for (CountryData country : chunk) {
+                if (country.getCapital() == null) {
+                    continue;
+                }
+
+                for (String capital : country.getCapital()) {
+                    appendCsvValue(rows, capital);
+                    rows.append(',');
+                    appendCsvValue(rows, country.getCode());
+                    rows.append('\n');
+
+                    flushIfFull(copyIn, rows);
+                }
+            }
+
+            flush(copyIn, rows);
+
+            return copyIn.endCopy();
+        }
+        finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void flushIfFull(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.length() >= FLUSH_CHARS) {
+            flush(copyIn, rows);
+        }
+    }
+
+    private static void flush(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    // CSV 포맷에서 따옴표 없는 빈 값은 NULL, 따옴표로 감싼 값은 문자열로 들어간다.
+    private static void appendCsvValue(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
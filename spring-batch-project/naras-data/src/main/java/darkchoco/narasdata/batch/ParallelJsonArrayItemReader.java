@@ -0,0 +1,441 @@
+package darkchoco.narasdata.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.batch.item.NonTransientResourceException;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 최상위가 JSON 배열인 파일을 읽어, 원소를 여러 스레드에서 동시에 객체로 변환하는 reader.
+ * <p>
+ * scan 스레드 하나가 바이트 단위로 배열 원소의 경계만 찾아(문자열과 escape, 중첩된 {} [] 만 추적) 원소의 바이트를
+ * batchSize 개씩 묶고, worker pool이 묶음마다 Jackson으로 객체를 만든다. 묶음의 Future는 원본 순서대로 큐에 넣으므로
+ * step은 파일에 있는 순서 그대로 item을 받는다. 큐의 크기는 worker 수의 2배로 제한되어, 변환이 밀리면 scan도 기다린다.
+ * <p>
+ * 재시작 시에는 read count만큼의 원소를 객체로 변환하지 않고 경계만 찾아 건너뛴다.
+ * 변환에 실패한 원소는 그 순서에서 ParseException을 던지고, 다음 read는 그 다음 원소부터 계속한다.
+ * <p>
+ * JSON 구조 문자({ } [ ] " , \)는 모두 ASCII이므로 UTF-8 입력을 디코딩하지 않고 바이트로 경계를 찾을 수 있다.
+ */
+public class ParallelJsonArrayItemReader<T> extends AbstractItemCountingItemStreamItemReader<T> {
+
+    private static final Future<Object[]> END_OF_ARRAY = CompletableFuture.completedFuture(null);
+
+    private final Resource resource;
+    private final Class<T> type;
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 256;
+
+    private InputStream inputStream;
+    private ExecutorService executor;
+    private BlockingQueue<Future<Object[]>> batches;
+    private Thread scanner;
+    private volatile boolean closed;
+
+    private long skipElements;
+    private long elementIndex;
+
+    private Object[] current;
+    private int position;
+
+    public ParallelJsonArrayItemReader(Resource resource, Class<T> type) {
+        Assert.notNull(resource, "Resource must not be null");
+        Assert.notNull(type, "Type must not be null");
+
+        this.resource = resource;
+        this.type = type;
+    }
+
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public void setWorkers(int workers) {
+        Assert.isTrue(workers > 0, "workers must be positive");
+
+        this.workers = workers;
+    }
+
+    /**
+     * worker 하나가 한 번에 변환하는 원소 수.
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        Assert.state(resource.exists(), () -> "Input resource must exist: " + resource);
+
+        closed = false;
+        skipElements = 0;
+        elementIndex = 0;
+        current = null;
+
+        inputStream = resource.getInputStream();
+        executor = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("json-bind-", 0).daemon().factory());
+        batches = new ArrayBlockingQueue<>(workers * 2);
+    }
+
+    // 건너뛸 원소 수만 기억해 두고, scan 스레드가 시작할 때 변환 없이 건너뛴다.
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        skipElements = itemIndex;
+        elementIndex = itemIndex;
+    }
+
+    @Override
+    protected T doRead() throws Exception {
+        if (scanner == null) {
+            scanner = Thread.ofPlatform().name("json-scan-" + resource.getFilename()).daemon().start(this::scan);
+        }
+
+        while (current == null || position == current.length) {
+            Future<Object[]> batch = batches.take();
+
+            if (batch == END_OF_ARRAY) {
+                batches.put(END_OF_ARRAY);
+                return null;
+            }
+
+            try {
+                current = batch.get();
+                position = 0;
+            }
+            catch (ExecutionException e) {
+                throw new NonTransientResourceException("Failed to read JSON array from " + resource, e.getCause());
+            }
+        }
+
+        Object element = current[position++];
+        long index = elementIndex++;
+
+        if (element instanceof BindFailure failure) {
+            throw new ParseException("Failed to bind element " + index + " of " + resource, failure.cause());
+        }
+
+        return type.cast(element);
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        closed = true;
+
+        if (scanner != null) {
+            scanner.interrupt();
+            scanner = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+
+        if (batches != null) {
+            batches.clear();
+        }
+
+        current = null;
+
+        if (inputStream != null) {
+            inputStream.close();
+            inputStream = null;
+        }
+    }
+
+    // scan 스레드. 원소를 batchSize 개씩 묶어 worker에 넘기고, 그 Future를 순서대로 큐에 넣는다.
+    private void scan() {
+        ObjectReader objectReader = objectMapper.readerFor(type);
+        ElementScanner elements = new ElementScanner(inputStream);
+
+        try {
+            for (long i = 0; i < skipElements; i++) {
+                if (!elements.skip()) {
+                    break;
+                }
+            }
+
+            List<byte[]> pending = new ArrayList<>(batchSize);
+            byte[] element;
+
+            while (!closed && (element = elements.next()) != null) {
+                pending.add(element);
+
+                if (pending.size() == batchSize) {
+                    submit(objectReader, pending);
+                    pending = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (!pending.isEmpty()) {
+                submit(objectReader, pending);
+            }
+        }
+        catch (InterruptedException e) {
+            // close()가 호출되었다.
+            return;
+        }
+        catch (Exception e) {
+            if (closed) {
+                return;
+            }
+
+            try {
+                batches.put(CompletableFuture.failedFuture(e));
+            }
+            catch (InterruptedException interrupted) {
+                return;
+            }
+        }
+
+        try {
+            batches.put(END_OF_ARRAY);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(ObjectReader objectReader, List<byte[]> elements) throws InterruptedException {
+        batches.put(executor.submit(() -> bind(objectReader, elements)));
+    }
+
+    private static Object[] bind(ObjectReader objectReader, List<byte[]> elements) {
+        Object[] items = new Object[elements.size()];
+
+        for (int i = 0; i < items.length; i++) {
+            try {
+                Object item = objectReader.readValue(elements.get(i));
+
+                // null을 반환하면 step은 입력이 끝난 것으로 보므로, null 원소는 변환 실패로 처리한다.
+                items[i] = item != null ? item : new BindFailure(new IllegalArgumentException("Element is null"));
+            }
+            catch (IOException | RuntimeException e) {
+                items[i] = new BindFailure(e);
+            }
+        }
+
+        return items;
+    }
+
+    private record BindFailure(Exception cause) {
+    }
+
+    /**
+     * 최상위 배열의 원소를 하나씩 바이트 배열로 잘라낸다. 원소 앞뒤의 공백과 구분자 ','는 포함하지 않는다.
+     */
+    static final class ElementScanner {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+
+        private int position;
+        private int limit;
+
+        // 읽고 있는 원소 중 buffer에 남아 있는 부분의 시작. capture가 false이면 사용하지 않는다.
+        private int mark;
+        private boolean capture;
+        private byte[] element = new byte[4 * 1024];
+        private int length;
+
+        private boolean started;
+        private boolean finished;
+
+        ElementScanner(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * 다음 원소의 바이트. 배열이 끝났으면 null.
+         */
+        byte[] next() throws IOException {
+            if (!advance()) {
+                return null;
+            }
+
+            capture = true;
+            mark = position - 1;
+            length = 0;
+
+            scanElement();
+
+            append(mark, position - mark);
+            capture = false;
+
+            return Arrays.copyOf(element, length);
+        }
+
+        /**
+         * 다음 원소를 바이트로 복사하지 않고 건너뛴다. 배열이 끝났으면 false.
+         */
+        boolean skip() throws IOException {
+            if (!advance()) {
+                return false;
+            }
+
+            scanElement();
+
+            return true;
+        }
+
+        // 다음 원소의 첫 바이트까지 읽는다. 배열이 끝났으면 false.
+        private boolean advance() throws IOException {
+            if (finished) {
+                return false;
+            }
+
+            int c = nextNonWhitespace();
+
+            if (!started) {
+                if (c != '[') {
+                    throw new IOException("Expected '[' at the start of the input but found " + describe(c));
+                }
+
+                started = true;
+                c = nextNonWhitespace();
+            }
+            else if (c == ',') {
+                c = nextNonWhitespace();
+            }
+            else if (c != ']') {
+                throw new IOException("Expected ',' or ']' after an array element but found " + describe(c));
+            }
+
+            if (c == ']') {
+                finished = true;
+                return false;
+            }
+
+            if (c < 0) {
+                throw new IOException("Unexpected end of input inside the top-level array");
+            }
+
+            return true;
+        }
+
+        // 첫 바이트는 이미 읽었다. 원소의 마지막 바이트 다음까지 읽는다.
+        private void scanElement() throws IOException {
+            int first = buffer[position - 1];
+
+            if (first == '{' || first == '[') {
+                int depth = 1;
+
+                while (depth > 0) {
+                    int c = read();
+
+                    switch (c) {
+                        case '"' -> scanString();
+                        case '{', '[' -> depth++;
+                        case '}', ']' -> depth--;
+                        case -1 -> throw new IOException("Unexpected end of input inside an array element");
+                        default -> {
+                        }
+                    }
+                }
+            }
+            else if (first == '"') {
+                scanString();
+            }
+            else {
+                // 숫자, true, false, null
+                int c;
+
+                do {
+                    c = read();
+                } while (c >= 0 && c != ',' && c != ']' && !isWhitespace(c));
+
+                if (c >= 0) {
+                    position--;
+                }
+            }
+        }
+
+        private void scanString() throws IOException {
+            int c;
+
+            while ((c = read()) != '"') {
+                if (c == '\\') {
+                    c = read();
+                }
+
+                if (c < 0) {
+                    throw new IOException("Unexpected end of input inside a string");
+                }
+            }
+        }
+
+        private int nextNonWhitespace() throws IOException {
+            int c;
+
+            do {
+                c = read();
+            } while (isWhitespace(c));
+
+            return c;
+        }
+
+        private int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+
+            return buffer[position++] & 0xff;
+        }
+
+        // buffer를 다시 채우기 전에, 읽고 있는 원소의 남은 부분을 element로 옮긴다.
+        private boolean fill() throws IOException {
+            if (capture) {
+                append(mark, limit - mark);
+                mark = 0;
+            }
+
+            int read;
+
+            do {
+                read = in.read(buffer, 0, buffer.length);
+            } while (read == 0);
+
+            position = 0;
+            limit = Math.max(read, 0);
+
+            return read > 0;
+        }
+
+        private void append(int offset, int count) {
+            if (length + count > element.length) {
+                element = Arrays.copyOf(element, Math.max(element.length * 2, length + count));
+            }
+
+            System.arraycopy(buffer, offset, element, length, count);
+            length += count;
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private static String describe(int c) {
+            return c < 0 ? "end of input" : "'" + (char) c + "'";
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package darkchoco.narasdata.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 증분 import에서 입력 파일에 더 이상 없는 국가를 삭제하는 tasklet.
+ * <p>
+ * 입력 파일을 Jackson streaming parser로 읽어 각 원소의 code만 모으고(다른 필드는 객체로 만들지 않고 건너뛴다),
+ * country 테이블의 code 중 입력에 없는 것을 수도와 함께 삭제한다. import step이 재시작되어 일부 국가를
+ * 건너뛰었더라도 파일 전체를 다시 보므로 결과가 같고, 여러 번 실행해도 안전하다.
+ * <p>
+ * 입력에서 국가를 하나도 찾지 못하면 잘못된 파일로 보고 아무것도 삭제하지 않고 실패한다.
+ * 삭제한 국가 수는 step ExecutionContext의 incremental.deleted 에 기록한다.
+ */
+public class RemovedCountryDeletionTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemovedCountryDeletionTasklet.class);
+
+    public static final String DELETED = "incremental.deleted";
+
+    private final Resource input;
+    private final JdbcTemplate jdbcTemplate;
+
+    public RemovedCountryDeletionTasklet(Resource input, DataSource dataSource) {
+        Assert.notNull(input, "Input resource must not be null");
+        Assert.notNull(dataSource, "DataSource must not be null");
+
+        this.input = input;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) throws Exception {
+        Set<String> codes = readCodes();
+
+        if (codes.isEmpty()) {
+            throw new IllegalStateException("No countries found in " + input + ", refusing to delete stored countries");
+        }
+
+        List<Object[]> removed = jdbcTemplate.queryForList("SELECT code FROM country", String.class).stream()
+                .filter(code -> !codes.contains(code))
+                .map(code -> new Object[] {code})
+                .toList();
+
+        if (!removed.isEmpty()) {
+            // country_capital이 country를 참조하므로 수도를 먼저 지운다.
+            jdbcTemplate.batchUpdate("DELETE FROM country_capital WHERE country_code = ?", removed);
+            jdbcTemplate.batchUpdate("DELETE FROM country WHERE code = ?", removed);
+        }
+
+        chunkContext.getStepContext().getStepExecution().getExecutionContext().putLong(DELETED, removed.size());
+
+        logger.info("Deleted {} countries that are no longer in {}", removed.size(), input);
+
+        return RepeatStatus.FINISHED;
+    }
+
+    // 최상위 배열의 각 객체에서 code 필드만 읽는다.
+    private Set<String> readCodes() throws IOException {
+        Set<String> codes = new HashSet<>();
+
+        try (JsonParser parser = new JsonFactory().createParser(input.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array in " + input);
+            }
+
+            JsonToken token;
+
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+
+                    if ("code".equals(field)) {
+                        codes.add(parser.getValueAsString());
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("Expected only objects in the JSON array of " + input + " but found " + token);
+            }
+        }
+
+        return codes;
+    }
+}
@@ -0,0 +1,95 @@
+package darkchoco.narasdata.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+
+/**
+ * country, country_capital 대신 shadow 테이블에 국가를 넣은 뒤 한 번에 바꿔 끼우는 작업.
+ * <p>
+ * {@link #prepare()}는 PRIMARY KEY, FOREIGN KEY 없이 shadow 테이블을 새로 만든다. 따라서 import 중에는
+ * 행마다 인덱스를 갱신하거나 FOREIGN KEY를 검사하지 않는다. import가 끝나면 {@link #buildConstraints()}가
+ * 인덱스를 한 번에 만들고 FOREIGN KEY를 한 번에 검증한다. 중복된 code나 없는 국가를 가리키는 수도가 있으면
+ * 여기서 실패하며, 이때까지 원래 테이블은 건드리지 않는다.
+ * <p>
+ * {@link #swap()}은 원래 테이블을 지우고 shadow 테이블과 그 인덱스, sequence의 이름을 원래 이름으로 바꾼다.
+ * PostgreSQL의 DDL은 트랜잭션 안에서 실행되므로, 호출하는 트랜잭션이 커밋되는 순간 새 테이블이 보인다.
+ * 조회하는 쪽은 비어 있거나 일부만 들어간 테이블을 보지 않고, 교체하는 짧은 동안만 잠금을 기다린다.
+ */
+public class ShadowCountryTables {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowCountryTables.class);
+
+    public static final String COUNTRY = "country_shadow";
+    public static final String CAPITAL = "country_capital_shadow";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShadowCountryTables(DataSource dataSource) {
+        Assert.notNull(dataSource, "DataSource must not be null");
+
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    // 칼럼은 schema-all.sql의 country, country_capital과 같다.
+    public void prepare() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS country_capital_shadow, country_shadow");
+        jdbcTemplate.execute("""
+                CREATE TABLE country_shadow
+                (
+                    code           VARCHAR(10) NOT NULL,
+                    common_name    VARCHAR(100),
+                    official_name  VARCHAR(100),
+                    flag_emoji     VARCHAR(10),
+                    flag_img       VARCHAR(255),
+                    region         VARCHAR(100),
+                    population     INT,
+                    google_map_url VARCHAR(255),
+                    content_hash   CHAR(64)
+                )""");
+        jdbcTemplate.execute("""
+                CREATE TABLE country_capital_shadow
+                (
+                    id           SERIAL,
+                    capital      VARCHAR(100),
+                    country_code VARCHAR(10)
+                )""");
+
+        logger.info("Created shadow tables {} and {}", COUNTRY, CAPITAL);
+    }
+
+    // FOREIGN KEY 이름은 테이블마다 따로이므로 처음부터 원래 테이블의 이름을 쓴다.
+    // 통계를 미리 모아 두어 교체 직후의 조회도 알맞은 실행 계획을 쓴다.
+    public void buildConstraints() {
+        long startedAt = System.nanoTime();
+
+        jdbcTemplate.execute("ALTER TABLE country_shadow ADD CONSTRAINT country_shadow_pkey PRIMARY KEY (code)");
+        jdbcTemplate.execute("ALTER TABLE country_capital_shadow ADD CONSTRAINT country_capital_shadow_pkey PRIMARY KEY (id)");
+        jdbcTemplate.execute("""
+                ALTER TABLE country_capital_shadow ADD CONSTRAINT country_capital_country_code_fkey
+                FOREIGN KEY (country_code) REFERENCES country_shadow (code)""");
+        jdbcTemplate.execute("ANALYZE country_shadow");
+        jdbcTemplate.execute("ANALYZE country_capital_shadow");
+
+        logger.info("Built indexes and validated foreign key of shadow tables in {} ms",
+                (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    // 원래 테이블을 참조하는 다른 객체가 있으면 DROP이 실패하고 트랜잭션 전체가 롤백된다.
+    public void swap() {
+        String sequence = jdbcTemplate.queryForObject(
+                "SELECT pg_get_serial_sequence('country_capital_shadow', 'id')", String.class);
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS country_capital, country");
+        jdbcTemplate.execute("ALTER TABLE country_shadow RENAME TO country");
+        jdbcTemplate.execute("ALTER TABLE country_capital_shadow RENAME TO country_capital");
+        jdbcTemplate.execute("ALTER INDEX country_shadow_pkey RENAME TO country_pkey");
+        jdbcTemplate.execute("ALTER INDEX country_capital_shadow_pkey RENAME TO country_capital_pkey");
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RENAME TO country_capital_id_seq");
+
+        logger.info("Swapped shadow tables into country and country_capital");
+    }
+}
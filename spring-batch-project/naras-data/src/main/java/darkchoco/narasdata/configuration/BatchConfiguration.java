@@ -1,16 +1,29 @@
 package darkchoco.narasdata.configuration;
 
-import darkchoco.narasdata.batch.ChunkLoggingListener;
+import darkchoco.batchsupport.AdaptiveChunkCompletionPolicy;
+import darkchoco.batchsupport.BisectingItemWriter;
+import darkchoco.batchsupport.ChunkLoggingListener;
+import darkchoco.batchsupport.DecompressingResource;
 import darkchoco.narasdata.batch.CountryCapitalProcessor;
+import darkchoco.narasdata.batch.CountryChangeDetectionProcessor;
+import darkchoco.narasdata.batch.CountryCopyItemWriter;
 import darkchoco.narasdata.batch.JobCompletionNotificationListener;
+import darkchoco.narasdata.batch.ParallelJsonArrayItemReader;
+import darkchoco.narasdata.batch.RemovedCountryDeletionTasklet;
+import darkchoco.narasdata.batch.ShadowCountryTables;
 import darkchoco.narasdata.domain.CountryCapitalData;
 import darkchoco.narasdata.domain.CountryData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.FlowBuilder;
+import org.springframework.batch.core.job.builder.FlowJobBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ItemWriter;
@@ -19,15 +32,23 @@ import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilde
 import org.springframework.batch.item.json.JacksonJsonObjectReader;
 import org.springframework.batch.item.json.JsonItemReader;
 import org.springframework.batch.item.json.builder.JsonItemReaderBuilder;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
 import org.springframework.batch.item.support.CompositeItemWriter;
 import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +59,57 @@ public class BatchConfiguration {
     @Value("${file.input}")
     private String fileInput;
 
+    // true이면 원소 경계는 scan 스레드 하나가 찾고, CountryData 변환은 worker 스레드들이 나누어 한다.
+    @Value("${country.reader.parallel.enabled:false}")
+    private boolean parallelRead;
+
+    // 0이면 CPU 코어 수만큼 사용한다.
+    @Value("${country.reader.parallel.workers:0}")
+    private int parallelReadWorkers;
+
+    @Value("${country.reader.parallel.batch-size:256}")
+    private int parallelReadBatchSize;
+
+    @Value("${country.chunk-size:10}")
+    private int chunkSize;
+
+    // true이면 chunk-size에서 시작해 write + commit 시간이 target-commit-ms에 맞도록 청크 크기를 조절한다.
+    @Value("${country.chunk.adaptive:false}")
+    private boolean adaptiveChunk;
+
+    @Value("${country.chunk.min-size:5}")
+    private int minChunkSize;
+
+    @Value("${country.chunk.max-size:250}")
+    private int maxChunkSize;
+
+    @Value("${country.chunk.target-commit-ms:200}")
+    private long targetCommitMillis;
+
+    // full: 두 테이블을 비운 뒤 모든 국가를 INSERT한다.
+    // incremental: content hash가 바뀐 국가만 upsert하고, 입력에서 빠진 국가는 삭제한다.
+    // shadow: 인덱스와 FOREIGN KEY가 없는 shadow 테이블에 모든 국가를 넣고, 인덱스를 만든 뒤 원래 테이블과 바꿔 끼운다.
+    @Value("${country.import.mode:full}")
+    private String importMode;
+
+    // jdbc: 국가와 수도를 JDBC batch INSERT로, copy: PostgreSQL COPY로 넣는다.
+    @Value("${country.writer:jdbc}")
+    private String writerType;
+
+    // true이면 청크의 INSERT가 행 단위 오류로 실패할 때 청크를 반씩 나누어 다시 써서 실패한 국가만 건너뛴다.
+    @Value("${country.writer.bisect.enabled:false}")
+    private boolean bisectFailedWrites;
+
+    @Value("${country.writer.bisect.skip-limit:10}")
+    private int bisectSkipLimit;
+
+    // 청크 단계별 시간 지표 파일을 쓸 디렉터리. 비어 있으면 로그만 남긴다.
+    @Value("${batch.metrics.directory:}")
+    private String metricsDirectory;
+
+    @Value("${batch.metrics.report-interval-ms:10000}")
+    private long metricsReportIntervalMillis;
+
     private final DataSource dataSource;
 
     public BatchConfiguration(DataSource dataSource) {
@@ -46,12 +118,30 @@ public class BatchConfiguration {
 
     @Bean
     public Job countryDataJob(JobRepository jobRepository,
-                              JobCompletionNotificationListener listener,
-                              Step step) {
-        return new JobBuilder("importCountryDataJob", jobRepository)
+                              PlatformTransactionManager transactionManager,
+                              JobCompletionNotificationListener listener) {
+        // Step 빈이 여러 개이므로 주입받지 않고 설정에 따라 직접 고른다.
+        List<Step> steps = switch (importMode) {
+            case "incremental" -> List.of(importCountryData(jobRepository, transactionManager),
+                    deleteRemovedCountries(jobRepository, transactionManager));
+            case "shadow" -> List.of(prepareShadowTables(jobRepository, transactionManager),
+                    importCountryData(jobRepository, transactionManager),
+                    buildShadowConstraints(jobRepository, transactionManager),
+                    swapShadowTables(jobRepository, transactionManager));
+            default -> List.of(truncateCountryTables(jobRepository, transactionManager),
+                    importCountryData(jobRepository, transactionManager));
+        };
+
+        FlowBuilder<FlowJobBuilder> flow = new JobBuilder("importCountryDataJob", jobRepository)
                 .incrementer(new RunIdIncrementer())
                 .listener(listener)
-                .flow(step)
+                .flow(steps.get(0));
+
+        for (Step next : steps.subList(1, steps.size())) {
+            flow = flow.next(next);
+        }
+
+        return flow
                 .end()
                 .build();
     }
@@ -59,25 +149,158 @@ public class BatchConfiguration {
     @Bean
     public Step importCountryData(JobRepository jobRepository,
                                   PlatformTransactionManager transactionManager) {
-        return new StepBuilder("importCountryData", jobRepository)
-                .<CountryData, CountryData>chunk(10, transactionManager)
-                .reader(reader())
+        SimpleStepBuilder<CountryData, CountryData> builder = new StepBuilder("importCountryData", jobRepository)
+                .<CountryData, CountryData>chunk(countryCompletionPolicy(), transactionManager)
+                .reader(parallelRead ? parallelReader() : reader())
+                .writer(bisectFailedWrites ? bisectingCompositeItemWriter() : countryDataItemWriter())
+                .listener(countryCompletionPolicy())
+                .listener(chunkLoggingListener())
+                .listener(chunkLoggingListener().chunkListener());
+
+        // 증분 import는 저장된 hash와 다른 국가만 writer로 넘긴다.
+        // processor는 stream과 step/chunk listener로도 자동 등록된다.
+        if (isIncrementalImport()) {
+            return builder
+                    .processor(countryChangeDetectionProcessor())
+                    .build();
+        }
+
+        return builder
                 .processor(new CountryCapitalProcessor())
-                .writer(compositeItemWriter())
-                .listener(new ChunkLoggingListener())
                 .build();
     }
 
+    // full import는 모든 국가를 다시 넣으므로 먼저 두 테이블을 비운다.
+    // 완료된 step은 재시작 시 다시 실행되지 않으므로, import 중 실패 후 재시작해도 이미 넣은 국가는 남아 있다.
+    @Bean
+    public Step truncateCountryTables(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        return new StepBuilder("truncateCountryTables", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    new JdbcTemplate(dataSource).execute("TRUNCATE country_capital, country RESTART IDENTITY");
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .build();
+    }
+
+    // 재시작 시 완료된 step은 다시 실행되지 않으므로, import 중 실패 후 재시작하면 shadow 테이블에 이어서 넣는다.
+    @Bean
+    public Step prepareShadowTables(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        return new StepBuilder("prepareShadowTables", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    shadowCountryTables().prepare();
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .build();
+    }
+
+    @Bean
+    public Step buildShadowConstraints(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        return new StepBuilder("buildShadowConstraints", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    shadowCountryTables().buildConstraints();
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .build();
+    }
+
+    // 교체는 step 트랜잭션 하나에서 실행되므로 커밋되는 순간 새 테이블이 보인다.
+    @Bean
+    public Step swapShadowTables(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        return new StepBuilder("swapShadowTables", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    shadowCountryTables().swap();
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .build();
+    }
+
+    @Bean
+    public ShadowCountryTables shadowCountryTables() {
+        return new ShadowCountryTables(dataSource);
+    }
+
+    @Bean
+    public Step deleteRemovedCountries(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        return new StepBuilder("deleteRemovedCountries", jobRepository)
+                .tasklet(removedCountryDeletionTasklet(), transactionManager)
+                .build();
+    }
+
+    @Bean
+    public RemovedCountryDeletionTasklet removedCountryDeletionTasklet() {
+        return new RemovedCountryDeletionTasklet(countryDataResource(), dataSource);
+    }
+
+    @Bean
+    public CountryChangeDetectionProcessor countryChangeDetectionProcessor() {
+        return new CountryChangeDetectionProcessor(dataSource);
+    }
+
+    private boolean isIncrementalImport() {
+        return "incremental".equals(importMode);
+    }
+
+    private String countryTable() {
+        return "shadow".equals(importMode) ? ShadowCountryTables.COUNTRY : "country";
+    }
+
+    private String capitalTable() {
+        return "shadow".equals(importMode) ? ShadowCountryTables.CAPITAL : "country_capital";
+    }
+
+    // countries.json.gz, countries.json.zst 처럼 압축된 입력은 압축을 풀면서 읽는다.
+    private Resource countryDataResource() {
+        return DecompressingResource.decompressIfNeeded(new ClassPathResource(fileInput));
+    }
+
+    @Bean
+    public MeterRegistry batchMeterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    // step에는 이 listener와 chunkListener()가 돌려주는 청크 listener를 각각 등록한다.
+    @Bean
+    public ChunkLoggingListener chunkLoggingListener() {
+        return new ChunkLoggingListener(batchMeterRegistry(),
+                StringUtils.hasText(metricsDirectory) ? Path.of(metricsDirectory) : null,
+                metricsReportIntervalMillis);
+    }
+
+    @Bean
+    public CompletionPolicy countryCompletionPolicy() {
+        if (adaptiveChunk) {
+            return new AdaptiveChunkCompletionPolicy(chunkSize, minChunkSize, maxChunkSize, targetCommitMillis);
+        }
+
+        return new SimpleCompletionPolicy(chunkSize);
+    }
+
     @Bean
     public JsonItemReader<CountryData> reader() {
         return new JsonItemReaderBuilder<CountryData>()
                 .jsonObjectReader(new JacksonJsonObjectReader<>(CountryData.class))
 //                .resource(new FileSystemResource(fileInput))
-                .resource(new ClassPathResource(fileInput))
+                .resource(countryDataResource())
                 .name("countryDataItemReader")
                 .build();
     }
 
+    // reader()와 이름이 같으므로, 두 reader 중 어느 것으로 재시작해도 저장된 read count를 이어서 사용한다.
+    @Bean
+    public AbstractItemCountingItemStreamItemReader<CountryData> parallelReader() {
+        ParallelJsonArrayItemReader<CountryData> reader =
+                new ParallelJsonArrayItemReader<>(countryDataResource(), CountryData.class);
+
+        if (parallelReadWorkers > 0) {
+            reader.setWorkers(parallelReadWorkers);
+        }
+
+        reader.setBatchSize(parallelReadBatchSize);
+        reader.setName("countryDataItemReader");
+
+        return reader;
+    }
+
 //    @Bean
 //    public ItemProcessor<CountryData, List<CountryCapitalData>> processor() {
 //        return countryData -> {
@@ -89,6 +312,84 @@ public class BatchConfiguration {
 //        };
 //    }
 
+    // 국가와 수도를 함께 쓰는 writer를 감싸므로, 건너뛴 국가는 수도도 기록되지 않는다.
+    // shadow import에서는 제약 조건이 없어 INSERT가 중복 code로 실패하지 않고, buildShadowConstraints에서 실패한다.
+    @Bean
+    public BisectingItemWriter<CountryData> bisectingCompositeItemWriter() {
+        BisectingItemWriter<CountryData> writer = new BisectingItemWriter<>(countryDataItemWriter(), dataSource);
+
+        writer.setSkipLimit(bisectSkipLimit);
+
+        return writer;
+    }
+
+    // 증분 import는 바뀐 국가만 쓰므로 writer 설정과 관계없이 JDBC upsert를 사용한다.
+    private ItemWriter<CountryData> countryDataItemWriter() {
+        if (isIncrementalImport()) {
+            return incrementalCompositeItemWriter();
+        }
+
+        return "copy".equals(writerType) ? countryCopyItemWriter() : compositeItemWriter();
+    }
+
+    // 국가를 upsert한 뒤 그 국가의 수도를 지우고 다시 넣는다. 국가가 먼저 들어가므로 FOREIGN KEY를 만족한다.
+    @Bean
+    public CompositeItemWriter<CountryData> incrementalCompositeItemWriter() {
+        return new CompositeItemWriterBuilder<CountryData>()
+                .delegates(countryUpsertItemWriter(), countryCapitalDeleteItemWriter(),
+                        countryCapitalDelegatingItemWriter(countryCapitalItemWriter()))
+                .build();
+    }
+
+    @Bean
+    public JdbcBatchItemWriter<CountryData> countryUpsertItemWriter() {
+        return new JdbcBatchItemWriterBuilder<CountryData>()
+                .sql("""
+                        INSERT INTO country
+                        (code, common_name, official_name, flag_emoji, flag_img, region, population, google_map_url, content_hash)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        ON CONFLICT (code) DO UPDATE
+                        SET common_name = EXCLUDED.common_name,
+                            official_name = EXCLUDED.official_name,
+                            flag_emoji = EXCLUDED.flag_emoji,
+                            flag_img = EXCLUDED.flag_img,
+                            region = EXCLUDED.region,
+                            population = EXCLUDED.population,
+                            google_map_url = EXCLUDED.google_map_url,
+                            content_hash = EXCLUDED.content_hash
+                        """)
+                .itemPreparedStatementSetter((countryData, ps) -> {
+                    ps.setString(1, countryData.getCode());
+                    ps.setString(2, countryData.getCommonName());
+                    ps.setString(3, countryData.getOfficialName());
+                    ps.setString(4, countryData.getFlagEmoji());
+                    ps.setString(5, countryData.getFlagImg());
+                    ps.setString(6, countryData.getRegion());
+                    ps.setInt(7, countryData.getPopulation());
+                    ps.setString(8, countryData.getGoogleMapUrl());
+                    ps.setString(9, countryData.getContentHash());
+                })
+                .dataSource(dataSource)
+                .build();
+    }
+
+    // 새 국가는 지울 수도가 없으므로 assertUpdates를 끈다.
+    @Bean
+    public JdbcBatchItemWriter<CountryData> countryCapitalDeleteItemWriter() {
+        return new JdbcBatchItemWriterBuilder<CountryData>()
+                .sql("DELETE FROM country_capital WHERE country_code = ?")
+                .itemPreparedStatementSetter((countryData, ps) -> ps.setString(1, countryData.getCode()))
+                .assertUpdates(false)
+                .dataSource(dataSource)
+                .build();
+    }
+
+    // 청크마다 COPY country 다음에 COPY country_capital을 실행하므로 FOREIGN KEY가 참조하는 국가가 먼저 들어간다.
+    @Bean
+    public CountryCopyItemWriter countryCopyItemWriter() {
+        return new CountryCopyItemWriter(dataSource, countryTable(), capitalTable());
+    }
+
     @Bean
     public CompositeItemWriter<CountryData> compositeItemWriter() {
         // countryCapitalDelegatingItemWriter는 내부에서 countryCapitalItemWriter를 호출한다
@@ -102,10 +403,10 @@ public class BatchConfiguration {
         return new JdbcBatchItemWriterBuilder<CountryData>()
                 .beanMapped()
                 .sql("""
-                        INSERT INTO country
-                        (code, common_name, official_name, flag_emoji, flag_img, region, population, google_map_url)
-                        VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-                        """)
+                        INSERT INTO %s
+                        (code, common_name, official_name, flag_emoji, flag_img, region, population, google_map_url, content_hash)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        """.formatted(countryTable()))
                 .itemPreparedStatementSetter((countryData, ps) -> {
                     ps.setString(1, countryData.getCode());
                     ps.setString(2, countryData.getCommonName());
@@ -115,6 +416,7 @@ public class BatchConfiguration {
                     ps.setString(6, countryData.getRegion());
                     ps.setInt(7, countryData.getPopulation());
                     ps.setString(8, countryData.getGoogleMapUrl());
+                    ps.setString(9, countryData.getContentHash());
                 })
                 .dataSource(dataSource)
                 .build();
@@ -124,7 +426,7 @@ public class BatchConfiguration {
     public JdbcBatchItemWriter<CountryCapitalData> countryCapitalItemWriter() {
         JdbcBatchItemWriter<CountryCapitalData> writer = new JdbcBatchItemWriter<>();
         writer.setDataSource(dataSource);
-        writer.setSql("INSERT INTO country_capital (capital, country_code) VALUES (?, ?)");
+        writer.setSql("INSERT INTO %s (capital, country_code) VALUES (?, ?)".formatted(capitalTable()));
         
         writer.setItemPreparedStatementSetter((countryCapitalData, ps) -> {
             String countryCode = countryCapitalData.getCountryData() != null ? countryCapitalData.getCountryData().getCode() : "UNKNOWN";
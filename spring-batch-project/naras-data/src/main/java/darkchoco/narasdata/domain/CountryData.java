@@ -1,5 +1,6 @@
 package darkchoco.narasdata.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Transient;
@@ -30,6 +31,11 @@ public class CountryData {
     @Transient  // JPA는 이 필드를 무시. 결국 capital 필드는 JSON에서 데이터 받아오는 용도로만 사용된다.
     private List<String> capital;  // JSON의 capital 배열을 저장할 필드
 
+    // 증분 import에서 변경 여부를 판단하는 내용 hash. JSON에는 없고 CountryChangeDetectionProcessor가 채운다.
+    @JsonIgnore
+    @Transient
+    private String contentHash;
+
     @OneToMany(mappedBy = "countryData", fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
     @ToString.Exclude
     private List<CountryCapitalData> capitals;
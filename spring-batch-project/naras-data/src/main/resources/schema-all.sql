@@ -1,8 +1,7 @@
--- 종속 테이블을 먼저 삭제하여 두 테이블을 모두 삭제합니다
-DROP TABLE IF EXISTS country_capital;
-DROP TABLE IF EXISTS country CASCADE;
-
-CREATE TABLE country
+-- 애플리케이션이 시작할 때마다 실행된다(spring.sql.init.mode=always).
+-- 증분 import(country.import.mode=incremental)가 이전 실행의 데이터와 비교할 수 있도록 테이블을 삭제하지 않는다.
+-- full import는 job의 첫 step에서 두 테이블을 비운다.
+CREATE TABLE IF NOT EXISTS country
 (
     code           VARCHAR(10) PRIMARY KEY,
     common_name    VARCHAR(100),
@@ -11,10 +10,15 @@ CREATE TABLE country
     flag_img       VARCHAR(255),
     region         VARCHAR(100),
     population     INT,
-    google_map_url VARCHAR(255)
+    google_map_url VARCHAR(255),
+    -- 증분 import에서 변경 여부를 판단하는 SHA-256 hash (CountryContentHash)
+    content_hash   CHAR(64)
 );
 
-CREATE TABLE country_capital
+-- content_hash가 없던 때 만든 테이블
+ALTER TABLE country ADD COLUMN IF NOT EXISTS content_hash CHAR(64);
+
+CREATE TABLE IF NOT EXISTS country_capital
 (
     id      SERIAL PRIMARY KEY,
     capital VARCHAR(100),
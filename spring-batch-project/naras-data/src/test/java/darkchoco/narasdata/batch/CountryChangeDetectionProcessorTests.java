@@ -0,0 +1,90 @@
+package darkchoco.narasdata.batch;
+
+import darkchoco.narasdata.domain.CountryData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 롤백된 청크의 수는 저장되지 않고, 재시작하면 커밋된 청크까지의 수에 이어서 세는지 확인한다.
+ * beforeStep을 호출하지 않으므로 DB에 저장된 국가가 없는 것처럼 모든 국가를 새 국가로 센다.
+ */
+class CountryChangeDetectionProcessorTests {
+
+    private CountryChangeDetectionProcessor processor;
+    private ExecutionContext executionContext;
+
+    @BeforeEach
+    void setUp() {
+        processor = new CountryChangeDetectionProcessor(new SimpleDriverDataSource());
+        executionContext = new ExecutionContext();
+        processor.open(executionContext);
+    }
+
+    @Test
+    void savesTheCountsOfCommittedChunks() {
+        commitChunk("KR", "JP");
+        commitChunk("FR");
+
+        assertThat(executionContext.getLong(CountryChangeDetectionProcessor.INSERTED)).isEqualTo(3);
+    }
+
+    @Test
+    void dropsTheCountsOfARolledBackChunk() {
+        commitChunk("KR", "JP");
+
+        // 청크 처리 중 실패하면 update()는 호출되지 않고 afterChunkError가 호출된다.
+        processor.beforeChunk(null);
+        process("FR", "DE");
+        processor.afterChunkError(null);
+
+        // 같은 청크를 다시 처리한다.
+        commitChunk("FR", "DE");
+
+        assertThat(executionContext.getLong(CountryChangeDetectionProcessor.INSERTED)).isEqualTo(4);
+    }
+
+    @Test
+    void continuesTheCountsOfThePreviousExecution() {
+        commitChunk("KR", "JP");
+
+        processor.beforeChunk(null);
+        process("FR");
+        processor.afterChunkError(null);
+        processor.close();
+
+        CountryChangeDetectionProcessor restarted = new CountryChangeDetectionProcessor(new SimpleDriverDataSource());
+        restarted.open(executionContext);
+        restarted.beforeChunk(null);
+        restarted.process(country("FR"));
+        restarted.update(executionContext);
+        restarted.afterChunk(null);
+
+        assertThat(executionContext.getLong(CountryChangeDetectionProcessor.INSERTED)).isEqualTo(3);
+        assertThat(executionContext.getLong(CountryChangeDetectionProcessor.UPDATED)).isZero();
+        assertThat(executionContext.getLong(CountryChangeDetectionProcessor.UNCHANGED)).isZero();
+    }
+
+    // TaskletStep처럼 청크 트랜잭션 안에서 update()를, 커밋 뒤에 afterChunk를 호출한다.
+    private void commitChunk(String... codes) {
+        processor.beforeChunk(null);
+        process(codes);
+        processor.update(executionContext);
+        processor.afterChunk(null);
+    }
+
+    private void process(String... codes) {
+        for (String code : codes) {
+            assertThat(processor.process(country(code)).getContentHash()).hasSize(64);
+        }
+    }
+
+    private static CountryData country(String code) {
+        return new CountryData(code, code, code, null, null, "Asia", 1, null, List.of(code), null, null);
+    }
+}
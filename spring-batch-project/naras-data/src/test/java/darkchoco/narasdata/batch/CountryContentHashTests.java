@@ -0,0 +1,108 @@
+package darkchoco.narasdata.batch;
+
+import darkchoco.narasdata.domain.CountryData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CountryContentHash는 DB에 저장해 두고 다음 실행에서 비교하므로, 같은 내용이면 언제나 같은 값이어야 하고
+ * 저장되는 내용이 다르면 다른 값이어야 한다.
+ */
+class CountryContentHashTests {
+
+    @Test
+    void isStableAcrossRuns() {
+        // 이 값이 바뀌면 모든 국가가 바뀐 것으로 판단되어 다음 증분 import가 전부 다시 쓴다.
+        assertThat(CountryContentHash.of(korea()))
+                .isEqualTo("c7a3f26a6c2e46e4c29ee5f7fdcd3d80c86e1306d1de246a05005f54fae9db81");
+    }
+
+    @Test
+    void ignoresFieldsThatAreNotStored() {
+        CountryData country = korea();
+        country.setContentHash("previous");
+        country.setCapitals(List.of());
+
+        assertThat(CountryContentHash.of(country)).isEqualTo(CountryContentHash.of(korea()));
+    }
+
+    @Test
+    void distinguishesNullFromEmptyString() {
+        assertDiffers(country -> country.setOfficialName(null), country -> country.setOfficialName(""));
+        assertDiffers(country -> country.setFlagEmoji(null), country -> country.setFlagEmoji(""));
+        assertDiffers(country -> country.setCapital(List.of("")), country -> country.setCapital(new ArrayList<>()));
+    }
+
+    @Test
+    void distinguishesMissingCapitalsFromEmptyCapitals() {
+        assertDiffers(country -> country.setCapital(null), country -> country.setCapital(List.of()));
+    }
+
+    @Test
+    void dependsOnCapitalOrder() {
+        assertDiffers(country -> country.setCapital(List.of("Pretoria", "Cape Town", "Bloemfontein")),
+                country -> country.setCapital(List.of("Cape Town", "Pretoria", "Bloemfontein")));
+    }
+
+    @Test
+    void separatesAdjacentValues() {
+        assertDiffers(country -> {
+            country.setCommonName("ab");
+            country.setOfficialName("c");
+        }, country -> {
+            country.setCommonName("a");
+            country.setOfficialName("bc");
+        });
+        assertDiffers(country -> country.setCapital(List.of("ab", "c")),
+                country -> country.setCapital(List.of("a", "bc")));
+    }
+
+    @Test
+    void changesWithEveryStoredField() {
+        String hash = CountryContentHash.of(korea());
+
+        List<Consumer<CountryData>> changes = List.of(
+                country -> country.setCode("KP"),
+                country -> country.setCommonName("Korea"),
+                country -> country.setOfficialName("Korea"),
+                country -> country.setFlagEmoji("🏳"),
+                country -> country.setFlagImg("https://flagcdn.com/kp.svg"),
+                country -> country.setRegion("Europe"),
+                country -> country.setPopulation(51780580),
+                country -> country.setGoogleMapUrl("https://goo.gl/maps/x"),
+                country -> country.setCapital(List.of("Busan")));
+
+        for (Consumer<CountryData> change : changes) {
+            CountryData country = korea();
+            change.accept(country);
+
+            assertThat(CountryContentHash.of(country)).isNotEqualTo(hash);
+        }
+    }
+
+    // full, shadow import가 저장한 hash를 다음 증분 import가 그대로 비교한다.
+    @Test
+    void isStoredByTheFullImportProcessor() {
+        assertThat(new CountryCapitalProcessor().process(korea()).getContentHash())
+                .isEqualTo(CountryContentHash.of(korea()));
+    }
+
+    private static void assertDiffers(Consumer<CountryData> first, Consumer<CountryData> second) {
+        CountryData a = korea();
+        CountryData b = korea();
+        first.accept(a);
+        second.accept(b);
+
+        assertThat(CountryContentHash.of(a)).isNotEqualTo(CountryContentHash.of(b));
+    }
+
+    private static CountryData korea() {
+        return new CountryData("KR", "South Korea", "Republic of Korea", "🇰🇷", "https://flagcdn.com/kr.svg", "Asia",
+                51780579, "https://goo.gl/maps/7ecjaJXefjAQhxjGA", new ArrayList<>(List.of("Seoul")), null, null);
+    }
+}
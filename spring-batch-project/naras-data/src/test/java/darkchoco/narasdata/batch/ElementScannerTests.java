@@ -0,0 +1,167 @@
+package darkchoco.narasdata.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import darkchoco.narasdata.batch.ParallelJsonArrayItemReader.ElementScanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ElementScanner가 잘라낸 원소가 Jackson이 읽은 배열의 원소와 같은지 확인한다.
+ * <p>
+ * buffer는 64 KB이고 한 번의 read()가 돌려주는 만큼만 채우므로, read()마다 몇 바이트만 돌려주는 입력으로
+ * 문자열, escape, 숫자, 중첩 배열의 모든 위치에서 buffer가 다시 채워지는 경우를 만든다.
+ * 64 KB 경계는 실제 buffer 크기로도 따로 확인한다.
+ */
+class ElementScannerTests {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String MIXED = """
+            [ {"a": "x\\"y", "b": [1, [2, {"c": "]}"}]], "d": "\\\\"},
+              "str\\\\\\"ing,]", -12.5e3, true,false ,null,
+              [[], {}, [[["deep"]]]],
+              {"escaped": "\\u005d\\u007b\\n", "empty": ""},
+              "한글 \\"따옴표\\"", 0 ]
+            """;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 7, 64})
+    void splitsElementsWhereverTheBufferIsRefilled(int bytesPerRead) throws Exception {
+        byte[] input = MIXED.getBytes(StandardCharsets.UTF_8);
+
+        assertSameElements(scanAll(trickle(input, bytesPerRead)), input);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 1024, BUFFER_SIZE})
+    void splitsCountriesJson(int bytesPerRead) throws Exception {
+        byte[] input = new ClassPathResource("countries.json").getContentAsByteArray();
+
+        assertSameElements(scanAll(trickle(input, bytesPerRead)), input);
+    }
+
+    // 64 KB 경계 바로 앞에 escape의 '\', 숫자의 중간, 중첩 배열의 여는 괄호가 오도록 앞을 공백으로 채운다.
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "\"ab\\\\\\\"cd\"",
+            "\"\\\\\"",
+            "1234567890",
+            "-0.5e-7",
+            "true",
+            "[[1,[2,[3]]],[]]",
+            "{\"k\":[\"]\",{\"v\":\"\\\"}\"}]}"})
+    void splitsElementsAcrossTheBufferBoundary(String element) throws Exception {
+        for (int offset = 1; offset < element.length(); offset++) {
+            String head = "[\"first\",";
+            byte[] input = (head + " ".repeat(BUFFER_SIZE - head.length() - offset) + element + ",\"last\"]")
+                    .getBytes(StandardCharsets.UTF_8);
+
+            List<byte[]> elements = scanAll(new ByteArrayInputStream(input));
+
+            assertThat(elements).hasSize(3);
+            assertThat(new String(elements.get(1), StandardCharsets.UTF_8)).isEqualTo(element);
+            assertSameElements(elements, input);
+        }
+    }
+
+    @Test
+    void returnsElementsWithoutSurroundingWhitespace() throws Exception {
+        List<byte[]> elements = scanAll(trickle(" \n[ 1 ,\t\"a b\" ,\r\n{ \"k\" : 2 } ] ".getBytes(StandardCharsets.UTF_8), 1));
+
+        assertThat(elements).extracting(element -> new String(element, StandardCharsets.UTF_8))
+                .containsExactly("1", "\"a b\"", "{ \"k\" : 2 }");
+    }
+
+    @Test
+    void skipsElementsWithoutCopying() throws Exception {
+        ElementScanner scanner = new ElementScanner(trickle(MIXED.getBytes(StandardCharsets.UTF_8), 3));
+
+        for (int i = 0; i < 8; i++) {
+            assertThat(scanner.skip()).isTrue();
+        }
+
+        assertThat(new String(scanner.next(), StandardCharsets.UTF_8)).isEqualTo("\"한글 \\\"따옴표\\\"\"");
+        assertThat(new String(scanner.next(), StandardCharsets.UTF_8)).isEqualTo("0");
+        assertThat(scanner.skip()).isFalse();
+        assertThat(scanner.next()).isNull();
+    }
+
+    @Test
+    void readsAnEmptyArray() throws Exception {
+        assertThat(scanAll(new ByteArrayInputStream(" [ ] ".getBytes(StandardCharsets.UTF_8)))).isEmpty();
+    }
+
+    @Test
+    void rejectsMalformedArrays() {
+        assertThatThrownBy(() -> scanAll(stream("{\"a\": 1}")))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Expected '[' at the start of the input but found '{'");
+        assertThatThrownBy(() -> scanAll(stream("[1 2]")))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Expected ',' or ']' after an array element but found '2'");
+        assertThatThrownBy(() -> scanAll(stream("[{\"a\": [1, 2}")))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Unexpected end of input inside an array element");
+        assertThatThrownBy(() -> scanAll(stream("[\"abc\\\"]")))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Unexpected end of input inside a string");
+        assertThatThrownBy(() -> scanAll(stream("[1,")))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Unexpected end of input inside the top-level array");
+    }
+
+    private static List<byte[]> scanAll(InputStream in) throws IOException {
+        ElementScanner scanner = new ElementScanner(in);
+        List<byte[]> elements = new ArrayList<>();
+        byte[] element;
+
+        while ((element = scanner.next()) != null) {
+            elements.add(element);
+        }
+
+        return elements;
+    }
+
+    private static void assertSameElements(List<byte[]> elements, byte[] input) throws IOException {
+        JsonNode array = objectMapper.readTree(input);
+        List<JsonNode> scanned = new ArrayList<>();
+
+        for (byte[] element : elements) {
+            scanned.add(objectMapper.readTree(element));
+        }
+
+        assertThat(scanned).hasSize(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            assertThat(scanned.get(i)).as("element %d", i).isEqualTo(array.get(i));
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // read()마다 최대 bytesPerRead 바이트만 돌려준다.
+    private static InputStream trickle(byte[] bytes, int bytesPerRead) {
+        return new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                return super.read(buffer, offset, Math.min(length, bytesPerRead));
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package darkchoco.narasdata.batch;
+
+import darkchoco.narasdata.domain.CountryData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.json.JacksonJsonObjectReader;
+import org.springframework.batch.item.json.JsonItemReader;
+import org.springframework.batch.item.json.builder.JsonItemReaderBuilder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ParallelJsonArrayItemReader가 BatchConfiguration.reader()의 JsonItemReader와 같은 item을 같은 순서로 읽는지 확인한다.
+ */
+class ParallelJsonArrayItemReaderTests {
+
+    private static final Resource COUNTRIES = new ClassPathResource("countries.json");
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "1, 256", "4, 1", "4, 7", "8, 256"})
+    void readsTheSameItemsAsJsonItemReader(int workers, int batchSize) throws Exception {
+        List<CountryData> expected = readAll(jsonItemReader(COUNTRIES), new ExecutionContext());
+
+        assertThat(expected).hasSizeGreaterThan(200);
+        assertSameItems(readAll(parallelReader(COUNTRIES, workers, batchSize), new ExecutionContext()), expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1, 256", "4, 7"})
+    void continuesAfterTheSavedReadCountOnRestart(int workers, int batchSize) throws Exception {
+        ExecutionContext jsonContext = new ExecutionContext();
+        List<CountryData> expected = read(jsonItemReader(COUNTRIES), jsonContext, 50);
+        expected.addAll(readAll(jsonItemReader(COUNTRIES), jsonContext));
+
+        ExecutionContext executionContext = new ExecutionContext();
+        List<CountryData> items = read(parallelReader(COUNTRIES, workers, batchSize), executionContext, 50);
+        assertThat(executionContext.getInt("countryDataItemReader.read.count")).isEqualTo(50);
+
+        items.addAll(readAll(parallelReader(COUNTRIES, workers, batchSize), executionContext));
+
+        assertSameItems(items, expected);
+        assertSameItems(items, readAll(jsonItemReader(COUNTRIES), new ExecutionContext()));
+    }
+
+    // 두 reader의 이름이 같으므로 JsonItemReader가 저장한 read count로 재시작할 수 있다.
+    @Test
+    void restartsFromTheReadCountOfJsonItemReader() throws Exception {
+        ExecutionContext executionContext = new ExecutionContext();
+        List<CountryData> items = read(jsonItemReader(COUNTRIES), executionContext, 50);
+
+        items.addAll(readAll(parallelReader(COUNTRIES, 4, 16), executionContext));
+
+        assertSameItems(items, readAll(jsonItemReader(COUNTRIES), new ExecutionContext()));
+    }
+
+    @Test
+    void throwsParseExceptionForTheFailingElementAndContinues() throws Exception {
+        Resource resource = new ByteArrayResource("""
+                [{"code": "KR", "population": 1},
+                 {"code": "XX", "population": "many"},
+                 {"code": "JP", "population": 2}]
+                """.getBytes(StandardCharsets.UTF_8));
+        ParallelJsonArrayItemReader<CountryData> reader = parallelReader(resource, 2, 1);
+
+        reader.open(new ExecutionContext());
+
+        try {
+            assertThat(reader.read().getCode()).isEqualTo("KR");
+            assertThatThrownBy(reader::read)
+                    .isInstanceOf(ParseException.class)
+                    .hasMessageStartingWith("Failed to bind element 1 of");
+            assertThat(reader.read().getCode()).isEqualTo("JP");
+            assertThat(reader.read()).isNull();
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private static JsonItemReader<CountryData> jsonItemReader(Resource resource) {
+        return new JsonItemReaderBuilder<CountryData>()
+                .jsonObjectReader(new JacksonJsonObjectReader<>(CountryData.class))
+                .resource(resource)
+                .name("countryDataItemReader")
+                .build();
+    }
+
+    private static ParallelJsonArrayItemReader<CountryData> parallelReader(Resource resource, int workers, int batchSize) {
+        ParallelJsonArrayItemReader<CountryData> reader = new ParallelJsonArrayItemReader<>(resource, CountryData.class);
+
+        reader.setWorkers(workers);
+        reader.setBatchSize(batchSize);
+        reader.setName("countryDataItemReader");
+
+        return reader;
+    }
+
+    private static List<CountryData> readAll(ItemStreamReader<CountryData> reader,
+                                             ExecutionContext executionContext) throws Exception {
+        return read(reader, executionContext, Integer.MAX_VALUE);
+    }
+
+    // count개까지 읽고 커밋한 것처럼 update() 한 뒤 닫는다.
+    private static List<CountryData> read(ItemStreamReader<CountryData> reader,
+                                          ExecutionContext executionContext, int count) throws Exception {
+        List<CountryData> items = new ArrayList<>();
+
+        reader.open(executionContext);
+
+        try {
+            CountryData item;
+
+            while (items.size() < count && (item = reader.read()) != null) {
+                items.add(item);
+            }
+
+            reader.update(executionContext);
+        }
+        finally {
+            reader.close();
+        }
+
+        return items;
+    }
+
+    // CountryData는 equals()가 없으므로 필드를 비교한다.
+    private static void assertSameItems(List<CountryData> actual, List<CountryData> expected) {
+        assertThat(actual)
+                .usingRecursiveComparison()
+                .isEqualTo(expected);
+    }
+}
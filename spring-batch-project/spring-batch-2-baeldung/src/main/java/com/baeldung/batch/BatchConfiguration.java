@@ -2,6 +2,7 @@ package com.baeldung.batch;
 
 import javax.sql.DataSource;
 
+import darkchoco.batchsupport.DecompressingResource;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.job.builder.JobBuilder;
@@ -55,7 +56,8 @@ public class BatchConfiguration {
 
         return new FlatFileItemReaderBuilder<Coffee>()
                 .name("coffeeItemReader")
-                .resource(new ClassPathResource(fileInput))
+                // coffee-list.csv.gz 처럼 압축된 입력은 압축을 풀면서 읽는다.
+                .resource(DecompressingResource.decompressIfNeeded(new ClassPathResource(fileInput)))
                 .lineMapper(lineMapper)
                 .build();
     }
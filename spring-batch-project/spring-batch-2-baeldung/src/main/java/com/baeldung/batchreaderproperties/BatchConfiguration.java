@@ -1,34 +1,108 @@
 package com.baeldung.batchreaderproperties;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.util.Map;
 
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import com.baeldung.batchreaderproperties.job.ExpiresSoonMedicineReader;
+import com.baeldung.batchreaderproperties.job.MedicineBulkProcessor;
+import com.baeldung.batchreaderproperties.job.MedicineCategoryPartitioner;
 import com.baeldung.batchreaderproperties.job.MedicineProcessor;
+import com.baeldung.batchreaderproperties.job.MedicineSalePriceWriter;
 import com.baeldung.batchreaderproperties.job.MedicineWriter;
 import com.baeldung.batchreaderproperties.model.Medicine;
+import com.baeldung.batchreaderproperties.model.MedicineCategory;
+
+import darkchoco.batchsupport.AdaptiveChunkCompletionPolicy;
+import darkchoco.batchsupport.BulkProcessingItemWriter;
+import darkchoco.batchsupport.SummingStepExecutionAggregator;
 
 @Configuration
 public class BatchConfiguration {
 
+    @Value("${batch.medicine.chunk-size:10}")
+    private int chunkSize;
+
+    // when enabled, the chunk size starts at chunk-size and follows the measured write + commit time
+    @Value("${batch.medicine.chunk.adaptive:false}")
+    private boolean adaptiveChunk;
+
+    @Value("${batch.medicine.chunk.min-size:1}")
+    private int minChunkSize;
+
+    @Value("${batch.medicine.chunk.max-size:500}")
+    private int maxChunkSize;
+
+    @Value("${batch.medicine.chunk.target-commit-ms:200}")
+    private long targetCommitMillis;
+
+    // number of medicines the reader fetches per keyset page
+    @Value("${batch.medicine.reader.page-size:100}")
+    private int readerPageSize;
+
+    // when enabled, sale prices are computed for the whole chunk at once right before it is written
+    @Value("${batch.medicine.processor.bulk:true}")
+    private boolean bulkProcessing;
+
+    // when enabled, each medicine category is read, priced and written by its own worker step
+    @Value("${batch.medicine.partitioned:false}")
+    private boolean partitioned;
+
+    // a category with more than max-items medicines is split into at most grid-size expiration date ranges
+    @Value("${batch.medicine.partition.grid-size:4}")
+    private int partitionGridSize;
+
+    @Value("${batch.medicine.partition.max-items:10000}")
+    private int partitionMaxItems;
+
+    // number of partitions running at the same time; each holds a connection while it writes a chunk
+    @Value("${batch.medicine.partition.pool-size:4}")
+    private int partitionPoolSize;
+
     @Bean
     @StepScope
-    public ExpiresSoonMedicineReader expiresSoonMedicineReader(JdbcTemplate jdbcTemplate, @Value("#{jobParameters}") Map<String, Object> jobParameters) {
+    public ExpiresSoonMedicineReader expiresSoonMedicineReader(JdbcTemplate jdbcTemplate, @Value("#{jobParameters}") Map<String, Object> jobParameters,
+        @Value("#{stepExecutionContext}") Map<String, Object> stepExecutionContext) {
 
         ExpiresSoonMedicineReader medicineReader = new ExpiresSoonMedicineReader(jdbcTemplate);
+        medicineReader.setPageSize(readerPageSize);
+        // set only when reading a partition of MedicineCategoryPartitioner
+        if (stepExecutionContext.get(MedicineCategoryPartitioner.CATEGORY) != null) {
+            medicineReader.setCategory(MedicineCategory.valueOf(stepExecutionContext.get(MedicineCategoryPartitioner.CATEGORY)
+                .toString()));
+            medicineReader.setWindowStart(LocalDate.parse(stepExecutionContext.get(MedicineCategoryPartitioner.WINDOW_START)
+                .toString()));
+        }
+        if (stepExecutionContext.get(MedicineCategoryPartitioner.EXPIRES_FROM) != null) {
+            medicineReader.setExpiresFrom(LocalDateTime.parse(stepExecutionContext.get(MedicineCategoryPartitioner.EXPIRES_FROM)
+                .toString()));
+        }
+        if (stepExecutionContext.get(MedicineCategoryPartitioner.EXPIRES_TO) != null) {
+            medicineReader.setExpiresTo(LocalDateTime.parse(stepExecutionContext.get(MedicineCategoryPartitioner.EXPIRES_TO)
+                .toString()));
+        }
         enrichWithJobParameters(jobParameters, medicineReader);
         return medicineReader;
     }
@@ -41,6 +115,14 @@ public class BatchConfiguration {
         return medicineProcessor;
     }
 
+    @Bean
+    @StepScope
+    public MedicineBulkProcessor medicineBulkProcessor(@Value("#{jobParameters}") Map<String, Object> jobParameters) {
+        MedicineBulkProcessor medicineBulkProcessor = new MedicineBulkProcessor();
+        enrichWithJobParameters(jobParameters, medicineBulkProcessor);
+        return medicineBulkProcessor;
+    }
+
     @Bean
     @StepScope
     public MedicineWriter medicineWriter(@Value("#{jobParameters}") Map<String, Object> jobParameters) {
@@ -49,21 +131,86 @@ public class BatchConfiguration {
         return medicineWriter;
     }
 
+    // closed by the step like the other streams; the inferred destroy method would call close() a second time
+    @Bean(destroyMethod = "")
+    @StepScope
+    public MedicineSalePriceWriter medicineSalePriceWriter(JdbcTemplate jdbcTemplate, @Value("#{jobParameters}") Map<String, Object> jobParameters) {
+        MedicineSalePriceWriter medicineSalePriceWriter = new MedicineSalePriceWriter(jdbcTemplate);
+        enrichWithJobParameters(jobParameters, medicineSalePriceWriter);
+        return medicineSalePriceWriter;
+    }
+
     @Bean
-    public Job medExpirationJob(JobRepository jobRepository, PlatformTransactionManager transactionManager, MedicineWriter medicineWriter, MedicineProcessor medicineProcessor, ExpiresSoonMedicineReader expiresSoonMedicineReader) {
-        Step notifyAboutExpiringMedicine = new StepBuilder("notifyAboutExpiringMedicine", jobRepository).<Medicine, Medicine>chunk(10)
-            .reader(expiresSoonMedicineReader)
-            .processor(medicineProcessor)
-            .writer(medicineWriter)
-            .faultTolerant()
-            .transactionManager(transactionManager)
-            .build();
+    @StepScope
+    public MedicineCategoryPartitioner medicineCategoryPartitioner(JdbcTemplate jdbcTemplate, @Value("#{stepExecution}") StepExecution stepExecution) {
+        MedicineCategoryPartitioner partitioner = new MedicineCategoryPartitioner(jdbcTemplate, stepExecution);
+        partitioner.setMaxItemsPerPartition(partitionMaxItems);
+        return partitioner;
+    }
+
+    // shared by the partitions; the chunk size is adjusted separately on each thread
+    @Bean
+    public CompletionPolicy medicineCompletionPolicy() {
+        if (adaptiveChunk) {
+            return new AdaptiveChunkCompletionPolicy(chunkSize, minChunkSize, maxChunkSize, targetCommitMillis);
+        }
+        return new SimpleCompletionPolicy(chunkSize);
+    }
+
+    @Bean
+    public Job medExpirationJob(JobRepository jobRepository, PlatformTransactionManager transactionManager, JobExplorer jobExplorer, MedicineWriter medicineWriter,
+        MedicineProcessor medicineProcessor, MedicineBulkProcessor medicineBulkProcessor, ExpiresSoonMedicineReader expiresSoonMedicineReader,
+        MedicineSalePriceWriter medicineSalePriceWriter, MedicineCategoryPartitioner medicineCategoryPartitioner) {
+        Step notifyAboutExpiringMedicine;
+        if (partitioned) {
+            Step worker = medicineStep("notifyAboutExpiringMedicineWorker", jobRepository, transactionManager, medicineWriter, medicineProcessor, medicineBulkProcessor,
+                expiresSoonMedicineReader, medicineSalePriceWriter);
+
+            SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("medicine-partition-");
+            taskExecutor.setConcurrencyLimit(partitionPoolSize);
+
+            // the sale price numbers of all partitions end up in the job ExecutionContext
+            SummingStepExecutionAggregator aggregator = new SummingStepExecutionAggregator(jobExplorer, worker.getName(), "MedicineSalePriceWriter.");
+            aggregator.addRate("MedicineSalePriceWriter.rows.per.second", "MedicineSalePriceWriter.updated", "MedicineSalePriceWriter.write.ms");
+
+            notifyAboutExpiringMedicine = new StepBuilder("notifyAboutExpiringMedicinePartitioned", jobRepository).partitioner(worker.getName(), medicineCategoryPartitioner)
+                .step(worker)
+                .gridSize(partitionGridSize)
+                .taskExecutor(taskExecutor)
+                .aggregator(aggregator)
+                .build();
+        } else {
+            notifyAboutExpiringMedicine = medicineStep("notifyAboutExpiringMedicine", jobRepository, transactionManager, medicineWriter, medicineProcessor, medicineBulkProcessor,
+                expiresSoonMedicineReader, medicineSalePriceWriter);
+        }
 
         return new JobBuilder("medExpirationJob", jobRepository).incrementer(new RunIdIncrementer())
             .start(notifyAboutExpiringMedicine)
             .build();
     }
 
+    // the reader, processors and writers are step scoped, so each partition gets its own
+    private Step medicineStep(String name, JobRepository jobRepository, PlatformTransactionManager transactionManager, MedicineWriter medicineWriter,
+        MedicineProcessor medicineProcessor, MedicineBulkProcessor medicineBulkProcessor, ExpiresSoonMedicineReader expiresSoonMedicineReader,
+        MedicineSalePriceWriter medicineSalePriceWriter) {
+        CompletionPolicy completionPolicy = medicineCompletionPolicy();
+        // the sale prices are saved first, then the expiring medicines are reported
+        CompositeItemWriter<Medicine> writer = new CompositeItemWriter<>(medicineSalePriceWriter, medicineWriter);
+        SimpleStepBuilder<Medicine, Medicine> stepBuilder = new StepBuilder(name, jobRepository).<Medicine, Medicine>chunk(completionPolicy, transactionManager)
+            .reader(expiresSoonMedicineReader);
+        if (bulkProcessing) {
+            stepBuilder.writer(new BulkProcessingItemWriter<>(medicineBulkProcessor, writer));
+        } else {
+            stepBuilder.processor(medicineProcessor)
+                .writer(writer);
+        }
+        return stepBuilder.faultTolerant()
+            .listener(completionPolicy)
+            // counts the sale prices of a chunk only once it is committed
+            .listener((ChunkListener) medicineSalePriceWriter)
+            .build();
+    }
+
     private void enrichWithJobParameters(Map<String, Object> jobParameters, ContainsJobParameters container) {
         if (jobParameters.get(BatchConstants.TRIGGERED_DATE_TIME) != null) {
             container.setTriggeredDateTime(ZonedDateTime.parse(jobParameters.get(BatchConstants.TRIGGERED_DATE_TIME)
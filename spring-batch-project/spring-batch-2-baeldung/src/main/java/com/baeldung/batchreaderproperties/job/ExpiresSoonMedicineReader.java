@@ -1,14 +1,19 @@
 package com.baeldung.batchreaderproperties.job;
 
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.annotation.BeforeStep;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -24,13 +29,30 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Reads the medicines that expire within DEFAULT_EXPIRATION days in pages of {@code pageSize}, ordered by
+ * (EXPIRATION_DATE, MED_ID). Each page continues after the key of the last item read (keyset paging), so only one
+ * page is held in memory and the first item is available after the first page instead of the whole result.
+ * <p>
+ * The day the window starts and the key of the last item read are saved in the step ExecutionContext; a restarted
+ * step uses the same window and continues after the last committed key instead of reading the skipped items again.
+ * <p>
+ * When it reads a partition of {@link MedicineCategoryPartitioner}, only the medicines of {@code category} whose
+ * expiration date is in [{@code expiresFrom}, {@code expiresTo}) are read; a missing bound is left open.
+ */
 @Getter
 @Setter
 @RequiredArgsConstructor
 @Slf4j
 public class ExpiresSoonMedicineReader extends AbstractItemCountingItemStreamItemReader<Medicine> implements ContainsJobParameters {
 
-    private static final String FIND_EXPIRING_SOON_MEDICINE = "Select * from MEDICINE where EXPIRATION_DATE >= CURRENT_DATE AND EXPIRATION_DATE <= DATEADD('DAY', ?, CURRENT_DATE)";
+    private static final String FIND_EXPIRING_SOON_MEDICINE = "SELECT MED_ID, NAME, TYPE, EXPIRATION_DATE, ORIGINAL_PRICE, SALE_PRICE, VERSION FROM MEDICINE "
+        + "WHERE EXPIRATION_DATE >= ? AND EXPIRATION_DATE <= ?";
+
+    private static final String WINDOW_START = "window.start";
+    private static final String LAST_EXPIRATION_DATE = "last.expiration.date";
+    private static final String LAST_ID = "last.id";
+
     //common job parameters populated in bean initialization
     private ZonedDateTime triggeredDateTime;
     private String traceId;
@@ -40,34 +62,129 @@ public class ExpiresSoonMedicineReader extends AbstractItemCountingItemStreamIte
 
     private final JdbcTemplate jdbcTemplate;
 
-    private List<Medicine> expiringMedicineList;
+    private int pageSize = 100;
+
+    private MedicineCategory category;
+    private LocalDateTime expiresFrom;
+    private LocalDateTime expiresTo;
+
+    private LocalDate windowStart;
+    private LocalDateTime lastExpirationDate;
+    private String lastId;
+
+    private List<Medicine> page = List.of();
+    private int nextInPage;
 
     @Override
     protected Medicine doRead() {
-        if (expiringMedicineList != null && !expiringMedicineList.isEmpty()) {
-            return expiringMedicineList.get(getCurrentItemCount() - 1);
+        if (nextInPage == page.size()) {
+            // a short page means there is nothing after it
+            if ((nextInPage > 0 && nextInPage < pageSize) || fetchNextPage() == 0) {
+                // the count already includes this call
+                log.info("Trace = {}. Read {} meds that expire soon", traceId, getCurrentItemCount() - 1);
+                return null;
+            }
+        }
+
+        Medicine medicine = page.get(nextInPage++);
+        lastExpirationDate = medicine.getExpirationDate()
+            .toLocalDateTime();
+        lastId = medicine.getId()
+            .toString();
+
+        return medicine;
+    }
+
+    private int fetchNextPage() {
+        LocalDateTime from = windowStart.atStartOfDay();
+        LocalDateTime to = windowStart.plusDays(defaultExpiration)
+            .atStartOfDay();
+
+        StringBuilder sql = new StringBuilder(FIND_EXPIRING_SOON_MEDICINE);
+        List<Object> args = new ArrayList<>(List.of(from, to));
+        if (category != null) {
+            sql.append(" AND TYPE = ?");
+            args.add(category.name());
+        }
+        if (expiresFrom != null) {
+            sql.append(" AND EXPIRATION_DATE >= ?");
+            args.add(expiresFrom);
         }
+        if (expiresTo != null) {
+            sql.append(" AND EXPIRATION_DATE < ?");
+            args.add(expiresTo);
+        }
+        if (lastId != null) {
+            sql.append(" AND (EXPIRATION_DATE, MED_ID) > (?, ?)");
+            args.add(lastExpirationDate);
+            args.add(lastId);
+        }
+        sql.append(" ORDER BY EXPIRATION_DATE, MED_ID LIMIT ?");
+        args.add(pageSize);
+
+        page = jdbcTemplate.query(sql.toString(), (rs, row) -> getMedicine(rs), args.toArray());
+        nextInPage = 0;
+
+        log.debug("Trace = {}. Fetched {} meds that expire soon after {}", traceId, page.size(), lastId);
 
-        return null;
+        return page.size();
     }
 
     @Override
-    protected void doOpen() {
-        expiringMedicineList = jdbcTemplate.query(FIND_EXPIRING_SOON_MEDICINE, ps -> ps.setLong(1, defaultExpiration), (rs, row) -> getMedicine(rs));
+    public void open(ExecutionContext executionContext) {
+        if (executionContext.containsKey(getExecutionContextKey(WINDOW_START))) {
+            windowStart = LocalDate.parse(executionContext.getString(getExecutionContextKey(WINDOW_START)));
+        }
+        if (executionContext.containsKey(getExecutionContextKey(LAST_ID))) {
+            lastExpirationDate = LocalDateTime.parse(executionContext.getString(getExecutionContextKey(LAST_EXPIRATION_DATE)));
+            lastId = executionContext.getString(getExecutionContextKey(LAST_ID));
+        }
+        super.open(executionContext);
+    }
 
-        log.info("Trace = {}. Found {} meds that expires soon", traceId, expiringMedicineList.size());
-        if (!expiringMedicineList.isEmpty()) {
-            setMaxItemCount(expiringMedicineList.size());
+    @Override
+    public void update(ExecutionContext executionContext) {
+        super.update(executionContext);
+        if (isSaveState()) {
+            executionContext.putString(getExecutionContextKey(WINDOW_START), windowStart.toString());
+            if (lastId != null) {
+                executionContext.putString(getExecutionContextKey(LAST_EXPIRATION_DATE), lastExpirationDate.toString());
+                executionContext.putString(getExecutionContextKey(LAST_ID), lastId);
+            }
         }
     }
 
+    @Override
+    protected void doOpen() {
+        if (windowStart == null) {
+            windowStart = jdbcTemplate.queryForObject("SELECT CURRENT_DATE", LocalDate.class);
+        }
+
+        log.info("Trace = {}. Reading {} meds that expire within {} days of {} (from {} until {}), {} at a time{}", traceId, category == null ? "all" : category,
+            defaultExpiration, windowStart, expiresFrom == null ? "start" : expiresFrom, expiresTo == null ? "end" : expiresTo, pageSize,
+            lastId == null ? "" : ", after " + lastId);
+    }
+
+    // the saved key already positions the next page
+    @Override
+    protected void jumpToItem(int itemIndex) {
+    }
+
     private static Medicine getMedicine(ResultSet rs) throws SQLException {
-        return new Medicine(UUID.fromString(rs.getString(1)), rs.getString(2), MedicineCategory.valueOf(rs.getString(3)), rs.getTimestamp(4), rs.getDouble(5), rs.getObject(6, Double.class));
+        // the PostgreSQL driver cannot convert DECIMAL with getObject(..., Double.class)
+        BigDecimal salePrice = rs.getBigDecimal(6);
+        Double persistedSalePrice = salePrice == null ? null : salePrice.doubleValue();
+        return new Medicine(UUID.fromString(rs.getString(1)), rs.getString(2), MedicineCategory.valueOf(rs.getString(3)), rs.getTimestamp(4), rs.getDouble(5),
+            persistedSalePrice, rs.getLong(7), persistedSalePrice);
     }
 
     @Override
     protected void doClose() {
-
+        page = List.of();
+        nextInPage = 0;
+        windowStart = null;
+        lastExpirationDate = null;
+        lastId = null;
     }
 
     @PostConstruct
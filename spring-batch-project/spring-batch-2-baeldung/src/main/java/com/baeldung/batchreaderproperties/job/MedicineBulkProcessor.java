@@ -0,0 +1,85 @@
+package com.baeldung.batchreaderproperties.job;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.beans.factory.annotation.Value;
+
+import com.baeldung.batchreaderproperties.ContainsJobParameters;
+import com.baeldung.batchreaderproperties.model.Medicine;
+
+import darkchoco.batchsupport.BulkItemProcessor;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chunk-at-once version of {@link MedicineProcessor}: reads the clock once per chunk and computes the sale prices over
+ * arrays of expiration epochs and prices instead of building a {@code Duration} per medicine.
+ */
+@Slf4j
+@Getter
+@Setter
+public class MedicineBulkProcessor implements BulkItemProcessor<Medicine, Medicine>, ContainsJobParameters {
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private ZonedDateTime triggeredDateTime;
+    private String traceId;
+    private Clock clock = Clock.systemUTC();
+
+    @Value("#{jobParameters['SALE_STARTS_DAYS']}")
+    private long saleStartsDays;
+    @Value("#{jobParameters['MEDICINE_SALE']}")
+    private double medicineSale;
+
+    @Override
+    public Chunk<Medicine> process(Chunk<? extends Medicine> chunk) {
+        List<? extends Medicine> medicines = chunk.getItems();
+        int size = medicines.size();
+
+        long[] expirationSeconds = new long[size];
+        int[] expirationNanos = new int[size];
+        double[] originalPrices = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            Medicine medicine = medicines.get(i);
+            expirationSeconds[i] = Math.floorDiv(medicine.getExpirationDate()
+                .getTime(), MILLIS_PER_SECOND);
+            expirationNanos[i] = medicine.getExpirationDate()
+                .getNanos();
+            originalPrices[i] = medicine.getOriginalPrice();
+        }
+
+        Instant now = clock.instant();
+        long nowSeconds = now.getEpochSecond();
+        int nowNanos = now.getNano();
+        double salePriceFactor = 1 - medicineSale;
+        int onSale = 0;
+
+        for (int i = 0; i < size; i++) {
+            // same as Duration.between(now, expiration).toDays(): whole seconds rounded down, then days towards zero
+            long secondsToExpiration = expirationSeconds[i] - nowSeconds - (expirationNanos[i] < nowNanos ? 1 : 0);
+            long daysToExpiration = secondsToExpiration / SECONDS_PER_DAY;
+
+            if (daysToExpiration < saleStartsDays) {
+                Medicine medicine = medicines.get(i);
+                medicine.setSalePrice(originalPrices[i] * salePriceFactor);
+                onSale++;
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Trace = {}, calculated new sale price {} for medicine {}", traceId, medicine.getSalePrice(), medicine.getId());
+                }
+            }
+        }
+
+        log.info("Trace = {}, calculated new sale prices for {} of {} medicines", traceId, onSale, size);
+
+        return new Chunk<>(medicines);
+    }
+}
@@ -0,0 +1,151 @@
+package com.baeldung.batchreaderproperties.job;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+
+import com.baeldung.batchreaderproperties.model.MedicineCategory;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Splits the medicines that expire within DEFAULT_EXPIRATION days into one partition per {@link MedicineCategory}.
+ * A category with more than {@code maxItemsPerPartition} medicines is split further into expiration date ranges of
+ * about the same number of medicines, at most {@code gridSize} of them. Ranges start at an expiration date that occurs
+ * in the category, so medicines with the same date always end up in the same partition.
+ * <p>
+ * Each partition gets the category, the day the window starts and, for a range, the first expiration date it
+ * includes and the first one it does not. The window start and the partitions are also kept in the manager step
+ * ExecutionContext. A restarted job gets exactly the same partitions without querying again, even if medicines were
+ * added or removed in the meantime, because recomputed ranges could overlap partitions that already completed.
+ * Partitions that completed are skipped and the others continue from their own saved position.
+ */
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Slf4j
+public class MedicineCategoryPartitioner implements Partitioner {
+
+    public static final String CATEGORY = "category";
+    public static final String WINDOW_START = "windowStart";
+    public static final String EXPIRES_FROM = "expiresFrom";
+    public static final String EXPIRES_TO = "expiresTo";
+    public static final String PARTITIONS = "partitions";
+
+    private static final String COUNT_BY_CATEGORY = "SELECT TYPE, COUNT(*) FROM MEDICINE WHERE EXPIRATION_DATE >= ? AND EXPIRATION_DATE <= ? GROUP BY TYPE";
+    private static final String FIND_RANGE_STARTS = "SELECT MIN(EXPIRATION_DATE) FROM (SELECT EXPIRATION_DATE, NTILE(?) OVER (ORDER BY EXPIRATION_DATE) AS TILE FROM MEDICINE "
+        + "WHERE TYPE = ? AND EXPIRATION_DATE >= ? AND EXPIRATION_DATE <= ?) T GROUP BY TILE ORDER BY TILE";
+
+    @Value("#{jobParameters['DEFAULT_EXPIRATION']}")
+    private long defaultExpiration;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StepExecution stepExecution;
+
+    private int maxItemsPerPartition = 10_000;
+
+    @Override
+    @NonNull
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        ExecutionContext managerContext = stepExecution.getExecutionContext();
+        if (managerContext.containsKey(PARTITIONS)) {
+            Map<String, ExecutionContext> partitions = restorePartitions(managerContext);
+            log.info("Restarting with the partitions of the first run: {}", partitions.keySet());
+            return partitions;
+        }
+
+        LocalDate windowStart = managerContext.containsKey(WINDOW_START) ? LocalDate.parse(managerContext.getString(WINDOW_START))
+            : jdbcTemplate.queryForObject("SELECT CURRENT_DATE", LocalDate.class);
+        managerContext.putString(WINDOW_START, windowStart.toString());
+
+        LocalDateTime from = windowStart.atStartOfDay();
+        LocalDateTime to = windowStart.plusDays(defaultExpiration)
+            .atStartOfDay();
+
+        Map<MedicineCategory, Long> counts = new EnumMap<>(MedicineCategory.class);
+        jdbcTemplate.query(COUNT_BY_CATEGORY, rs -> {
+            counts.put(MedicineCategory.valueOf(rs.getString(1)), rs.getLong(2));
+        }, from, to);
+
+        // every category gets a partition, even an empty one, so that a restart finds the same partition names
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        for (MedicineCategory category : MedicineCategory.values()) {
+            long count = counts.getOrDefault(category, 0L);
+            int ranges = (int) Math.min(Math.max(gridSize, 1), (count + maxItemsPerPartition - 1) / maxItemsPerPartition);
+
+            if (ranges <= 1) {
+                partitions.put(category.name(), partitionContext(category, windowStart, null, null));
+                continue;
+            }
+
+            List<LocalDateTime> rangeStarts = jdbcTemplate.queryForList(FIND_RANGE_STARTS, LocalDateTime.class, ranges, category.name(), from, to)
+                .stream()
+                .distinct()
+                .toList();
+
+            // the first range starts with the window
+            for (int i = 0; i < rangeStarts.size(); i++) {
+                LocalDateTime expiresFrom = i == 0 ? null : rangeStarts.get(i);
+                LocalDateTime expiresTo = i == rangeStarts.size() - 1 ? null : rangeStarts.get(i + 1);
+                partitions.put(category.name() + "-" + i, partitionContext(category, windowStart, expiresFrom, expiresTo));
+            }
+
+            log.info("Split {} {} meds that expire soon into {} expiration date ranges", count, category, rangeStarts.size());
+        }
+
+        log.info("Partitioned meds that expire within {} days of {} into {}", defaultExpiration, windowStart, partitions.keySet());
+        managerContext.putString(PARTITIONS, savePartitions(partitions));
+
+        return partitions;
+    }
+
+    // one line per partition: name, category, expiresFrom and expiresTo, the last two empty when open
+    private static String savePartitions(Map<String, ExecutionContext> partitions) {
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<String, ExecutionContext> partition : partitions.entrySet()) {
+            ExecutionContext context = partition.getValue();
+            lines.append(String.join(",", partition.getKey(), context.getString(CATEGORY), context.getString(EXPIRES_FROM, ""), context.getString(EXPIRES_TO, "")))
+                .append('\n');
+        }
+        return lines.toString();
+    }
+
+    private static Map<String, ExecutionContext> restorePartitions(ExecutionContext managerContext) {
+        LocalDate windowStart = LocalDate.parse(managerContext.getString(WINDOW_START));
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        managerContext.getString(PARTITIONS)
+            .lines()
+            .forEach(line -> {
+                String[] fields = line.split(",", -1);
+                partitions.put(fields[0], partitionContext(MedicineCategory.valueOf(fields[1]), windowStart,
+                    fields[2].isEmpty() ? null : LocalDateTime.parse(fields[2]), fields[3].isEmpty() ? null : LocalDateTime.parse(fields[3])));
+            });
+        return partitions;
+    }
+
+    private static ExecutionContext partitionContext(MedicineCategory category, LocalDate windowStart, LocalDateTime expiresFrom, LocalDateTime expiresTo) {
+        ExecutionContext context = new ExecutionContext();
+        context.putString(CATEGORY, category.name());
+        context.putString(WINDOW_START, windowStart.toString());
+        if (expiresFrom != null) {
+            context.putString(EXPIRES_FROM, expiresFrom.toString());
+        }
+        if (expiresTo != null) {
+            context.putString(EXPIRES_TO, expiresTo.toString());
+        }
+        return context;
+    }
+}
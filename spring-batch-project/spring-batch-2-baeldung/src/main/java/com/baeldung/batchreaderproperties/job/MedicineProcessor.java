@@ -1,6 +1,7 @@
 package com.baeldung.batchreaderproperties.job;
 
 import java.sql.Timestamp;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -22,6 +23,7 @@ public class MedicineProcessor implements ItemProcessor<Medicine, Medicine>, Con
 
     private ZonedDateTime triggeredDateTime;
     private String traceId;
+    private Clock clock = Clock.systemUTC();
 
     @Value("#{jobParameters['SALE_STARTS_DAYS']}")
     private long saleStartsDays;
@@ -34,7 +36,7 @@ public class MedicineProcessor implements ItemProcessor<Medicine, Medicine>, Con
         final Double originalPrice = medicine.getOriginalPrice();
         final Timestamp expirationDate = medicine.getExpirationDate();
 
-        Duration daysToExpiration = Duration.between(ZonedDateTime.now(), ZonedDateTime.ofInstant(expirationDate.toInstant(), ZoneId.of("UTC")));
+        Duration daysToExpiration = Duration.between(ZonedDateTime.now(clock), ZonedDateTime.ofInstant(expirationDate.toInstant(), ZoneId.of("UTC")));
 
         if (daysToExpiration.toDays() < saleStartsDays) {
             medicine.setSalePrice(originalPrice * (1 - medicineSale));
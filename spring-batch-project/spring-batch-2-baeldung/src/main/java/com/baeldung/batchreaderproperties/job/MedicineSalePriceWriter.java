@@ -0,0 +1,186 @@
+package com.baeldung.batchreaderproperties.job;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.ClassUtils;
+
+import com.baeldung.batchreaderproperties.ContainsJobParameters;
+import com.baeldung.batchreaderproperties.model.Medicine;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Saves the sale prices of a chunk to MEDICINE with one JDBC batch of UPDATEs.
+ * <p>
+ * Medicines whose sale price is the one that was read are not sent at all. Each UPDATE only matches the version that
+ * was read with the medicine and increments it, so a row another run has changed in the meantime is not overwritten;
+ * it is counted as a conflict and keeps the price the other run wrote.
+ * <p>
+ * The numbers of updated, unchanged and conflicting medicines, the time spent in the UPDATE batches and the resulting
+ * rows per second are saved in the step ExecutionContext; a restarted step continues the counts. The numbers of a chunk
+ * only count once its transaction commits: they are saved with the chunk in {@link #update(ExecutionContext)}, added to
+ * the totals in {@link #afterChunk(ChunkContext)} and dropped in {@link #afterChunkError(ChunkContext)}, so a chunk
+ * that is rolled back and written again by a retry or a skip scan is not counted twice. The step has to register the
+ * writer as a {@link ChunkListener} when it is not its item writer.
+ */
+@Getter
+@Setter
+@Slf4j
+public class MedicineSalePriceWriter extends ItemStreamSupport implements ItemStreamWriter<Medicine>, ChunkListener, ContainsJobParameters {
+
+    private static final String UPDATE_SALE_PRICE = "UPDATE MEDICINE SET SALE_PRICE = ?, VERSION = VERSION + 1 WHERE MED_ID = ? AND VERSION = ?";
+
+    private static final String UPDATED = "updated";
+    private static final String UNCHANGED = "unchanged";
+    private static final String CONFLICTS = "conflicts";
+    private static final String WRITE_MILLIS = "write.ms";
+    private static final String ROWS_PER_SECOND = "rows.per.second";
+
+    private ZonedDateTime triggeredDateTime;
+    private String traceId;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long updated;
+    private long unchanged;
+    private long conflicts;
+    private long writeNanos;
+
+    // numbers of the current chunk, not committed yet
+    private long chunkUpdated;
+    private long chunkUnchanged;
+    private long chunkConflicts;
+    private long chunkWriteNanos;
+
+    public MedicineSalePriceWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        setName(ClassUtils.getShortName(getClass()));
+    }
+
+    @Override
+    public void write(Chunk<? extends Medicine> chunk) {
+        List<Medicine> changed = new ArrayList<>(chunk.size());
+        List<Object[]> batchArgs = new ArrayList<>(chunk.size());
+
+        for (Medicine medicine : chunk) {
+            if (Objects.equals(medicine.getSalePrice(), medicine.getPersistedSalePrice())) {
+                continue;
+            }
+            changed.add(medicine);
+            // BigDecimal.valueOf keeps the shortest decimal that reads back as the same double, so the price read by
+            // the next run compares equal and the row is skipped
+            batchArgs.add(new Object[] { medicine.getSalePrice() == null ? null : BigDecimal.valueOf(medicine.getSalePrice()), medicine.getId()
+                .toString(), medicine.getVersion() });
+        }
+
+        int updatedRows = 0;
+        List<String> conflicting = new ArrayList<>();
+        long startedAt = System.nanoTime();
+
+        if (!batchArgs.isEmpty()) {
+            int[] counts = jdbcTemplate.batchUpdate(UPDATE_SALE_PRICE, batchArgs);
+
+            for (int i = 0; i < counts.length; i++) {
+                // drivers that do not report the count of each statement are trusted to have updated the row
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                    updatedRows++;
+                } else {
+                    conflicting.add(changed.get(i)
+                        .getId()
+                        .toString());
+                }
+            }
+        }
+
+        // the items are not touched, so that a rolled back chunk is written again with the version that was read
+        chunkWriteNanos += System.nanoTime() - startedAt;
+        chunkUpdated += updatedRows;
+        chunkUnchanged += chunk.size() - changed.size();
+        chunkConflicts += conflicting.size();
+
+        if (!conflicting.isEmpty()) {
+            log.warn("Trace = {}. {} medicines were changed by another run, their sale prices are left as they are: {}", traceId, conflicting.size(), conflicting);
+        }
+        log.debug("Trace = {}. Updated {} of {} sale prices, {} unchanged", traceId, updatedRows, changed.size(), chunk.size() - changed.size());
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        discardChunk();
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        updated += chunkUpdated;
+        unchanged += chunkUnchanged;
+        conflicts += chunkConflicts;
+        writeNanos += chunkWriteNanos;
+        discardChunk();
+    }
+
+    // the chunk is rolled back and its rows are written again, either by a retry or one by one by a skip scan
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        discardChunk();
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        if (executionContext.containsKey(getExecutionContextKey(UPDATED))) {
+            updated = executionContext.getLong(getExecutionContextKey(UPDATED));
+            unchanged = executionContext.getLong(getExecutionContextKey(UNCHANGED));
+            conflicts = executionContext.getLong(getExecutionContextKey(CONFLICTS));
+            writeNanos = executionContext.getLong(getExecutionContextKey(WRITE_MILLIS)) * 1_000_000;
+        }
+    }
+
+    // called inside the chunk transaction, so the saved numbers include the chunk that is about to be committed
+    @Override
+    public void update(ExecutionContext executionContext) {
+        long updatedRows = updated + chunkUpdated;
+        long nanos = writeNanos + chunkWriteNanos;
+
+        executionContext.putLong(getExecutionContextKey(UPDATED), updatedRows);
+        executionContext.putLong(getExecutionContextKey(UNCHANGED), unchanged + chunkUnchanged);
+        executionContext.putLong(getExecutionContextKey(CONFLICTS), conflicts + chunkConflicts);
+        executionContext.putLong(getExecutionContextKey(WRITE_MILLIS), nanos / 1_000_000);
+        executionContext.putDouble(getExecutionContextKey(ROWS_PER_SECOND), rowsPerSecond(updatedRows, nanos));
+    }
+
+    @Override
+    public void close() {
+        log.info("Trace = {}. Updated {} sale prices in {} ms ({} rows/s), {} unchanged, {} conflicts", traceId, updated, writeNanos / 1_000_000,
+            Math.round(rowsPerSecond(updated, writeNanos)), unchanged, conflicts);
+
+        updated = 0;
+        unchanged = 0;
+        conflicts = 0;
+        writeNanos = 0;
+        discardChunk();
+    }
+
+    private void discardChunk() {
+        chunkUpdated = 0;
+        chunkUnchanged = 0;
+        chunkConflicts = 0;
+        chunkWriteNanos = 0;
+    }
+
+    private static double rowsPerSecond(long rows, long nanos) {
+        return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+    }
+}
@@ -15,4 +15,7 @@ public class Medicine {
     private Timestamp expirationDate;
     private Double originalPrice;
     private Double salePrice;
+    //row version and sale price as read, so that the writer can skip unchanged rows and detect concurrent updates
+    private long version;
+    private Double persistedSalePrice;
 }
@@ -1,6 +1,11 @@
 package com.baeldung.batchscheduler;
 
 import com.baeldung.batchscheduler.model.Book;
+import darkchoco.batchsupport.AdaptiveChunkCompletionPolicy;
+import darkchoco.batchsupport.DecompressingResource;
+import darkchoco.batchsupport.ScheduledJobRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
@@ -15,11 +20,15 @@ import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -55,21 +64,71 @@ public class SpringBatchScheduler {
     @Autowired
     private PlatformTransactionManager transactionManager;
 
+    @Value("${batch.books.chunk-size:2}")
+    private int chunkSize;
+
+    // when enabled, the chunk size starts at chunk-size and follows the measured write + commit time
+    @Value("${batch.books.chunk.adaptive:false}")
+    private boolean adaptiveChunk;
+
+    @Value("${batch.books.chunk.min-size:1}")
+    private int minChunkSize;
+
+    @Value("${batch.books.chunk.max-size:100}")
+    private int maxChunkSize;
+
+    @Value("${batch.books.chunk.target-commit-ms:200}")
+    private long targetCommitMillis;
+
+    // what to do with a trigger while the previous run is still going: skip, queue or coalesce
+    @Value("${batch.books.scheduler.overlap-policy:skip}")
+    private ScheduledJobRunner.OverlapPolicy overlapPolicy;
+
+    @Value("${batch.books.scheduler.queue-capacity:16}")
+    private int queueCapacity;
+
+    // only hands the launch over to a virtual thread, so a slow run does not hold up the scheduler pool
     @Scheduled(fixedRate = 2000)
-    public void launchJob() throws Exception {
+    public void launchJob() {
         Date date = new Date();
         logger.debug("scheduler starts at " + date);
         if (enabled.get()) {
-            JobExecution jobExecution = jobLauncher.run(job(jobRepository, transactionManager), new JobParametersBuilder().addDate("launchDate", date)
-                    .toJobParameters());
-            batchRunCounter.incrementAndGet();
-            logger.debug("Batch job ends with status as " + jobExecution.getStatus());
+            bookJobRunner().trigger(() -> {
+                JobExecution jobExecution = jobLauncher.run(job(jobRepository, transactionManager), new JobParametersBuilder().addDate("launchDate", date)
+                        .toJobParameters());
+                batchRunCounter.incrementAndGet();
+                return jobExecution;
+            });
         }
         logger.debug("scheduler ends ");
     }
 
+    @Bean
+    public ScheduledJobRunner bookJobRunner() {
+        ScheduledJobRunner runner = new ScheduledJobRunner("job", overlapPolicy, jobLaunchExecutor(), schedulerMeterRegistry());
+        runner.setQueueCapacity(queueCapacity);
+        return runner;
+    }
+
+    @Bean
+    public MeterRegistry schedulerMeterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    // one virtual thread per run; no termination timeout, since closing would then interrupt the run in flight.
+    // bookJobRunner waits for it instead, for up to its shutdown timeout (30 s), and then stops waiting.
+    @Bean
+    public SimpleAsyncTaskExecutor jobLaunchExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("batch-job-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    // stops new runs, but a run already in flight is not interrupted and still increments batchRunCounter when it
+    // finishes. Wait for bookJobRunner().isRunning() to become false before relying on the counter.
     public void stop() {
         enabled.set(false);
+        bookJobRunner().cancelPending();
     }
 
     public void start() {
@@ -97,12 +156,14 @@ public class SpringBatchScheduler {
 
     }
 
+    // like stop(), a run already in flight finishes and is counted
     public void cancelFutureSchedulerTasks() {
         scheduledTasks.forEach((k, v) -> {
             if (k instanceof SpringBatchScheduler) {
                 v.cancel(false);
             }
         });
+        bookJobRunner().cancelPending();
     }
 
     @Bean
@@ -115,16 +176,25 @@ public class SpringBatchScheduler {
     @Bean
     protected Step readBooks(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
         return new StepBuilder("readBooks", jobRepository)
-                .<Book, Book> chunk(2, transactionManager)
+                .<Book, Book> chunk(bookCompletionPolicy(), transactionManager)
                 .reader(reader())
                 .writer(writer())
+                .listener(bookCompletionPolicy())
                 .build();
     }
 
+    @Bean
+    public CompletionPolicy bookCompletionPolicy() {
+        if (adaptiveChunk) {
+            return new AdaptiveChunkCompletionPolicy(chunkSize, minChunkSize, maxChunkSize, targetCommitMillis);
+        }
+        return new SimpleCompletionPolicy(chunkSize);
+    }
+
     @Bean
     public FlatFileItemReader<Book> reader() {
         return new FlatFileItemReaderBuilder<Book>().name("bookItemReader")
-                .resource(new ClassPathResource("books.csv"))
+                .resource(DecompressingResource.decompressIfNeeded(new ClassPathResource("books.csv")))
                 .delimited()
                 .names(new String[] { "id", "name" })
                 .fieldSetMapper(new BeanWrapperFieldSetMapper<>() {
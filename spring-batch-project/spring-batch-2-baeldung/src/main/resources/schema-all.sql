@@ -19,5 +19,12 @@ CREATE TABLE medicine
     type            VARCHAR(30),
     expiration_date TIMESTAMP,
     original_price  DECIMAL,
-    sale_price      DECIMAL
+    sale_price      DECIMAL,
+    -- incremented by every sale price update (optimistic locking of MedicineSalePriceWriter)
+    version         BIGINT NOT NULL DEFAULT 0
 );
+
+-- keyset paging of ExpiresSoonMedicineReader
+CREATE INDEX medicine_expiration_date_med_id_idx ON medicine (expiration_date, med_id);
+-- keyset paging of a category partition
+CREATE INDEX medicine_type_expiration_date_med_id_idx ON medicine (type, expiration_date, med_id);
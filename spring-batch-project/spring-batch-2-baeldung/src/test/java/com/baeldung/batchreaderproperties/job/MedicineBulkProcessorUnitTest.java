@@ -0,0 +1,140 @@
+package com.baeldung.batchreaderproperties.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.Chunk;
+
+import com.baeldung.batchreaderproperties.model.Medicine;
+import com.baeldung.batchreaderproperties.model.MedicineCategory;
+
+/**
+ * {@link MedicineBulkProcessor} must put exactly the same medicines on sale, at exactly the same prices, as
+ * {@link MedicineProcessor}. Both read the same fixed clock; its instant has nanoseconds so that truncating either side to
+ * milliseconds would show up at the sale boundary.
+ */
+public class MedicineBulkProcessorUnitTest {
+
+    private static final long SALE_STARTS_DAYS = 45;
+    private static final double MEDICINE_SALE = 0.1;
+
+    private static final Instant NOW = Instant.parse("2026-03-01T10:15:30.123456789Z");
+    private static final Clock CLOCK = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    private static final Duration[] NEAR_BOUNDARY = { Duration.ZERO, Duration.ofNanos(1), Duration.ofNanos(1_000), Duration.ofMillis(1),
+        Duration.ofSeconds(1), Duration.ofHours(1) };
+
+    @Test
+    public void givenTenThousandMedicines_whenProcessedInChunks_thenSameSalePricesAsItemProcessor() {
+        List<Instant> expirations = expirations(10_000);
+
+        List<Medicine> expected = medicines(expirations);
+        MedicineProcessor itemProcessor = new MedicineProcessor();
+        configure(itemProcessor);
+        for (Medicine medicine : expected) {
+            itemProcessor.process(medicine);
+        }
+
+        for (int chunkSize : new int[] { 1, 7, 100, 10_000 }) {
+            List<Medicine> actual = medicines(expirations);
+            MedicineBulkProcessor bulkProcessor = new MedicineBulkProcessor();
+            configure(bulkProcessor);
+
+            for (int from = 0; from < actual.size(); from += chunkSize) {
+                Chunk<Medicine> chunk = bulkProcessor.process(new Chunk<>(actual.subList(from, Math.min(from + chunkSize, actual.size()))));
+                assertEquals(Math.min(chunkSize, actual.size() - from), chunk.size());
+            }
+
+            assertEquals(expected, actual, "chunk size " + chunkSize);
+        }
+
+        long onSale = expected.stream()
+            .filter(medicine -> medicine.getSalePrice() != null)
+            .count();
+        assertTrue(onSale > 1_000 && onSale < 9_000, "on sale: " + onSale);
+    }
+
+    @Test
+    public void givenMedicinesAroundTheSaleBoundary_whenProcessed_thenOnlyThoseExpiringInLessThan45DaysAreOnSale() {
+        Instant boundary = NOW.plus(Duration.ofDays(SALE_STARTS_DAYS));
+        List<Medicine> medicines = medicines(List.of(boundary, boundary.minusNanos(1), boundary.plus(Duration.ofDays(1))
+            .minusNanos(1), NOW.minusNanos(1), NOW.minus(Duration.ofDays(400))));
+        MedicineBulkProcessor bulkProcessor = new MedicineBulkProcessor();
+        configure(bulkProcessor);
+
+        bulkProcessor.process(new Chunk<>(medicines));
+
+        // exactly 45 days left is not on sale yet, one nanosecond less is, and expired medicines always are
+        assertNull(medicines.get(0)
+            .getSalePrice());
+        assertNotNull(medicines.get(1)
+            .getSalePrice());
+        assertNull(medicines.get(2)
+            .getSalePrice());
+        assertEquals(medicines.get(3)
+            .getOriginalPrice() * (1 - MEDICINE_SALE), medicines.get(3)
+            .getSalePrice());
+        assertNotNull(medicines.get(4)
+            .getSalePrice());
+    }
+
+    private static void configure(MedicineProcessor processor) {
+        processor.setClock(CLOCK);
+        processor.setSaleStartsDays(SALE_STARTS_DAYS);
+        processor.setMedicineSale(MEDICINE_SALE);
+    }
+
+    private static void configure(MedicineBulkProcessor processor) {
+        processor.setClock(CLOCK);
+        processor.setSaleStartsDays(SALE_STARTS_DAYS);
+        processor.setMedicineSale(MEDICINE_SALE);
+    }
+
+    // a third close to the 45 day boundary (both sides, down to one nanosecond), a third already expired and the rest spread over a year
+    private static List<Instant> expirations(int count) {
+        Random random = new Random(23);
+        List<Instant> expirations = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            Instant expiration = switch (i % 3) {
+                case 0 -> {
+                    Duration offset = NEAR_BOUNDARY[random.nextInt(NEAR_BOUNDARY.length)];
+                    Instant boundary = NOW.plus(Duration.ofDays(SALE_STARTS_DAYS + random.nextInt(3) - 1));
+                    yield random.nextBoolean() ? boundary.plus(offset) : boundary.minus(offset);
+                }
+                case 1 -> NOW.minusNanos(random.nextLong(1, Duration.ofDays(400)
+                    .toNanos()));
+                default -> NOW.plusSeconds(random.nextLong(Duration.ofDays(365)
+                        .toSeconds()))
+                    .plusNanos(random.nextInt(1_000_000_000));
+            };
+            expirations.add(expiration);
+        }
+
+        return expirations;
+    }
+
+    private static List<Medicine> medicines(List<Instant> expirations) {
+        List<Medicine> medicines = new ArrayList<>(expirations.size());
+
+        for (int i = 0; i < expirations.size(); i++) {
+            medicines.add(new Medicine(new UUID(0, i), "medicine-" + i, MedicineCategory.values()[i % MedicineCategory.values().length],
+                Timestamp.from(expirations.get(i)), 10.0 + (i % 997) * 0.37, null, 0, null));
+        }
+
+        return medicines;
+    }
+}
@@ -0,0 +1,80 @@
+package com.baeldung.batchreaderproperties.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * A restarted job must get the partitions of the first run even if the medicines changed in between, because
+ * partitions that completed are skipped by name and recomputed expiration date ranges would overlap them.
+ */
+public class MedicineCategoryPartitionerUnitTest {
+
+    private static final LocalDate WINDOW_START = LocalDate.of(2026, 3, 1);
+
+    @Test
+    public void givenAPartitionedRun_whenRestarted_thenSamePartitionsWithoutQuerying() {
+        StepExecution managerExecution = new StepExecution("manager", new JobExecution(new JobInstance(1L, "job"), 1L, new JobParameters()));
+
+        JdbcTemplate jdbcTemplate = jdbcTemplate(25, List.of(WINDOW_START.atTime(1, 0), WINDOW_START.atTime(5, 0), WINDOW_START.atTime(9, 0)));
+        Map<String, ExecutionContext> partitions = partitioner(jdbcTemplate, managerExecution).partition(4);
+
+        assertEquals(List.of("ANESTHETICS", "ANTIBACTERIALS-0", "ANTIBACTERIALS-1", "ANTIBACTERIALS-2", "ANTIDEPRESSANTS"), List.copyOf(partitions.keySet()));
+        assertEquals("2026-03-01T05:00", partitions.get("ANTIBACTERIALS-1")
+            .getString(MedicineCategoryPartitioner.EXPIRES_FROM));
+        assertEquals("2026-03-01T09:00", partitions.get("ANTIBACTERIALS-1")
+            .getString(MedicineCategoryPartitioner.EXPIRES_TO));
+
+        // a restart starts a new manager execution with the ExecutionContext of the failed one
+        StepExecution restartedExecution = new StepExecution("manager", new JobExecution(new JobInstance(1L, "job"), 2L, new JobParameters()));
+        restartedExecution.setExecutionContext(new ExecutionContext(managerExecution.getExecutionContext()));
+        JdbcTemplate restartJdbcTemplate = mock(JdbcTemplate.class);
+
+        assertEquals(partitions, partitioner(restartJdbcTemplate, restartedExecution).partition(4));
+        verifyNoInteractions(restartJdbcTemplate);
+    }
+
+    private static MedicineCategoryPartitioner partitioner(JdbcTemplate jdbcTemplate, StepExecution stepExecution) {
+        MedicineCategoryPartitioner partitioner = new MedicineCategoryPartitioner(jdbcTemplate, stepExecution);
+        partitioner.setDefaultExpiration(45);
+        partitioner.setMaxItemsPerPartition(10);
+        return partitioner;
+    }
+
+    // only ANTIBACTERIALS has medicines that expire soon, enough for three ranges
+    private static JdbcTemplate jdbcTemplate(long antibacterials, List<LocalDateTime> rangeStarts) {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject("SELECT CURRENT_DATE", LocalDate.class)).thenReturn(WINDOW_START);
+        doAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString(1)).thenReturn("ANTIBACTERIALS");
+            when(rs.getLong(2)).thenReturn(antibacterials);
+            invocation.<RowCallbackHandler> getArgument(1)
+                .processRow(rs);
+            return null;
+        }).when(jdbcTemplate)
+            .query(anyString(), any(RowCallbackHandler.class), any(), any());
+        when(jdbcTemplate.queryForList(anyString(), eq(LocalDateTime.class), any(), any(), any(), any())).thenReturn(rangeStarts);
+        return jdbcTemplate;
+    }
+}
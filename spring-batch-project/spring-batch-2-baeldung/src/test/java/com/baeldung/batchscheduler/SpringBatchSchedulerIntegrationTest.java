@@ -1,5 +1,6 @@
 package com.baeldung.batchscheduler;
 
+import darkchoco.batchsupport.ScheduledJobRunner;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -11,6 +12,7 @@ import org.springframework.test.annotation.DirtiesContext;
 import static org.awaitility.Awaitility.await;
 import static java.util.concurrent.TimeUnit.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @DirtiesContext
@@ -26,9 +28,8 @@ public class SpringBatchSchedulerIntegrationTest {
         await().untilAsserted(() -> assertEquals(2, schedulerBean.getBatchRunCounter()
                 .get()));
         schedulerBean.stop();
-        await().atLeast(3, SECONDS);
 
-        assertEquals(2, schedulerBean.getBatchRunCounter().get());
+        assertNoMoreRuns(schedulerBean);
     }
 
     @Test
@@ -38,10 +39,8 @@ public class SpringBatchSchedulerIntegrationTest {
         await().untilAsserted(() -> assertEquals(2, schedulerBean.getBatchRunCounter()
                 .get()));
         bean.postProcessBeforeDestruction(schedulerBean, "SpringBatchScheduler");
-        await().atLeast(3, SECONDS);
 
-        assertEquals(2, schedulerBean.getBatchRunCounter()
-                .get());
+        assertNoMoreRuns(schedulerBean);
     }
 
     @Test
@@ -50,11 +49,24 @@ public class SpringBatchSchedulerIntegrationTest {
         await().untilAsserted(() -> assertEquals(2, schedulerBean.getBatchRunCounter()
                 .get()));
         schedulerBean.cancelFutureSchedulerTasks();
-        await().atLeast(3, SECONDS);
 
-        assertEquals(2, schedulerBean.getBatchRunCounter()
-                .get());
+        assertNoMoreRuns(schedulerBean);
     }
 
+    // stopping does not interrupt a run that is already in flight; it still finishes and increments the counter.
+    // Wait for it, then the counter must not move for longer than the 2 second schedule.
+    private void assertNoMoreRuns(SpringBatchScheduler schedulerBean) {
+        ScheduledJobRunner runner = context.getBean(ScheduledJobRunner.class);
+        await().atMost(30, SECONDS)
+                .until(() -> !runner.isRunning());
 
+        int runs = schedulerBean.getBatchRunCounter()
+                .get();
+        assertTrue(runs == 2 || runs == 3, "runs: " + runs);
+
+        await().during(3, SECONDS)
+                .atMost(5, SECONDS)
+                .until(() -> schedulerBean.getBatchRunCounter()
+                        .get() == runs);
+    }
 }